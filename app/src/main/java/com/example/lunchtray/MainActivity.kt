@@ -16,22 +16,52 @@
 package com.example.lunchtray
 
 import android.os.Bundle
+import android.util.Log
+import androidx.activity.viewModels
 import androidx.appcompat.app.AppCompatActivity
 import androidx.navigation.NavController
 import androidx.navigation.fragment.NavHostFragment
 import androidx.navigation.ui.setupActionBarWithNavController
+import com.example.lunchtray.data.CatalogFetcher
 import com.example.lunchtray.databinding.ActivityMainBinding
+import com.example.lunchtray.metrics.OrderFlowMetrics
+import com.example.lunchtray.metrics.OrderTrace
+import com.example.lunchtray.model.OrderHistory
+import com.example.lunchtray.model.OrderViewModel
+import com.example.lunchtray.recommend.PopularityRanking
+import com.example.lunchtray.report.SalesReport
+import com.example.lunchtray.submit.HttpOrderUploader
+import com.example.lunchtray.submit.SubmissionQueue
+import com.example.lunchtray.ui.order.StepPrewarmer
+import java.io.File
+import java.io.IOException
+import java.net.URL
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import kotlin.concurrent.thread
 
-class MainActivity : AppCompatActivity() {
+class MainActivity : AppCompatActivity(), StepPrewarmer.Host {
 
     // Binding object instance corresponding to the activity_main.xml layout
     // when the view hierarchy is attached to the fragment.
     private lateinit var binding: ActivityMainBinding
     private lateinit var navController: NavController
 
+    // Shared with the order flow fragments
+    private val orderViewModel: OrderViewModel by viewModels()
+
+    // Inflates the next step of the order flow ahead of time
+    override val stepPrewarmer by lazy { StepPrewarmer(this) }
+
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
 
+        // Menus list the most popular items of each category first when the activity is started
+        // with the ranking extra; set before the menus are first built
+        if (intent.getBooleanExtra(EXTRA_POPULAR_FIRST, false)) {
+            PopularityRanking.install()
+        }
+
         binding = ActivityMainBinding.inflate(layoutInflater)
         setContentView(binding.root)
 
@@ -40,9 +70,99 @@ class MainActivity : AppCompatActivity() {
 
         navController = navHostFragment.navController
         setupActionBarWithNavController(navController)
+
+        // Order flow metrics are off unless the activity is started with the metrics extra, e.g.
+        // adb shell am start -n com.example.lunchtray/.MainActivity --ez order_flow_metrics true
+        if (intent.getBooleanExtra(EXTRA_ORDER_FLOW_METRICS, false)) {
+            OrderFlowMetrics.enabled = true
+        }
+        // Trace sections are always on in debug builds, release builds need the trace extra
+        if (intent.getBooleanExtra(EXTRA_ORDER_FLOW_TRACE, false)) {
+            OrderTrace.enabled = true
+        }
+        navController.addOnDestinationChangedListener { _, destination, _ ->
+            OrderFlowMetrics.onDestinationChanged(destination.id)
+        }
+        // Submitted orders are kept, a file per day, for the end-of-day sales report
+        OrderHistory.install(File(filesDir, ORDER_HISTORY_DIRECTORY))
+        // Orders are only sent to an order intake server when given its address, e.g.
+        // adb shell am start -n com.example.lunchtray/.MainActivity \
+        //     --es intake_url http://10.0.2.2:8080/orders
+        intent.getStringExtra(EXTRA_INTAKE_URL)?.let { url ->
+            SubmissionQueue.install(HttpOrderUploader(URL(url)))
+        }
+        // The catalog snapshot is refreshed from the store's catalog server when given its
+        // address, and orders are priced with it
+        intent.getStringExtra(EXTRA_CATALOG_URL)?.let { url ->
+            val fetcher = CatalogFetcher(URL(url), File(filesDir, CATALOG_FILE))
+            thread(name = "catalog-fetch") {
+                try {
+                    fetcher.fetch()
+                } catch (e: IOException) {
+                    Log.w(TAG, "Catalog not refreshed", e)
+                }
+                try {
+                    fetcher.usePrices()
+                } catch (e: IOException) {
+                    Log.w(TAG, "Catalog prices not used", e)
+                }
+            }
+        }
+    }
+
+    override fun onResume() {
+        super.onResume()
+        // The menu switch is timed on uptime, which stops while the device sleeps
+        orderViewModel.refreshMenuWindow()
+    }
+
+    override fun onStop() {
+        super.onStop()
+        if (OrderFlowMetrics.enabled) {
+            val nameOf = { id: Int -> resources.getResourceEntryName(id) }
+            OrderFlowMetrics.dumpToLogcat(nameOf)
+            OrderFlowMetrics.dumpToFile(File(filesDir, METRICS_FILE), nameOf)
+        }
+        // Written out by the history's own thread
+        val history = OrderHistory.installed ?: return
+        val flushed = history.flushAsync()
+        // The sales report of the day is written at close when the activity is started with the
+        // report extra, off the main thread since it reads the day's whole history, and one at a
+        // time since they share the report file
+        if (intent.getBooleanExtra(EXTRA_SALES_REPORT, false)) {
+            val day = history.fileFor(System.currentTimeMillis())
+            reportExecutor.execute {
+                flushed.get()
+                SalesReport().generate(day, File(filesDir, SALES_REPORT_FILE))
+            }
+        }
+    }
+
+    override fun onDestroy() {
+        super.onDestroy()
+        stepPrewarmer.clear()
     }
 
     override fun onSupportNavigateUp(): Boolean {
         return navController.navigateUp() || super.onSupportNavigateUp()
     }
+
+    companion object {
+        const val EXTRA_ORDER_FLOW_METRICS = "order_flow_metrics"
+        const val EXTRA_ORDER_FLOW_TRACE = "order_flow_trace"
+        const val EXTRA_SALES_REPORT = "sales_report"
+        const val EXTRA_INTAKE_URL = "intake_url"
+        const val EXTRA_CATALOG_URL = "catalog_url"
+        const val EXTRA_POPULAR_FIRST = "popular_first"
+        private const val TAG = "MainActivity"
+        private const val CATALOG_FILE = "catalog.tsv"
+        private const val METRICS_FILE = "order_flow_metrics.jsonl"
+        private const val ORDER_HISTORY_DIRECTORY = "order_history"
+        private const val SALES_REPORT_FILE = "sales_report.csv"
+
+        // Writes sales reports, shared by every instance of the activity
+        private val reportExecutor: ExecutorService by lazy {
+            Executors.newSingleThreadExecutor { runnable -> Thread(runnable, "sales-report") }
+        }
+    }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.metrics
+
+import android.util.Log
+import android.view.View
+import android.view.ViewTreeObserver
+import com.example.lunchtray.submit.SubmissionQueue
+import java.io.File
+import java.io.Writer
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Latency metrics for each step of the order flow, keyed by navigation destination id:
+ * - [Metric.FIRST_FRAME]: from the fragment's onCreateView to its first frame
+ * - [Metric.BINDING]: time spent binding the views in onViewCreated
+ * - [Metric.SELECTION]: from a menu selection to the updated subtotal being published
+ * - [Metric.DWELL]: time the user spent on the step
+ *
+ * Nothing is recorded unless [enabled] is set, and disabled calls only read a volatile flag.
+ */
+object OrderFlowMetrics {
+
+    enum class Metric(val label: String) {
+        FIRST_FRAME("first_frame"),
+        BINDING("binding"),
+        SELECTION("selection_to_total"),
+        DWELL("dwell")
+    }
+
+    private const val TAG = "OrderFlowMetrics"
+
+    @Volatile
+    var enabled = false
+
+    private val histograms = ConcurrentHashMap<Long, LatencyHistogram>()
+
+    @Volatile
+    private var currentDestination = 0
+    @Volatile
+    private var destinationEnteredAt = 0L
+
+    fun now(): Long = System.nanoTime()
+
+    fun record(destinationId: Int, metric: Metric, nanos: Long) {
+        if (!enabled) return
+        histogram(destinationId, metric).record(nanos)
+    }
+
+    /**
+     * Record a selection-to-total latency for the destination currently shown.
+     */
+    fun recordSelection(nanos: Long) {
+        if (!enabled) return
+        record(currentDestination, Metric.SELECTION, nanos)
+    }
+
+    /**
+     * Time [block] as the binding of [destinationId].
+     */
+    inline fun <T> timeBinding(destinationId: Int, block: () -> T): T {
+        if (!enabled) return block()
+        val start = now()
+        val result = block()
+        record(destinationId, Metric.BINDING, now() - start)
+        return result
+    }
+
+    /**
+     * Record the time from [createdAt] to the first frame that draws [view].
+     */
+    fun recordFirstFrame(view: View, destinationId: Int, createdAt: Long) {
+        if (!enabled) return
+        view.viewTreeObserver.addOnPreDrawListener(object : ViewTreeObserver.OnPreDrawListener {
+            override fun onPreDraw(): Boolean {
+                view.viewTreeObserver.removeOnPreDrawListener(this)
+                record(destinationId, Metric.FIRST_FRAME, now() - createdAt)
+                return true
+            }
+        })
+    }
+
+    /**
+     * Called when the navigation destination changes, to record how long the previous one was
+     * shown.
+     */
+    fun onDestinationChanged(destinationId: Int) {
+        val at = now()
+        if (enabled && currentDestination != 0) {
+            record(currentDestination, Metric.DWELL, at - destinationEnteredAt)
+        }
+        currentDestination = destinationId
+        destinationEnteredAt = at
+    }
+
+    /**
+     * Write every histogram to [out], one JSON object per line, followed by the state of the
+     * [SubmissionQueue] if orders are sent to a server. [nameOf] turns a destination id into a
+     * readable name.
+     */
+    fun dump(out: Writer, nameOf: (Int) -> String) {
+        histograms.entries.sortedBy { it.key }.forEach { (key, histogram) ->
+            val snapshot = histogram.snapshot()
+            if (snapshot.count == 0L) return@forEach
+            val destinationId = (key shr 8).toInt()
+            val metric = Metric.values()[(key and 0xff).toInt()]
+            val line = StringBuilder()
+                .append("{\"destination\":\"").append(nameOf(destinationId))
+                .append("\",\"metric\":\"").append(metric.label)
+                .append("\",\"unit\":\"ns\",\"count\":").append(snapshot.count)
+                .append(",\"p50\":").append(snapshot.valueAt(50.0))
+                .append(",\"p90\":").append(snapshot.valueAt(90.0))
+                .append(",\"p99\":").append(snapshot.valueAt(99.0))
+                .append(",\"max\":").append(snapshot.max)
+                .append(",\"buckets\":[")
+            var first = true
+            snapshot.forEachBucket { upperBound, count ->
+                if (!first) line.append(',')
+                line.append('[').append(upperBound).append(',').append(count).append(']')
+                first = false
+            }
+            out.write(line.append("]}\n").toString())
+        }
+        SubmissionQueue.installed?.let { queue ->
+            val waits = queue.waitTimes.snapshot()
+            out.write(StringBuilder()
+                .append("{\"metric\":\"submissions\",\"queueDepth\":").append(queue.queueDepth)
+                .append(",\"inFlight\":").append(queue.inFlight)
+                .append(",\"ratePerSecond\":").append(queue.currentRate)
+                .append(",\"throttledMillis\":").append(queue.throttledMillis)
+                .append(",\"uploaded\":").append(queue.uploaded)
+                .append(",\"retried\":").append(queue.retried)
+                .append(",\"dropped\":").append(queue.dropped)
+                .append(",\"waitP50\":").append(waits.valueAt(50.0))
+                .append(",\"waitP99\":").append(waits.valueAt(99.0))
+                .append("}\n").toString())
+        }
+        out.flush()
+    }
+
+    fun dumpToFile(file: File, nameOf: (Int) -> String) {
+        file.bufferedWriter().use { dump(it, nameOf) }
+    }
+
+    fun dumpToLogcat(nameOf: (Int) -> String) {
+        val out = java.io.StringWriter()
+        dump(out, nameOf)
+        out.toString().lineSequence().filter { it.isNotEmpty() }.forEach { Log.i(TAG, it) }
+    }
+
+    fun reset() {
+        histograms.clear()
+    }
+
+    private fun histogram(destinationId: Int, metric: Metric): LatencyHistogram {
+        val key = (destinationId.toLong() shl 8) or metric.ordinal.toLong()
+        histograms[key]?.let { return it }
+        val created = LatencyHistogram()
+        return histograms.putIfAbsent(key, created) ?: created
+    }
+}
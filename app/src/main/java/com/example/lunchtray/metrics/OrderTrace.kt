@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.metrics
+
+import androidx.core.os.TraceCompat
+import androidx.databinding.OnRebindCallback
+import androidx.databinding.ViewDataBinding
+import com.example.lunchtray.BuildConfig
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Named sections and counters that show up in system traces (Perfetto, systrace), so jank in the
+ * order flow can be attributed to app code.
+ *
+ * Tracing is on by default in debug builds only. In release builds every call is a single flag
+ * check, unless [enabled] is switched on at runtime.
+ */
+object OrderTrace {
+
+    @Volatile
+    @JvmField
+    var enabled = BuildConfig.TRACE_ORDER_FLOW
+
+    private val selections = AtomicInteger()
+    private val rebinds = AtomicInteger()
+
+    /**
+     * Run [block] inside a trace section called [name]. Names are limited to 127 characters.
+     */
+    inline fun <T> section(name: String, block: () -> T): T {
+        if (!enabled) return block()
+        TraceCompat.beginSection(name)
+        try {
+            return block()
+        } finally {
+            TraceCompat.endSection()
+        }
+    }
+
+    /**
+     * Count a menu selection made by the user.
+     */
+    fun countSelection() {
+        if (enabled) TraceCompat.setCounter("OrderSelections", selections.incrementAndGet())
+    }
+
+    /**
+     * Count a rebind of a screen's views.
+     */
+    fun countRebind() {
+        if (enabled) TraceCompat.setCounter("OrderRebinds", rebinds.incrementAndGet())
+    }
+
+    /**
+     * Trace every rebind of [binding] in a section called [name], and count it.
+     */
+    fun traceRebinds(binding: ViewDataBinding, name: String) {
+        binding.addOnRebindCallback(object : OnRebindCallback<ViewDataBinding>() {
+            private var inSection = false
+
+            override fun onPreBind(binding: ViewDataBinding): Boolean {
+                if (enabled) {
+                    TraceCompat.beginSection(name)
+                    inSection = true
+                }
+                return true
+            }
+
+            override fun onCanceled(binding: ViewDataBinding) {
+                endSection()
+            }
+
+            override fun onBound(binding: ViewDataBinding) {
+                endSection()
+                countRebind()
+            }
+
+            private fun endSection() {
+                if (inSection) {
+                    TraceCompat.endSection()
+                    inSection = false
+                }
+            }
+        })
+    }
+}
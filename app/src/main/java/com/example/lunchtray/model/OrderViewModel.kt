@@ -15,25 +15,97 @@
  */
 package com.example.lunchtray.model
 
+import android.os.Handler
+import android.os.Looper
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
-import androidx.lifecycle.Transformations
+import androidx.lifecycle.SavedStateHandle
 import androidx.lifecycle.ViewModel
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
 import com.example.lunchtray.data.DataSource
-import java.text.NumberFormat
+import com.example.lunchtray.data.MenuDiffer
+import com.example.lunchtray.data.MenuEntry
+import com.example.lunchtray.data.MenuListing
+import com.example.lunchtray.data.MenuSchedule
+import com.example.lunchtray.inventory.Inventory
+import com.example.lunchtray.inventory.Reservations
+import com.example.lunchtray.metrics.OrderFlowMetrics
+import com.example.lunchtray.metrics.OrderTrace
+import com.example.lunchtray.recommend.PairingRecommender
+import com.example.lunchtray.recommend.PopularityRanking
+import com.example.lunchtray.submit.SubmissionQueue
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 
-class OrderViewModel : ViewModel() {
+/**
+ * Holds the order being built across the order flow. The order is kept in [savedState], so it
+ * survives the process being stopped in the background.
+ */
+class OrderViewModel(
+    private val savedState: SavedStateHandle = SavedStateHandle()
+) : ViewModel() {
+
+    // Map of menu items, only built once a screen displays it
+    val menuItems: Map<String, MenuItem> by lazy { DataSource.menuItems }
+
+    /**
+     * The order itself. Changes are published to the LiveData below on the main thread.
+     */
+    val store = OrderStore()
+
+    /**
+     * Makes and records every change to the order, from any thread.
+     */
+    val journal = OrderJournal(store)
+
+    /**
+     * Stock shared with every other screen; orders only go through if their items are in stock.
+     */
+    val inventory = Inventory.shared
 
-    // Map of menu items
-    val menuItems = DataSource.menuItems
+    // Stock held for the items of this order while the user goes through the flow
+    private val reservations = Reservations.shared.newSession()
 
-    // Default values for item prices
-    private var previousEntreePrice = 0.0
-    private var previousSidePrice = 0.0
-    private var previousAccompanimentPrice = 0.0
+    // What other customers ordered together, learned from submitted orders
+    private val recommender = PairingRecommender.shared
 
-    // Default tax rate
-    private val taxRate = 0.08
+    // Menus by time of day, and the tasks preparing and switching to the next one
+    private val menuSchedule = MenuSchedule.catalog
+    private val prebuildNextMenu = Runnable {
+        menuSchedule.windowAfter(MenuSchedule.minuteOfDay(System.currentTimeMillis())).prebuild()
+    }
+    private val switchMenu = Runnable { updateMenuWindow() }
+
+    // Turns changes to what the menus offer into row changes per category, off the main thread
+    private val menuDiffExecutor: ExecutorService = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "menu-diff").apply { isDaemon = true }
+    }
+    private val menuDiffer = MenuDiffer(menuDiffExecutor, Executor { mainHandler.post(it) }) {
+        _menuUpdates.value = it
+    }
+    private var menuVersion = 0L
+
+    // Ordinals of each category in the order its menu lists them. Taken when the order starts and
+    // kept until it's done, so re-ranking never moves rows under the user's finger.
+    private val menuOrder = HashMap<Int, IntArray>()
+
+    // Set while an emission is posted to the main thread, so bursts of background changes are
+    // published once
+    private val emissionPending = AtomicBoolean(false)
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private var emitted: OrderState? = null
+
+    // Availability changes seen so far, and the number already published
+    private val availabilityChanges = AtomicInteger(0)
+    private var emittedAvailability = -1
+
+    // When the last selection was made, until its subtotal is published
+    @Volatile
+    private var selectionStartedAt = 0L
 
     // Entree for the order
     private val _entree = MutableLiveData<MenuItem?>()
@@ -48,104 +120,328 @@ class OrderViewModel : ViewModel() {
     val accompaniment: LiveData<MenuItem?> = _accompaniment
 
     // Subtotal for the order
-    private val _subtotal = MutableLiveData(0.0)
-    val subtotal: LiveData<String> = Transformations.map(_subtotal) {
-        NumberFormat.getCurrencyInstance().format(it)
-    }
+    private val _subtotal = MutableLiveData<String>()
+    val subtotal: LiveData<String> = _subtotal
 
     // Total cost of the order
-    private val _total = MutableLiveData(0.0)
-    val total: LiveData<String> = Transformations.map(_total) {
-        NumberFormat.getCurrencyInstance().format(it)
-    }
+    private val _total = MutableLiveData<String>()
+    val total: LiveData<String> = _total
 
     // Tax for the order
-    private val _tax = MutableLiveData(0.0)
-    val tax: LiveData<String> = Transformations.map(_tax) {
-        NumberFormat.getCurrencyInstance().format(it)
+    private val _tax = MutableLiveData<String>()
+    val tax: LiveData<String> = _tax
+
+    // Menu served at this time of day
+    private val _menuWindow = MutableLiveData<MenuSchedule.Window>()
+    val menuWindow: LiveData<MenuSchedule.Window> = _menuWindow
+
+    // Keys of the menu items that are sold out
+    private val _soldOut = MutableLiveData<Set<String>>()
+    val soldOut: LiveData<Set<String>> = _soldOut
+
+    // Changes to the rows of the menu screens, only the latest of a burst is published
+    private val _menuUpdates = MutableLiveData<MenuDiffer.Update>()
+    val menuUpdates: LiveData<MenuDiffer.Update> = _menuUpdates
+
+    // Sold out items leave the order unless this order holds one; menus are told on the main
+    // thread
+    private val inventoryListener = Inventory.Listener { ordinal, available ->
+        availabilityChanges.incrementAndGet()
+        if (!available && !reservations.isHolding(ordinal)) journal.deselect(ordinal)
+        scheduleEmission()
     }
 
     init {
+        // Read before anything is emitted, as every emission saves the order over it
+        val saved = savedState.get<ByteArray>(KEY_ORDER)?.let { OrderCodec.decode(it) }
+        store.addListener { _, _ -> scheduleEmission() }
+        inventory.addListener(inventoryListener)
+        updateMenuWindow()
         resetOrder()
+        if (saved != null) restoreOrder(saved)
     }
 
     /**
-     * Set the entree for the order.
+     * Set the entree for the order, holding one in stock. Does nothing if it's sold out or
+     * not served now.
      */
     fun setEntree(entree: String) {
-        val entreeItemOnMenu = menuItems[entree]
+        OrderTrace.section("OrderViewModel.setEntree") {
+            val ordinal = ordinalOf(entree)
+            if (_menuWindow.value?.isServed(ordinal) == false) return@section
+            if (!reservations.hold(ordinal)) return@section
+            markSelection()
+            OrderTrace.countSelection()
+            journal.select(ordinal)
+        }
+    }
 
-        if (_entree.value != null){
-            previousEntreePrice = _entree.value!!.price
+    /**
+     * Set the side for the order, holding one in stock. Does nothing if it's sold out or
+     * not served now.
+     */
+    fun setSide(side: String) {
+        OrderTrace.section("OrderViewModel.setSide") {
+            val ordinal = ordinalOf(side)
+            if (_menuWindow.value?.isServed(ordinal) == false) return@section
+            if (!reservations.hold(ordinal)) return@section
+            markSelection()
+            OrderTrace.countSelection()
+            journal.select(ordinal)
+        }
+    }
+
+    /**
+     * Set the accompaniment for the order, holding one in stock. Does nothing if it's sold out or
+     * not served now.
+     */
+    fun setAccompaniment(accompaniment: String) {
+        OrderTrace.section("OrderViewModel.setAccompaniment") {
+            val ordinal = ordinalOf(accompaniment)
+            if (_menuWindow.value?.isServed(ordinal) == false) return@section
+            if (!reservations.hold(ordinal)) return@section
+            markSelection()
+            OrderTrace.countSelection()
+            journal.select(ordinal)
         }
+    }
 
-        if (_subtotal.value != null){
-            _subtotal.value = _subtotal.value?.minus(previousEntreePrice)
+    /**
+     * Calculate tax and update total.
+     */
+    fun calculateTaxAndTotal() {
+        OrderTrace.section("OrderViewModel.calculateTaxAndTotal") {
+            val state = store.state
+            _tax.value = Pricing.format(state.taxCents)
+            _total.value = Pricing.format(state.totalCents)
         }
-        _entree.value = entreeItemOnMenu
-        updateSubtotal(entreeItemOnMenu?.price!!)
     }
 
     /**
-     * Set the side for the order.
+     * Outcome of [submitOrder].
      */
-    fun setSide(side: String) {
-        val  sideItem = menuItems[side]
+    enum class SubmitResult {
+        SUBMITTED,
+
+        // The hold on one of its items expired and it sold out in the meantime
+        SOLD_OUT,
+
+        // Too many orders are still waiting to be sent to the server
+        BUSY
+    }
 
-        if (_side.value != null){
-            previousSidePrice = _side.value?.price!!
+    /**
+     * Take the items of the order from the inventory, hand the order to the registered
+     * [OrderSubmissions] sinks and start a new one. Unless it's [SubmitResult.SUBMITTED], the
+     * order is left as it is.
+     */
+    fun submitOrder(): SubmitResult {
+        return OrderTrace.section("OrderViewModel.submitOrder") {
+            val order = store.state
+            // Its place in the upload queue is held before its items are taken from stock
+            val queue = SubmissionQueue.installed
+            if (queue?.reserve() == false) return@section SubmitResult.BUSY
+            if (!reservations.commit(order)) {
+                queue?.cancelReservation()
+                return@section SubmitResult.SOLD_OUT
+            }
+            OrderSubmissions.submit(order)
+            journal.submit()
+            SubmitResult.SUBMITTED
         }
-        if (_subtotal.value  != null){
-            _subtotal.value = _subtotal.value?.minus(previousSidePrice)
+    }
+
+    /**
+     * Reset all values pertaining to the order.
+     */
+    fun resetOrder() {
+        OrderTrace.section("OrderViewModel.resetOrder") {
+            reservations.releaseAll()
+            journal.reset()
+            // A new order lists the menus by the latest ranking
+            menuOrder.clear()
+            publishMenu()
         }
+    }
 
-        _side.value = sideItem
-        updateSubtotal(sideItem?.price!!)
+    override fun onCleared() {
+        menuDiffExecutor.shutdown()
+        mainHandler.removeCallbacks(prebuildNextMenu)
+        mainHandler.removeCallbacks(switchMenu)
+        inventory.removeListener(inventoryListener)
+        reservations.releaseAll()
     }
 
     /**
-     * Set the accompaniment for the order.
+     * Switch to the menu served now if the planned switch hasn't happened yet. It runs on uptime,
+     * so it's late when the device slept through it; call this when the screen comes back.
      */
-    fun setAccompaniment(accompaniment: String) {
-        val accompanimentMenuItem = menuItems[accompaniment]
-        if (_accompaniment.value != null){
-            previousAccompanimentPrice = _accompaniment.value?.price!!
+    fun refreshMenuWindow() {
+        val now = System.currentTimeMillis()
+        if (menuSchedule.windowAt(MenuSchedule.minuteOfDay(now)) !== _menuWindow.value) {
+            updateMenuWindow()
+        }
+    }
+
+    /**
+     * Publish the menu served now, and plan the switch to the next one: its category lists are
+     * built shortly before, so menu screens flip without doing that work. Items of the order that
+     * are no longer served leave it, and their stock is given back.
+     */
+    private fun updateMenuWindow() {
+        val now = System.currentTimeMillis()
+        val window = menuSchedule.windowAt(MenuSchedule.minuteOfDay(now))
+        _menuWindow.value = window
+        val state = store.state
+        for (ordinal in intArrayOf(state.entree, state.side, state.accompaniment)) {
+            if (ordinal == OrderState.NONE || window.isServed(ordinal)) continue
+            reservations.release(ordinal)
+            journal.deselect(ordinal)
         }
-        if (_subtotal.value != null){
-            _subtotal.value =  _subtotal.value?.minus(previousAccompanimentPrice)
+        publishMenu()
+        if (menuSchedule.windowCount < 2) return
+        val untilChange = menuSchedule.millisUntilChange(now)
+        mainHandler.removeCallbacks(prebuildNextMenu)
+        mainHandler.removeCallbacks(switchMenu)
+        mainHandler.postDelayed(prebuildNextMenu, maxOf(untilChange - PREBUILD_LEAD_MILLIS, 0))
+        mainHandler.postDelayed(switchMenu, untilChange)
+    }
+
+    /**
+     * Pick up the order [saved] before the process was stopped, holding its items again. Items
+     * that sold out or went off the menu since are left out.
+     */
+    private fun restoreOrder(saved: OrderState) {
+        for (ordinal in intArrayOf(saved.entree, saved.side, saved.accompaniment)) {
+            if (ordinal == OrderState.NONE) continue
+            if (_menuWindow.value?.isServed(ordinal) == false) continue
+            if (reservations.hold(ordinal)) journal.select(ordinal)
         }
-        _accompaniment.value = accompanimentMenuItem
-        updateSubtotal(accompanimentMenuItem?.price!!)
+    }
+
+    private fun markSelection() {
+        if (OrderFlowMetrics.enabled) selectionStartedAt = OrderFlowMetrics.now()
+    }
+
+    private fun ordinalOf(key: String): Int {
+        val ordinal = Catalog.ordinalOf(key)
+        require(ordinal >= 0) { "Unknown menu item: $key" }
+        return ordinal
     }
 
     /**
-     * Update subtotal value.
+     * Publish the latest state right away on the main thread, otherwise post a single emission.
      */
-    private fun updateSubtotal(itemPrice: Double) {
-        if (_subtotal.value != null){
-         _subtotal.value = _subtotal.value!!.plus(itemPrice)
+    private fun scheduleEmission() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            emit()
+        } else if (emissionPending.compareAndSet(false, true)) {
+            mainHandler.post {
+                emissionPending.set(false)
+                emit()
+            }
+        }
+    }
+
+    private fun emit() {
+        val changes = availabilityChanges.get()
+        val availabilityChanged = changes != emittedAvailability
+        if (availabilityChanged) {
+            emittedAvailability = changes
+            _soldOut.value = soldOutKeys()
+        }
+        val state = store.state
+        val previous = emitted
+        emitted = state
+        if (state != previous) savedState.set(KEY_ORDER, OrderCodec.encode(state))
+        // Sides and accompaniments are listed by what pairs with the entree and side
+        if (availabilityChanged || previous == null || previous.entree != state.entree ||
+            previous.side != state.side
+        ) {
+            publishMenu()
+        }
+        if (previous == null || previous.entree != state.entree) {
+            _entree.value = menuItemOrNull(state.entree)
         }
-        else {
-            _subtotal.value = itemPrice
+        if (previous == null || previous.side != state.side) {
+            _side.value = menuItemOrNull(state.side)
+        }
+        if (previous == null || previous.accompaniment != state.accompaniment) {
+            _accompaniment.value = menuItemOrNull(state.accompaniment)
+        }
+        if (previous == null || previous.subtotalCents != state.subtotalCents) {
+            _subtotal.value = Pricing.format(state.subtotalCents)
+            calculateTaxAndTotal()
+            val startedAt = selectionStartedAt
+            if (startedAt != 0L) {
+                selectionStartedAt = 0L
+                OrderFlowMetrics.recordSelection(OrderFlowMetrics.now() - startedAt)
+            }
         }
-        calculateTaxAndTotal()
     }
 
     /**
-     * Calculate tax and update total.
+     * Hand what the menu screens should show now to the [menuDiffer].
      */
-    fun calculateTaxAndTotal() {
-        _tax.value = _subtotal.value?.times(taxRate)
-        _total.value = _tax.value?.let { _subtotal.value?.plus(it) ?: 0.0 }
+    private fun publishMenu() {
+        val window = _menuWindow.value
+        val state = store.state
+        fun offered(type: Int) = menuOrder(type)
+            .filter { window?.isServed(it) != false }
+            .map { Catalog.key(it) }
+        fun entries(keys: List<String>) = keys.map { key ->
+            val ordinal = Catalog.ordinalOf(key)
+            MenuEntry(
+                key = key,
+                name = Catalog.name(ordinal),
+                description = Catalog.description(ordinal),
+                priceCents = Catalog.priceCents(ordinal),
+                available = inventory.isAvailable(ordinal)
+            )
+        }
+        menuDiffer.submit(
+            MenuListing(
+                ++menuVersion,
+                mapOf(
+                    ItemType.ENTREE to entries(offered(ItemType.ENTREE)),
+                    ItemType.SIDE_DISH to
+                            entries(byPairing(offered(ItemType.SIDE_DISH), state.entree)),
+                    ItemType.ACCOMPANIMENT to
+                            entries(byPairing(offered(ItemType.ACCOMPANIMENT), state.side))
+                )
+            )
+        )
     }
 
     /**
-     * Reset all values pertaining to the order.
+     * Items of the category of [type] in menu order, or most popular first when ranking.
      */
-    fun resetOrder() {
-        _entree.value = null
-        _side.value = null
-        _accompaniment.value = null
-        _subtotal.value = 0.0
+    private fun menuOrder(type: Int): IntArray = menuOrder.getOrPut(type) {
+        PopularityRanking.installed?.ranked(type)
+            ?: (0 until Catalog.SIZE).filter { Catalog.type(it) == type }.toIntArray()
+    }
+
+    private fun byPairing(keys: List<String>, ordinal: Int): List<String> {
+        val paired = recommender.pairedWith(ordinal).map { Catalog.key(it) }.filter { it in keys }
+        return paired + keys.filter { it !in paired }
+    }
+
+    private fun soldOutKeys(): Set<String> {
+        val keys = HashSet<String>()
+        for (ordinal in 0 until Catalog.SIZE) {
+            if (!inventory.isAvailable(ordinal)) keys.add(Catalog.key(ordinal))
+        }
+        return keys
+    }
+
+    private fun menuItemOrNull(ordinal: Int): MenuItem? =
+        if (ordinal == OrderState.NONE) null else Catalog.menuItem(ordinal)
+
+    companion object {
+        // How long before a menu change the next menu is prepared
+        private const val PREBUILD_LEAD_MILLIS = 60_000L
+
+        // Saved state key of the encoded order
+        internal const val KEY_ORDER = "order"
     }
 }
@@ -22,8 +22,12 @@ import android.view.ViewGroup
 import androidx.fragment.app.Fragment
 import androidx.fragment.app.activityViewModels
 import androidx.navigation.fragment.findNavController
+import com.example.lunchtray.BR
 import com.example.lunchtray.R
+import com.example.lunchtray.constants.ItemType
 import com.example.lunchtray.databinding.FragmentAccompanimentMenuBinding
+import com.example.lunchtray.metrics.OrderFlowMetrics
+import com.example.lunchtray.metrics.OrderTrace
 import com.example.lunchtray.model.OrderViewModel
 
 /**
@@ -39,6 +43,8 @@ class AccompanimentMenuFragment : Fragment() {
     // This property is only valid between onCreateView and
     // onDestroyView.
     private val binding get() = _binding!!
+    // When onCreateView started, for the first frame metric
+    private var createdAt = 0L
     // Use the 'by activityViewModels()' Kotlin property delegate from the fragment-ktx artifact
     private val sharedViewModel: OrderViewModel by activityViewModels()
 
@@ -49,18 +55,44 @@ class AccompanimentMenuFragment : Fragment() {
     override fun onCreateView(
         inflater: LayoutInflater, container: ViewGroup?,
         savedInstanceState: Bundle?
-    ): View? {
-        _binding = FragmentAccompanimentMenuBinding.inflate(inflater, container, false)
-        val root = binding.root
-        return root
+    ): View? = OrderTrace.section("AccompanimentMenuFragment.onCreateView") {
+        createdAt = OrderFlowMetrics.now()
+        _binding = stepPrewarmer?.take(R.layout.fragment_accompaniment_menu)
+            ?: FragmentAccompanimentMenuBinding.inflate(inflater, container, false)
+        binding.root
     }
 
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
-        binding.apply {
-            lifecycleOwner = viewLifecycleOwner
-            viewModel = sharedViewModel
-            accompanimentMenuFragment = this@AccompanimentMenuFragment
+        OrderTrace.section("AccompanimentMenuFragment.onViewCreated") {
+            OrderFlowMetrics.recordFirstFrame(view, R.id.accompanimentMenuFragment, createdAt)
+            OrderFlowMetrics.timeBinding(R.id.accompanimentMenuFragment) {
+                binding.apply {
+                    lifecycleOwner = viewLifecycleOwner
+                    viewModel = sharedViewModel
+                    accompanimentMenuFragment = this@AccompanimentMenuFragment
+                }
+                binding.executePendingBindings()
+            }
+            OrderTrace.traceRebinds(binding, "AccompanimentMenuFragment.rebind")
+            // Rows follow the menu: the accompaniments people usually pair with the chosen side
+            // lead, items off the menu at this time of day are hidden, and only the rows that
+            // changed are touched. Selection stays with data binding.
+            val rows = binding.run {
+                listOf(
+                    MenuRow("bread", bread, breadDescription, breadPrice),
+                    MenuRow("berries", berries, berriesDescription, berriesPrice),
+                    MenuRow("pickles", pickles, picklesDescription, picklesPrice)
+                )
+            }
+            val menuRows = MenuRenderer(rows, binding.subtotal)
+            sharedViewModel.menuUpdates.observe(viewLifecycleOwner) { update ->
+                menuRows.apply(update, ItemType.ACCOMPANIMENT, binding.accompanimentOptions)
+            }
+            // Prepare the next step while the user is choosing
+            stepPrewarmer?.prewarmAfter(R.id.accompanimentMenuFragment, view.parent as? ViewGroup) {
+                it.setVariable(BR.viewModel, sharedViewModel)
+            }
         }
     }
 
@@ -68,7 +100,9 @@ class AccompanimentMenuFragment : Fragment() {
      * Navigate to the checkout fragment.
      */
     fun goToNextScreen() {
-        findNavController().navigate(R.id.action_accompanimentMenuFragment_to_checkoutFragment)
+        OrderTrace.section("Navigate action_accompanimentMenuFragment_to_checkoutFragment") {
+            findNavController().navigate(R.id.action_accompanimentMenuFragment_to_checkoutFragment)
+        }
     }
 
     /**
@@ -76,7 +110,10 @@ class AccompanimentMenuFragment : Fragment() {
      */
     fun cancelOrder() {
         sharedViewModel.resetOrder()
-        findNavController().navigate(R.id.action_accompanimentMenuFragment_to_startOrderFragment)
+        OrderTrace.section("Navigate action_accompanimentMenuFragment_to_startOrderFragment") {
+            findNavController()
+                .navigate(R.id.action_accompanimentMenuFragment_to_startOrderFragment)
+        }
     }
 
     /**
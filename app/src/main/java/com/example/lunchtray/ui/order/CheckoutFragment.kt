@@ -24,6 +24,8 @@ import androidx.fragment.app.activityViewModels
 import androidx.navigation.fragment.findNavController
 import com.example.lunchtray.R
 import com.example.lunchtray.databinding.FragmentCheckoutBinding
+import com.example.lunchtray.metrics.OrderFlowMetrics
+import com.example.lunchtray.metrics.OrderTrace
 import com.example.lunchtray.model.OrderViewModel
 import com.google.android.material.snackbar.Snackbar
 
@@ -39,6 +41,8 @@ class CheckoutFragment : Fragment() {
     // This property is only valid between onCreateView and
     // onDestroyView.
     private val binding get() = _binding!!
+    // When onCreateView started, for the first frame metric
+    private var createdAt = 0L
     // Use the 'by activityViewModels()' Kotlin property delegate from the fragment-ktx artifact
     private val sharedViewModel: OrderViewModel by activityViewModels()
 
@@ -49,22 +53,31 @@ class CheckoutFragment : Fragment() {
     override fun onCreateView(
         inflater: LayoutInflater, container: ViewGroup?,
         savedInstanceState: Bundle?
-    ): View? {
-        _binding = FragmentCheckoutBinding.inflate(inflater, container, false)
+    ): View? = OrderTrace.section("CheckoutFragment.onCreateView") {
+        createdAt = OrderFlowMetrics.now()
+        _binding = stepPrewarmer?.take(R.layout.fragment_checkout)
+            ?: FragmentCheckoutBinding.inflate(inflater, container, false)
         val root = binding.root
 
         // Calculate tax and total upon creating the CheckoutFragment view
         sharedViewModel.calculateTaxAndTotal()
 
-        return root
+        root
     }
 
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
-        binding.apply {
-            viewModel = sharedViewModel
-            lifecycleOwner = viewLifecycleOwner
-            checkoutFragment = this@CheckoutFragment
+        OrderTrace.section("CheckoutFragment.onViewCreated") {
+            OrderFlowMetrics.recordFirstFrame(view, R.id.checkoutFragment, createdAt)
+            OrderFlowMetrics.timeBinding(R.id.checkoutFragment) {
+                binding.apply {
+                    viewModel = sharedViewModel
+                    lifecycleOwner = viewLifecycleOwner
+                    checkoutFragment = this@CheckoutFragment
+                }
+                binding.executePendingBindings()
+            }
+            OrderTrace.traceRebinds(binding, "CheckoutFragment.rebind")
         }
     }
 
@@ -73,17 +86,34 @@ class CheckoutFragment : Fragment() {
      */
     fun cancelOrder() {
         sharedViewModel.resetOrder()
-        findNavController().navigate(R.id.action_checkoutFragment_to_startOrderFragment)
+        OrderTrace.section("Navigate action_checkoutFragment_to_startOrderFragment") {
+            findNavController().navigate(R.id.action_checkoutFragment_to_startOrderFragment)
+        }
     }
 
     /**
      * Submit order and navigate to home screen.
      */
     fun submitOrder() {
+        when (sharedViewModel.submitOrder()) {
+            OrderViewModel.SubmitResult.SOLD_OUT -> {
+                // The sold out item was taken out of the order, let the user review it
+                Snackbar.make(binding.root, R.string.item_sold_out, Snackbar.LENGTH_LONG).show()
+                return
+            }
+            OrderViewModel.SubmitResult.BUSY -> {
+                // Orders already queued are still going out, the user can try again shortly
+                Snackbar.make(binding.root, R.string.order_queue_full, Snackbar.LENGTH_LONG)
+                    .show()
+                return
+            }
+            OrderViewModel.SubmitResult.SUBMITTED -> Unit
+        }
         // Show snackbar to "confirm" order
         Snackbar.make(binding.root, R.string.submit_order, Snackbar.LENGTH_SHORT).show()
-        sharedViewModel.resetOrder()
-        findNavController().navigate(R.id.action_checkoutFragment_to_startOrderFragment)
+        OrderTrace.section("Navigate action_checkoutFragment_to_startOrderFragment") {
+            findNavController().navigate(R.id.action_checkoutFragment_to_startOrderFragment)
+        }
     }
 
     /**
@@ -23,7 +23,10 @@ import androidx.fragment.app.Fragment
 import androidx.fragment.app.activityViewModels
 import androidx.navigation.fragment.findNavController
 import com.example.lunchtray.R
+import com.example.lunchtray.constants.ItemType
 import com.example.lunchtray.databinding.FragmentEntreeMenuBinding
+import com.example.lunchtray.metrics.OrderFlowMetrics
+import com.example.lunchtray.metrics.OrderTrace
 import com.example.lunchtray.model.OrderViewModel
 
 /**
@@ -38,8 +41,12 @@ class EntreeMenuFragment : Fragment() {
     // This property is only valid between onCreateView and
     // onDestroyView.
     private val binding get() = _binding!!
+    // When onCreateView started, for the first frame metric
+    private var createdAt = 0L
     // Use the 'by activityViewModels()' Kotlin property delegate from the fragment-ktx artifact
     private val sharedViewModel: OrderViewModel by activityViewModels()
+    // Draws the menu from the order state, valid between onViewCreated and onDestroyView.
+    private var renderer: MenuRenderer? = null
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -48,18 +55,55 @@ class EntreeMenuFragment : Fragment() {
     override fun onCreateView(
         inflater: LayoutInflater, container: ViewGroup?,
         savedInstanceState: Bundle?
-    ): View? {
-        _binding = FragmentEntreeMenuBinding.inflate(inflater, container, false)
-        val root: View = binding.root
-        return root
+    ): View? = OrderTrace.section("EntreeMenuFragment.onCreateView") {
+        createdAt = OrderFlowMetrics.now()
+        _binding = stepPrewarmer?.take(R.layout.fragment_entree_menu)
+            ?: FragmentEntreeMenuBinding.inflate(inflater, container, false)
+        binding.root
     }
 
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
-        binding.apply {
-            lifecycleOwner = viewLifecycleOwner
-            viewModel = sharedViewModel
-            entreeMenuFragment = this@EntreeMenuFragment
+        OrderTrace.section("EntreeMenuFragment.onViewCreated") {
+            OrderFlowMetrics.recordFirstFrame(view, R.id.entreeMenuFragment, createdAt)
+            val rows = binding.run {
+                listOf(
+                    MenuRow("cauliflower", cauliflower, cauliflowerDescription, cauliflowerPrice),
+                    MenuRow("chili", chili, chiliDescription, chiliPrice),
+                    MenuRow("pasta", pasta, pastaDescription, pastaPrice),
+                    MenuRow("skillet", skillet, skilletDescription, skilletPrice)
+                )
+            }
+            renderer = MenuRenderer(rows, binding.subtotal)
+            rows.forEach { row ->
+                row.button.setOnClickListener { sharedViewModel.setEntree(row.key) }
+            }
+            binding.nextButton.setOnClickListener { goToNextScreen() }
+            binding.cancelButton.setOnClickListener { cancelOrder() }
+            // Re-render whenever the selection or the subtotal changes
+            sharedViewModel.entree.observe(viewLifecycleOwner) { render() }
+            sharedViewModel.subtotal.observe(viewLifecycleOwner) { render() }
+            // Rows follow the menu: sold out items are disabled, items off the menu at this time of
+            // day hidden, and only the rows that changed are touched
+            sharedViewModel.menuUpdates.observe(viewLifecycleOwner) { update ->
+                renderer?.apply(update, ItemType.ENTREE, binding.entreeOptions)
+            }
+            // Prepare the next step while the user is choosing
+            stepPrewarmer?.prewarmAfter(R.id.entreeMenuFragment, view.parent as? ViewGroup)
+        }
+    }
+
+    /**
+     * Render the menu from the current order state.
+     */
+    private fun render() {
+        OrderTrace.countRebind()
+        OrderFlowMetrics.timeBinding(R.id.entreeMenuFragment) {
+            renderer?.render(
+                sharedViewModel.menuItems,
+                sharedViewModel.entree.value,
+                sharedViewModel.subtotal.value
+            )
         }
     }
 
@@ -67,7 +111,9 @@ class EntreeMenuFragment : Fragment() {
      * Navigate to the side menu fragment.
      */
     fun goToNextScreen() {
-        findNavController().navigate(R.id.action_entreeMenuFragment_to_sideMenuFragment)
+        OrderTrace.section("Navigate action_entreeMenuFragment_to_sideMenuFragment") {
+            findNavController().navigate(R.id.action_entreeMenuFragment_to_sideMenuFragment)
+        }
     }
 
     /**
@@ -75,7 +121,9 @@ class EntreeMenuFragment : Fragment() {
      */
     fun cancelOrder() {
         sharedViewModel.resetOrder()
-        findNavController().navigate(R.id.action_entreeMenuFragment_to_startOrderFragment)
+        OrderTrace.section("Navigate action_entreeMenuFragment_to_startOrderFragment") {
+            findNavController().navigate(R.id.action_entreeMenuFragment_to_startOrderFragment)
+        }
     }
 
     /**
@@ -84,6 +132,7 @@ class EntreeMenuFragment : Fragment() {
      */
     override fun onDestroyView() {
         super.onDestroyView()
+        renderer = null
         _binding = null
     }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.ui.order
+
+import android.view.View
+import android.view.ViewGroup
+import android.widget.RadioButton
+import android.widget.TextView
+import com.example.lunchtray.R
+import com.example.lunchtray.data.MenuDiff
+import com.example.lunchtray.data.MenuDiffer
+import com.example.lunchtray.data.MenuEntry
+import com.example.lunchtray.model.MenuItem
+
+/**
+ * Views displaying one menu item, identified by its key in the menu.
+ */
+class MenuRow(
+    val key: String,
+    val button: RadioButton,
+    val description: TextView,
+    val price: TextView
+) {
+
+    /**
+     * Whether the row is shown, e.g. false while its item is off the menu.
+     */
+    var isVisible: Boolean
+        get() = button.visibility == View.VISIBLE
+        set(value) {
+            val visibility = if (value) View.VISIBLE else View.GONE
+            button.visibility = visibility
+            description.visibility = visibility
+            price.visibility = visibility
+        }
+}
+
+/**
+ * [MenuRenderer] draws a menu screen from the order state and the menu items, and applies menu
+ * updates computed by a [MenuDiffer]. It remembers what it rendered last and only touches the
+ * views whose content changed.
+ */
+class MenuRenderer(
+    private val rows: List<MenuRow>,
+    private val subtotalView: TextView
+) {
+
+    // Last rendered state, per row
+    private val renderedItems = arrayOfNulls<MenuItem>(rows.size)
+    private val renderedChecked = BooleanArray(rows.size)
+    private val renderedEnabled = BooleanArray(rows.size) { true }
+    private val renderedVisible = BooleanArray(rows.size) { true }
+    private var renderedSubtotal: String? = null
+
+    // Version of the menu listing the rows show, -1 before the first one
+    private var appliedVersion = -1L
+
+    /**
+     * Number of views updated since this renderer was created.
+     */
+    var viewUpdates = 0
+        private set
+
+    /**
+     * Render [menuItems] with [selected] checked and [subtotal] as the formatted subtotal. When
+     * given, the rows of the [soldOut] items are disabled and those of the [offMenu] items hidden;
+     * otherwise rows stay as [apply] left them.
+     */
+    fun render(
+        menuItems: Map<String, MenuItem>,
+        selected: MenuItem?,
+        subtotal: String?,
+        soldOut: Set<String>? = null,
+        offMenu: Set<String>? = null
+    ) {
+        for (i in rows.indices) {
+            val row = rows[i]
+            val item = menuItems[row.key]
+            if (item != renderedItems[i]) {
+                row.button.text = item?.name
+                MenuTextPrecomputer.bind(row.description, item)
+                row.price.text = item?.getFormattedPrice()
+                renderedItems[i] = item
+                viewUpdates += 3
+            }
+            val checked = item != null && item.name == selected?.name
+            if (checked != renderedChecked[i]) {
+                row.button.isChecked = checked
+                renderedChecked[i] = checked
+                viewUpdates++
+            }
+            if (soldOut != null) setEnabled(i, row.key !in soldOut)
+            if (offMenu != null) setVisible(i, row.key !in offMenu)
+        }
+        if (subtotal != renderedSubtotal) {
+            subtotalView.text = subtotalView.context.getString(R.string.subtotal, subtotal)
+            renderedSubtotal = subtotal
+            viewUpdates++
+        }
+    }
+
+    /**
+     * Apply the changes of [update] to the rows of the category of [type], moving them inside
+     * [group] when their order changed. Changes only apply as such on top of the listing they
+     * were computed from; otherwise, e.g. on the first update, the rows are brought in line with
+     * the whole listing.
+     */
+    fun apply(update: MenuDiffer.Update, type: Int, group: ViewGroup) {
+        val full = update.baseVersion != appliedVersion
+        appliedVersion = update.listing.version
+        val changes = if (full) {
+            MenuDiff.between(emptyList(), update.listing.entries(type))
+        } else {
+            update.changes(type) ?: return
+        }
+        for (entry in changes.inserted) setEntry(entry, type)
+        for (entry in changes.changed) setEntry(entry, type)
+        if (full || changes.removed.isNotEmpty() || changes.inserted.isNotEmpty()) {
+            val listed = changes.order.toHashSet()
+            for (i in rows.indices) setVisible(i, rows[i].key in listed)
+        }
+        if ((full || changes.moved.isNotEmpty()) && reorderMenuRows(group, rows, changes.order)) {
+            viewUpdates++
+        }
+    }
+
+    private fun setEntry(entry: MenuEntry, type: Int) {
+        val i = rows.indexOfFirst { it.key == entry.key }
+        if (i < 0) return
+        val item = MenuItem(entry.name, entry.description, entry.priceCents / 100.0, type)
+        if (item != renderedItems[i]) {
+            val row = rows[i]
+            row.button.text = item.name
+            MenuTextPrecomputer.bind(row.description, item)
+            row.price.text = item.getFormattedPrice()
+            renderedItems[i] = item
+            viewUpdates += 3
+        }
+        setEnabled(i, entry.available)
+    }
+
+    private fun setEnabled(i: Int, enabled: Boolean) {
+        if (enabled != renderedEnabled[i]) {
+            rows[i].button.isEnabled = enabled
+            renderedEnabled[i] = enabled
+            viewUpdates++
+        }
+    }
+
+    private fun setVisible(i: Int, visible: Boolean) {
+        if (visible != renderedVisible[i]) {
+            rows[i].isVisible = visible
+            renderedVisible[i] = visible
+            viewUpdates++
+        }
+    }
+}
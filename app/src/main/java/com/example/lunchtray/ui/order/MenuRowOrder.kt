@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.ui.order
+
+import android.view.View
+import android.view.ViewGroup
+
+/**
+ * Move the views of [rows] inside [group] so the rows follow the order of [keys]. Rows whose key
+ * isn't in [keys] go last, in their current order. The other children of [group], such as the
+ * dividers between rows, keep their place between rows.
+ *
+ * Returns false if the rows were already in that order.
+ */
+fun reorderMenuRows(group: ViewGroup, rows: List<MenuRow>, keys: List<String>): Boolean {
+    val current = rows.sortedBy { group.indexOfChild(it.button) }
+    val ordered = current.sortedBy { row ->
+        keys.indexOf(row.key).let { if (it < 0) keys.size else it }
+    }
+    if (ordered == current) return false
+
+    val rowViews = rows.flatMapTo(HashSet<View>()) { listOf(it.button, it.description, it.price) }
+    val separators = (0 until group.childCount).map(group::getChildAt).filter { it !in rowViews }
+    group.removeAllViews()
+    ordered.forEachIndexed { i, row ->
+        group.addView(row.button)
+        group.addView(row.description)
+        group.addView(row.price)
+        separators.getOrNull(i)?.let(group::addView)
+    }
+    separators.drop(ordered.size).forEach(group::addView)
+    return true
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.ui.order
+
+import android.os.Process
+import android.util.LruCache
+import android.widget.TextView
+import androidx.core.text.PrecomputedTextCompat
+import androidx.core.widget.TextViewCompat
+import androidx.databinding.BindingAdapter
+import com.example.lunchtray.R
+import com.example.lunchtray.data.DataSource
+import com.example.lunchtray.model.MenuItem
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+
+/**
+ * Lays out menu item descriptions on a background thread ahead of time, so binding a menu row
+ * doesn't have to measure its description on the main thread.
+ *
+ * Results are cached per item and text appearance (the [PrecomputedTextCompat.Params] of the
+ * TextView that displays them). A description that isn't ready yet is shown as plain text and
+ * replaced by its precomputed layout once it is; the main thread never waits for it.
+ */
+object MenuTextPrecomputer {
+
+    // Maximum number of precomputed descriptions kept in memory
+    private const val CACHE_SIZE = 64
+
+    private data class Key(val item: MenuItem, val params: PrecomputedTextCompat.Params)
+
+    private val cache = LruCache<Key, PrecomputedTextCompat>(CACHE_SIZE)
+
+    // Descriptions queued or being laid out
+    private val inFlight = ConcurrentHashMap<Key, Future<PrecomputedTextCompat>>()
+
+    // Text appearances whose whole menu has been queued
+    private val prefetched = ConcurrentHashMap.newKeySet<PrecomputedTextCompat.Params>()
+
+    private val executor = Executors.newSingleThreadExecutor { runnable ->
+        Thread({
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+            runnable.run()
+        }, "menu-text").apply { isDaemon = true }
+    }
+
+    /**
+     * Queue the descriptions of [items] to be laid out with [params].
+     */
+    fun prefetch(items: Collection<MenuItem>, params: PrecomputedTextCompat.Params) {
+        items.forEach {
+            val key = Key(it, params)
+            if (cache.get(key) == null) submit(key)
+        }
+    }
+
+    /**
+     * Display the description of [item] in [textView], using precomputed text when it's ready.
+     */
+    fun bind(textView: TextView, item: MenuItem?) {
+        if (item == null) {
+            textView.setTag(R.id.menu_text_key, null)
+            textView.text = null
+            return
+        }
+        val params = TextViewCompat.getTextMetricsParams(textView)
+        val key = Key(item, params)
+        textView.setTag(R.id.menu_text_key, key)
+        val cached = cache.get(key)
+        if (cached != null) {
+            TextViewCompat.setPrecomputedText(textView, cached)
+            return
+        }
+        // First time we see this text appearance: lay out the rest of the menu as well
+        if (prefetched.add(params)) prefetch(DataSource.menuItems.values, params)
+        submit(key)
+        textView.text = item.description
+        // Runs after the layout, on the same thread: swap it in unless the view moved on
+        executor.execute {
+            textView.post {
+                val text = cache.get(key)
+                if (text != null && textView.getTag(R.id.menu_text_key) == key) {
+                    TextViewCompat.setPrecomputedText(textView, text)
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until the descriptions queued so far are laid out, for tests.
+     */
+    internal fun awaitQueued() {
+        executor.submit { }.get()
+    }
+
+    private fun submit(key: Key): Future<PrecomputedTextCompat> {
+        inFlight[key]?.let { return it }
+        val task = FutureTask {
+            try {
+                PrecomputedTextCompat.create(key.item.description, key.params).also {
+                    cache.put(key, it)
+                }
+            } finally {
+                // Also when it failed, so the next bind tries again
+                inFlight.remove(key)
+            }
+        }
+        val existing = inFlight.putIfAbsent(key, task)
+        if (existing != null) return existing
+        executor.execute(task)
+        return task
+    }
+}
+
+/**
+ * Binding adapter for menu item descriptions.
+ */
+@BindingAdapter("menuDescription")
+fun bindMenuDescription(textView: TextView, item: MenuItem?) {
+    MenuTextPrecomputer.bind(textView, item)
+}
@@ -22,8 +22,12 @@ import android.view.ViewGroup
 import androidx.fragment.app.Fragment
 import androidx.fragment.app.activityViewModels
 import androidx.navigation.fragment.findNavController
+import com.example.lunchtray.BR
 import com.example.lunchtray.R
+import com.example.lunchtray.constants.ItemType
 import com.example.lunchtray.databinding.FragmentSideMenuBinding
+import com.example.lunchtray.metrics.OrderFlowMetrics
+import com.example.lunchtray.metrics.OrderTrace
 import com.example.lunchtray.model.OrderViewModel
 
 /**
@@ -38,8 +42,12 @@ class SideMenuFragment : Fragment() {
     // This property is only valid between onCreateView and
     // onDestroyView.
     private val binding get() = _binding!!
+    // When onCreateView started, for the first frame metric
+    private var createdAt = 0L
     // Use the 'by activityViewModels()' Kotlin property delegate from the fragment-ktx artifact
     private val sharedViewModel: OrderViewModel by activityViewModels()
+    // Draws the menu from the order state, valid between onViewCreated and onDestroyView.
+    private var renderer: MenuRenderer? = null
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -48,18 +56,58 @@ class SideMenuFragment : Fragment() {
     override fun onCreateView(
         inflater: LayoutInflater, container: ViewGroup?,
         savedInstanceState: Bundle?
-    ): View? {
-        _binding = FragmentSideMenuBinding.inflate(inflater, container, false)
-        val root = binding.root
-        return root
+    ): View? = OrderTrace.section("SideMenuFragment.onCreateView") {
+        createdAt = OrderFlowMetrics.now()
+        _binding = stepPrewarmer?.take(R.layout.fragment_side_menu)
+            ?: FragmentSideMenuBinding.inflate(inflater, container, false)
+        binding.root
     }
 
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
-        binding.apply {
-            lifecycleOwner = viewLifecycleOwner
-            viewModel = sharedViewModel
-            sideMenuFragment = this@SideMenuFragment
+        OrderTrace.section("SideMenuFragment.onViewCreated") {
+            OrderFlowMetrics.recordFirstFrame(view, R.id.sideMenuFragment, createdAt)
+            val rows = binding.run {
+                listOf(
+                    MenuRow("salad", salad, saladDescription, saladPrice),
+                    MenuRow("soup", soup, soupDescription, soupPrice),
+                    MenuRow("potatoes", potatoes, potatoDescription, potatoPrice),
+                    MenuRow("rice", rice, riceDescription, ricePrice)
+                )
+            }
+            renderer = MenuRenderer(rows, binding.subtotal)
+            rows.forEach { row ->
+                row.button.setOnClickListener { sharedViewModel.setSide(row.key) }
+            }
+            binding.nextButton.setOnClickListener { goToNextScreen() }
+            binding.cancelButton.setOnClickListener { cancelOrder() }
+            // Re-render whenever the selection or the subtotal changes
+            sharedViewModel.side.observe(viewLifecycleOwner) { render() }
+            sharedViewModel.subtotal.observe(viewLifecycleOwner) { render() }
+            // Rows follow the menu: the sides people usually pair with the chosen entree lead, sold
+            // out items are disabled, items off the menu at this time of day hidden, and only the
+            // rows that changed are touched
+            sharedViewModel.menuUpdates.observe(viewLifecycleOwner) { update ->
+                renderer?.apply(update, ItemType.SIDE_DISH, binding.sideOptions)
+            }
+            // Prepare the next step while the user is choosing
+            stepPrewarmer?.prewarmAfter(R.id.sideMenuFragment, view.parent as? ViewGroup) {
+                it.setVariable(BR.viewModel, sharedViewModel)
+            }
+        }
+    }
+
+    /**
+     * Render the menu from the current order state.
+     */
+    private fun render() {
+        OrderTrace.countRebind()
+        OrderFlowMetrics.timeBinding(R.id.sideMenuFragment) {
+            renderer?.render(
+                sharedViewModel.menuItems,
+                sharedViewModel.side.value,
+                sharedViewModel.subtotal.value
+            )
         }
     }
 
@@ -67,7 +115,9 @@ class SideMenuFragment : Fragment() {
      * Navigate to the accompaniments menu fragment
      */
     fun goToNextScreen() {
-       findNavController().navigate(R.id.action_sideMenuFragment_to_accompanimentMenuFragment)
+        OrderTrace.section("Navigate action_sideMenuFragment_to_accompanimentMenuFragment") {
+            findNavController().navigate(R.id.action_sideMenuFragment_to_accompanimentMenuFragment)
+        }
     }
 
     /**
@@ -75,7 +125,9 @@ class SideMenuFragment : Fragment() {
      */
     fun cancelOrder() {
         sharedViewModel.resetOrder()
-        findNavController().navigate(R.id.action_sideMenuFragment_to_startOrderFragment)
+        OrderTrace.section("Navigate action_sideMenuFragment_to_startOrderFragment") {
+            findNavController().navigate(R.id.action_sideMenuFragment_to_startOrderFragment)
+        }
     }
 
     /**
@@ -84,6 +136,7 @@ class SideMenuFragment : Fragment() {
      */
     override fun onDestroyView() {
         super.onDestroyView()
+        renderer = null
         _binding = null
     }
 }
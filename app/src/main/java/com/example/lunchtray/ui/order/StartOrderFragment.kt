@@ -23,6 +23,8 @@ import androidx.fragment.app.Fragment
 import androidx.navigation.fragment.findNavController
 import com.example.lunchtray.R
 import com.example.lunchtray.databinding.FragmentStartOrderBinding
+import com.example.lunchtray.metrics.OrderFlowMetrics
+import com.example.lunchtray.metrics.OrderTrace
 
 /**
  * [StartOrderFragment] allows people to click the start button to start an order.
@@ -37,21 +39,30 @@ class StartOrderFragment : Fragment() {
     // This property is only valid between onCreateView and
     // onDestroyView.
     private val binding get() = _binding!!
+    // When onCreateView started, for the first frame metric
+    private var createdAt = 0L
 
     override fun onCreateView(
         inflater: LayoutInflater,
         container: ViewGroup?,
         savedInstanceState: Bundle?
-    ): View? {
+    ): View? = OrderTrace.section("StartOrderFragment.onCreateView") {
+        createdAt = OrderFlowMetrics.now()
         _binding = FragmentStartOrderBinding.inflate(inflater, container, false)
-        val root: View = binding.root
-        // Navigate to entree menu
-        return root
+        binding.root
     }
 
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         super.onViewCreated(view, savedInstanceState)
-        binding.startOrderFragment = this@StartOrderFragment
+        OrderTrace.section("StartOrderFragment.onViewCreated") {
+            OrderFlowMetrics.recordFirstFrame(view, R.id.startOrder, createdAt)
+            OrderFlowMetrics.timeBinding(R.id.startOrder) {
+                binding.startOrderFragment = this@StartOrderFragment
+                binding.executePendingBindings()
+            }
+            // Prepare the entree menu while the start screen is showing
+            stepPrewarmer?.prewarmAfter(R.id.startOrder, view.parent as? ViewGroup)
+        }
     }
 
     /**
@@ -64,6 +75,8 @@ class StartOrderFragment : Fragment() {
     }
 
     fun startOrder(){
-        findNavController().navigate(R.id.action_startOrderFragment_to_entreeMenuFragment)
+        OrderTrace.section("Navigate action_startOrderFragment_to_entreeMenuFragment") {
+            findNavController().navigate(R.id.action_startOrderFragment_to_entreeMenuFragment)
+        }
     }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.ui.order
+
+import android.content.Context
+import android.util.SparseArray
+import android.util.SparseBooleanArray
+import android.view.ViewGroup
+import androidx.annotation.IdRes
+import androidx.annotation.LayoutRes
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater
+import androidx.databinding.DataBindingUtil
+import androidx.databinding.ViewDataBinding
+import androidx.fragment.app.Fragment
+import com.example.lunchtray.R
+
+/**
+ * [StepPrewarmer] inflates the layout of the next step of the order flow on a background thread
+ * while the user is still deciding on the current one. When the user taps "Next", the destination
+ * fragment takes the prepared binding instead of inflating its layout on the main thread.
+ *
+ * All bookkeeping happens on the main thread: [AsyncLayoutInflater] only inflates in the background
+ * and delivers its result through a main thread callback.
+ */
+class StepPrewarmer(context: Context) {
+
+    /**
+     * Implemented by the activity hosting the order flow.
+     */
+    interface Host {
+        val stepPrewarmer: StepPrewarmer
+    }
+
+    private val asyncInflater = AsyncLayoutInflater(context)
+
+    // Prepared bindings, keyed by layout resource id
+    private val prepared = SparseArray<ViewDataBinding>()
+
+    // Layouts currently being inflated in the background
+    private val pending = SparseBooleanArray()
+
+    /**
+     * Number of times a fragment found its layout already prepared.
+     */
+    var hits = 0
+        private set
+
+    /**
+     * Number of times a fragment had to inflate its layout itself.
+     */
+    var misses = 0
+        private set
+
+    /**
+     * Start inflating the layout of the step that follows [destinationId] in the order flow.
+     * [preBind] runs on the main thread once the layout is inflated, before the bindings are
+     * executed for the first time.
+     */
+    fun prewarmAfter(
+        @IdRes destinationId: Int,
+        parent: ViewGroup?,
+        preBind: ((ViewDataBinding) -> Unit)? = null
+    ) {
+        val next = ORDER_FLOW.indexOfFirst { it.first == destinationId } + 1
+        if (next in 1 until ORDER_FLOW.size) {
+            prewarm(ORDER_FLOW[next].second, parent, preBind)
+        }
+    }
+
+    /**
+     * Start inflating [layoutId] unless it's already prepared or being inflated.
+     */
+    fun prewarm(
+        @LayoutRes layoutId: Int,
+        parent: ViewGroup?,
+        preBind: ((ViewDataBinding) -> Unit)? = null
+    ) {
+        if (prepared[layoutId] != null || pending[layoutId]) return
+        pending.put(layoutId, true)
+        asyncInflater.inflate(layoutId, parent) { view, resid, _ ->
+            pending.delete(resid)
+            val binding = DataBindingUtil.bind<ViewDataBinding>(view) ?: return@inflate
+            preBind?.invoke(binding)
+            binding.executePendingBindings()
+            prepared.put(resid, binding)
+        }
+    }
+
+    /**
+     * Take the prepared binding for [layoutId], or null if it isn't ready yet. A binding can only
+     * be taken once.
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T : ViewDataBinding> take(@LayoutRes layoutId: Int): T? {
+        val binding = prepared[layoutId]
+        if (binding == null) {
+            misses++
+            return null
+        }
+        prepared.remove(layoutId)
+        hits++
+        return binding as T
+    }
+
+    /**
+     * Drop every prepared binding.
+     */
+    fun clear() {
+        prepared.clear()
+    }
+
+    companion object {
+        // The order flow is linear: each destination is followed by the next one in this list.
+        private val ORDER_FLOW = listOf(
+            R.id.startOrder to R.layout.fragment_start_order,
+            R.id.entreeMenuFragment to R.layout.fragment_entree_menu,
+            R.id.sideMenuFragment to R.layout.fragment_side_menu,
+            R.id.accompanimentMenuFragment to R.layout.fragment_accompaniment_menu,
+            R.id.checkoutFragment to R.layout.fragment_checkout
+        )
+    }
+}
+
+/**
+ * The [StepPrewarmer] of the hosting activity, or null when the fragment is hosted elsewhere
+ * (e.g. in tests).
+ */
+internal val Fragment.stepPrewarmer: StepPrewarmer?
+    get() = (activity as? StepPrewarmer.Host)?.stepPrewarmer
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import androidx.lifecycle.SavedStateHandle
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.data.MenuSchedule
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class OrderViewModelTest {
+
+    private val window =
+        MenuSchedule.catalog.windowAt(MenuSchedule.minuteOfDay(System.currentTimeMillis()))
+
+    // An item of the category of [type] on the menu now
+    private fun served(type: Int) = (0 until Catalog.SIZE)
+        .first { Catalog.type(it) == type && window.isServed(it) }
+
+    private fun saved(savedState: SavedStateHandle) =
+        OrderCodec.decode(savedState.get<ByteArray>(OrderViewModel.KEY_ORDER)!!)!!
+
+    @Test
+    fun `order_is_restored_from_saved_state`() {
+        val order = OrderState(
+            entree = served(ItemType.ENTREE),
+            side = served(ItemType.SIDE_DISH),
+            accompaniment = served(ItemType.ACCOMPANIMENT)
+        )
+        val savedState =
+            SavedStateHandle(mapOf(OrderViewModel.KEY_ORDER to OrderCodec.encode(order)))
+        val viewModel = OrderViewModel(savedState)
+
+        val restored = viewModel.store.state
+        assertEquals(order.entree, restored.entree)
+        assertEquals(order.side, restored.side)
+        assertEquals(order.accompaniment, restored.accompaniment)
+        assertEquals(Catalog.menuItem(order.entree), viewModel.entree.value)
+        assertEquals(Pricing.format(order.subtotalCents), viewModel.subtotal.value)
+        // And saved again as it is
+        assertEquals(order.side, saved(savedState).side)
+    }
+
+    @Test
+    fun `new_order_starts_empty`() {
+        val savedState = SavedStateHandle()
+        val viewModel = OrderViewModel(savedState)
+        assertEquals(OrderState.NONE, viewModel.store.state.entree)
+        assertNull(viewModel.entree.value)
+        assertEquals(OrderState.NONE, saved(savedState).entree)
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.ui.order
+
+import android.view.ContextThemeWrapper
+import android.view.LayoutInflater
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.example.lunchtray.R
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.data.MenuDiff
+import com.example.lunchtray.data.MenuDiffer
+import com.example.lunchtray.data.MenuEntry
+import com.example.lunchtray.data.MenuListing
+import com.example.lunchtray.databinding.FragmentSideMenuBinding
+import com.example.lunchtray.inventory.Inventory
+import com.example.lunchtray.model.OrderViewModel
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Checks that [MenuRenderer] draws the menu screens and only touches the views that changed.
+ */
+@RunWith(AndroidJUnit4::class)
+class MenuRendererTest {
+
+    private val inflater = LayoutInflater.from(
+        ContextThemeWrapper(ApplicationProvider.getApplicationContext(), R.style.Theme_LunchTray)
+    )
+
+    @Test
+    fun `renderer_updates_only_changed_views`() {
+        val viewModel = OrderViewModel()
+        val binding = FragmentSideMenuBinding.inflate(inflater)
+        val renderer = sideRenderer(binding)
+
+        renderer.render(viewModel.menuItems, viewModel.side.value, viewModel.subtotal.value)
+        val initialUpdates = renderer.viewUpdates
+        assertEquals("Summer Salad", binding.salad.text.toString())
+        assertEquals("Subtotal: $0.00", binding.subtotal.text.toString())
+
+        viewModel.setSide("soup")
+        renderer.render(viewModel.menuItems, viewModel.side.value, viewModel.subtotal.value)
+        // One radio button checked and the subtotal
+        assertEquals(initialUpdates + 2, renderer.viewUpdates)
+        assertTrue(binding.soup.isChecked)
+        assertFalse(binding.salad.isChecked)
+        assertEquals("Subtotal: $3.00", binding.subtotal.text.toString())
+
+        // Nothing changed, nothing to do
+        renderer.render(viewModel.menuItems, viewModel.side.value, viewModel.subtotal.value)
+        assertEquals(initialUpdates + 2, renderer.viewUpdates)
+    }
+
+    @Test
+    fun `sold_out_items_are_disabled`() {
+        val viewModel = OrderViewModel()
+        val binding = FragmentSideMenuBinding.inflate(inflater)
+        val renderer = sideRenderer(binding)
+        val soup = Catalog.ordinalOf("soup")
+        viewModel.setSide("salad")
+        renderer.render(viewModel.menuItems, viewModel.side.value, viewModel.subtotal.value)
+        val updates = renderer.viewUpdates
+
+        try {
+            viewModel.inventory.restock(soup, 0)
+            renderer.render(
+                viewModel.menuItems,
+                viewModel.side.value,
+                viewModel.subtotal.value,
+                viewModel.soldOut.value
+            )
+            assertFalse(binding.soup.isEnabled)
+            assertTrue(binding.salad.isEnabled)
+            assertTrue(binding.salad.isChecked)
+            // Only the soup row changed
+            assertEquals(updates + 1, renderer.viewUpdates)
+
+            // Sold out items can't be picked
+            viewModel.setSide("soup")
+            assertEquals("Summer Salad", viewModel.side.value?.name)
+        } finally {
+            viewModel.inventory.restock(soup, Inventory.UNLIMITED)
+        }
+    }
+
+    @Test
+    fun `rows_are_reordered_with_their_descriptions`() {
+        val binding = FragmentSideMenuBinding.inflate(inflater)
+        val rows = binding.run {
+            listOf(
+                MenuRow("salad", salad, saladDescription, saladPrice),
+                MenuRow("soup", soup, soupDescription, soupPrice),
+                MenuRow("potatoes", potatoes, potatoDescription, potatoPrice),
+                MenuRow("rice", rice, riceDescription, ricePrice)
+            )
+        }
+        val group = binding.sideOptions
+        val childCount = group.childCount
+
+        assertTrue(reorderMenuRows(group, rows, listOf("rice", "soup")))
+        assertFalse(reorderMenuRows(group, rows, listOf("rice", "soup", "salad")))
+        assertEquals(childCount, group.childCount)
+        val buttons = rows.map { it.button }.sortedBy { group.indexOfChild(it) }
+        assertEquals(listOf(binding.rice, binding.soup, binding.salad, binding.potatoes), buttons)
+        assertEquals(
+            group.indexOfChild(binding.rice) + 1,
+            group.indexOfChild(binding.riceDescription)
+        )
+    }
+
+    @Test
+    fun `menu_updates_only_touch_changed_rows`() {
+        val binding = FragmentSideMenuBinding.inflate(inflater)
+        val renderer = sideRenderer(binding)
+        val group = binding.sideOptions
+        val sides = listOf(
+            MenuEntry("salad", "Summer Salad", "Heirloom tomatoes", 250, true),
+            MenuEntry("soup", "Butternut Squash Soup", "Roasted squash", 300, true),
+            MenuEntry("potatoes", "Spicy Potatoes", "Marinated potatoes", 200, true),
+            MenuEntry("rice", "Coconut Rice", "Rice in coconut milk", 150, true)
+        )
+        val first = MenuListing(1, mapOf(ItemType.SIDE_DISH to sides))
+        // The first update brings every row in line
+        renderer.apply(MenuDiffer.Update(first, 0, emptyMap()), ItemType.SIDE_DISH, group)
+        val updates = renderer.viewUpdates
+        assertEquals("Summer Salad", binding.salad.text.toString())
+
+        // Soup sells out and rice leads
+        val next = listOf(sides[3], sides[0], sides[1].copy(available = false), sides[2])
+        val second = MenuListing(2, mapOf(ItemType.SIDE_DISH to next))
+        val changes = mapOf(ItemType.SIDE_DISH to MenuDiff.between(sides, next))
+        renderer.apply(MenuDiffer.Update(second, 1, changes), ItemType.SIDE_DISH, group)
+        assertFalse(binding.soup.isEnabled)
+        assertTrue(binding.salad.isEnabled)
+        // The soup row and one move
+        assertEquals(updates + 2, renderer.viewUpdates)
+        val buttons = listOf(binding.salad, binding.soup, binding.potatoes, binding.rice)
+        assertEquals(binding.rice, buttons.minByOrNull { group.indexOfChild(it) })
+    }
+
+    private fun sideRenderer(binding: FragmentSideMenuBinding) = binding.run {
+        MenuRenderer(
+            listOf(
+                MenuRow("salad", salad, saladDescription, saladPrice),
+                MenuRow("soup", soup, soupDescription, soupPrice),
+                MenuRow("potatoes", potatoes, potatoDescription, potatoPrice),
+                MenuRow("rice", rice, riceDescription, ricePrice)
+            ),
+            subtotal
+        )
+    }
+}
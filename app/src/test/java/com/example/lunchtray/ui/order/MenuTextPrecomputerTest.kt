@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.ui.order
+
+import android.os.Looper
+import android.text.Spanned
+import android.view.ContextThemeWrapper
+import androidx.appcompat.widget.AppCompatTextView
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.example.lunchtray.R
+import com.example.lunchtray.data.DataSource
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Shadows.shadowOf
+
+@RunWith(AndroidJUnit4::class)
+class MenuTextPrecomputerTest {
+
+    private val context =
+        ContextThemeWrapper(ApplicationProvider.getApplicationContext(), R.style.Theme_LunchTray)
+
+    private val pasta = DataSource.menuItems.getValue("pasta")
+    private val chili = DataSource.menuItems.getValue("chili")
+
+    private fun laidOut() {
+        MenuTextPrecomputer.awaitQueued()
+        shadowOf(Looper.getMainLooper()).idle()
+    }
+
+    @Test
+    fun `description_shows_at_once_and_precomputed_text_when_ready`() {
+        // A text size of its own, so nothing is cached for it yet
+        val view = AppCompatTextView(context).apply { textSize = 17f }
+        MenuTextPrecomputer.bind(view, pasta)
+        assertEquals(pasta.description, view.text.toString())
+
+        laidOut()
+        assertEquals(pasta.description, view.text.toString())
+        assertTrue(view.text is Spanned)
+    }
+
+    @Test
+    fun `late_text_is_not_shown_in_a_view_bound_to_another_item`() {
+        val view = AppCompatTextView(context).apply { textSize = 19f }
+        MenuTextPrecomputer.bind(view, pasta)
+        MenuTextPrecomputer.bind(view, null)
+        view.text = chili.description
+
+        laidOut()
+        assertEquals(chili.description, view.text.toString())
+        assertFalse(view.text is Spanned)
+    }
+}
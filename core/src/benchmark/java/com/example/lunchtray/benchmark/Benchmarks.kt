@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.benchmark
+
+private const val USAGE = """Usage: benchmark [name ...]
+Runs the named benchmarks, or all of them:
+  catalog      the old map of menu items against lookups in the generated catalog
+  inventory    taking stock with compare-and-set against a lock, by number of submitters
+  repricing    re-pricing millions of orders on one thread against the fork-join pool
+  codec        size and encode and decode time of the binary order format against JSON
+  report       sales report of a million orders on one thread against the fork-join pool"""
+
+// Benchmarks by name, in the order they run
+private val BENCHMARKS = linkedMapOf<String, () -> Unit>(
+    "catalog" to ::catalogStartup,
+    "inventory" to ::inventoryContention,
+    "repricing" to ::bulkRepricing,
+    "codec" to ::orderCodec,
+    "report" to ::salesReport
+)
+
+fun main(args: Array<String>) {
+    if (args.any { it !in BENCHMARKS }) {
+        System.err.println(USAGE)
+        return
+    }
+    for (name in args.ifEmpty { BENCHMARKS.keys.toTypedArray() }) {
+        println("== $name")
+        BENCHMARKS.getValue(name)()
+    }
+}
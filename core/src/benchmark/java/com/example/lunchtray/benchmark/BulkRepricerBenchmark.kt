@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.benchmark
+
+import com.example.lunchtray.model.BulkRepricer
+import com.example.lunchtray.model.OrderColumns
+import com.example.lunchtray.model.PricedColumns
+import java.util.Random
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Time to re-price four million orders on one thread against the common fork-join pool.
+ */
+internal fun bulkRepricing() {
+    val random = Random(42)
+    val orders = OrderColumns(4_000_000)
+    for (row in 0 until orders.size) {
+        orders.set(row, randomOrder(random), if (random.nextInt(10) == 0) 2 else 1)
+    }
+    val priced = PricedColumns(orders.size)
+    val sequential = BulkRepricer(pool = ForkJoinPool(1))
+    val parallel = BulkRepricer()
+    repeat(3) {
+        var start = System.nanoTime()
+        sequential.repriceInto(orders, priced)
+        val sequentialMillis = (System.nanoTime() - start) / 1_000_000
+        start = System.nanoTime()
+        parallel.repriceInto(orders, priced)
+        val parallelMillis = (System.nanoTime() - start) / 1_000_000
+        println("${orders.size} orders: 1 thread ${sequentialMillis}ms, " +
+                "${ForkJoinPool.commonPool().parallelism} threads ${parallelMillis}ms")
+    }
+}
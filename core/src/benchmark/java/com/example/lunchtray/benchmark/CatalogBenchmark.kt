@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.benchmark
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.MenuItem
+
+/**
+ * Startup cost of building the map of [MenuItem]s that DataSource used to build on first access
+ * and looking every item up in it, against looking every item up in the generated [Catalog].
+ */
+internal fun catalogStartup() {
+    val iterations = 200_000
+    val keys = (0 until Catalog.SIZE).map { Catalog.key(it) }
+    fun buildMap(): Map<String, MenuItem> = keys.indices.associate {
+        keys[it] to MenuItem(
+            name = Catalog.name(it),
+            description = Catalog.description(it),
+            price = Catalog.priceCents(it) / 100.0,
+            type = Catalog.type(it)
+        )
+    }
+    fun lookupAll(): Int {
+        var sum = 0
+        for (key in keys) sum += Catalog.type(Catalog.ordinalOf(key))
+        return sum
+    }
+    var sink = 0
+
+    // Warm up both paths
+    repeat(iterations / 10) {
+        sink += buildMap().size + lookupAll()
+    }
+
+    var start = System.nanoTime()
+    repeat(iterations) {
+        val map = buildMap()
+        for (key in keys) sink += map[key]!!.type
+    }
+    val mapNanos = (System.nanoTime() - start) / iterations
+
+    start = System.nanoTime()
+    repeat(iterations) {
+        sink += lookupAll()
+    }
+    val catalogNanos = (System.nanoTime() - start) / iterations
+
+    println("Build and look up every item: map ${mapNanos}ns, catalog ${catalogNanos}ns ($sink)")
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.benchmark
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.inventory.Inventory
+import java.util.concurrent.CountDownLatch
+import kotlin.concurrent.thread
+
+/**
+ * Takes per second from one item's stock with more and more concurrent submitters, for the
+ * compare-and-set [Inventory] against a counter behind a lock.
+ */
+internal fun inventoryContention() {
+    val soup = Catalog.ordinalOf("soup")
+    val rounds = 2_000_000
+    for (threads in listOf(1, 4, 16, 64)) {
+        val cas = Inventory().apply { restock(soup, Int.MAX_VALUE - 1) }
+        val lock = Any()
+        var locked = Int.MAX_VALUE - 1
+        val casNanos = timeSubmitters(threads, rounds) { cas.take(soup) }
+        val lockNanos = timeSubmitters(threads, rounds) {
+            synchronized(lock) { if (locked > 0) locked-- }
+        }
+        println("$threads submitters: CAS ${rounds * 1_000L / casNanos}M takes/s, " +
+                "lock ${rounds * 1_000L / lockNanos}M takes/s")
+    }
+}
+
+private fun timeSubmitters(threads: Int, rounds: Int, take: () -> Unit): Long {
+    val start = CountDownLatch(1)
+    val submitters = List(threads) {
+        thread {
+            start.await()
+            repeat(rounds / threads) { take() }
+        }
+    }
+    val startedAt = System.nanoTime()
+    start.countDown()
+    submitters.forEach { it.join() }
+    return System.nanoTime() - startedAt
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.benchmark
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderDecoder
+import com.example.lunchtray.model.OrderEncoder
+import com.example.lunchtray.model.OrderState
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.util.Random
+
+private class Entry(val order: OrderState, val timestampMillis: Long)
+
+/**
+ * Size, encode and decode time per order of the binary order format against the JSON an order
+ * would otherwise be written as.
+ */
+internal fun orderCodec() {
+    val random = Random(44)
+    var timestamp = 1_630_000_000_000L
+    val entries = List(200_000) {
+        // Mostly increasing, sometimes out of order
+        timestamp += random.nextInt(60_000) - 5_000
+        Entry(randomOrder(random), timestamp)
+    }
+    val count = entries.size
+    repeat(3) {
+        var start = System.nanoTime()
+        val binary = encode(entries)
+        val binaryEncodeNanos = System.nanoTime() - start
+        start = System.nanoTime()
+        val decoder = OrderDecoder(ByteBuffer.wrap(binary))
+        var binarySum = 0L
+        while (decoder.next()) binarySum += decoder.totalCents + decoder.entree
+        val binaryDecodeNanos = System.nanoTime() - start
+
+        start = System.nanoTime()
+        val json = encodeJson(entries)
+        val jsonEncodeNanos = System.nanoTime() - start
+        start = System.nanoTime()
+        val jsonSum = decodeJson(json)
+        val jsonDecodeNanos = System.nanoTime() - start
+        check(binarySum == jsonSum) { "Binary and JSON orders differ" }
+
+        println("$count orders: binary ${binary.size / count} B/order, " +
+                "encode ${binaryEncodeNanos / count}ns, decode ${binaryDecodeNanos / count}ns; " +
+                "JSON ${json.size / count} B/order, " +
+                "encode ${jsonEncodeNanos / count}ns, decode ${jsonDecodeNanos / count}ns")
+    }
+}
+
+private fun encode(entries: List<Entry>): ByteArray {
+    val bytes = ByteArrayOutputStream()
+    OrderEncoder(bytes).use { encoder ->
+        entries.forEach { encoder.write(it.order, it.timestampMillis, it.order.totalCents) }
+    }
+    return bytes.toByteArray()
+}
+
+// The JSON an order would otherwise be written as, one object per line
+private fun encodeJson(entries: List<Entry>): ByteArray {
+    val json = StringBuilder()
+    for (entry in entries) {
+        json.append("{\"catalogVersion\":").append(Catalog.VERSION)
+            .append(",\"timestampMillis\":").append(entry.timestampMillis)
+            .append(",\"entree\":").append(entry.order.entree)
+            .append(",\"side\":").append(entry.order.side)
+            .append(",\"accompaniment\":").append(entry.order.accompaniment)
+            .append(",\"totalCents\":").append(entry.order.totalCents)
+            .append("}\n")
+    }
+    return json.toString().toByteArray()
+}
+
+private fun decodeJson(json: ByteArray): Long {
+    var sum = 0L
+    for (line in String(json).lineSequence()) {
+        if (line.isEmpty()) continue
+        val fields = line.substring(1, line.length - 1).split(',').associate {
+            val (name, value) = it.split(':')
+            name.trim('"') to value.toLong()
+        }
+        sum += fields.getValue("totalCents") + fields.getValue("entree")
+    }
+    return sum
+}
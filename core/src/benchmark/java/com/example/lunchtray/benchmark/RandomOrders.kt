@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.benchmark
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import java.util.Random
+
+// Items of each category, plus none
+private val byType = listOf(ItemType.ENTREE, ItemType.SIDE_DISH, ItemType.ACCOMPANIMENT)
+    .map { type ->
+        listOf(OrderState.NONE) + (0 until Catalog.SIZE).filter { Catalog.type(it) == type }
+    }
+
+/**
+ * An order of at most one item of each category, picked by [random].
+ */
+internal fun randomOrder(random: Random): OrderState {
+    val (entrees, sides, accompaniments) = byType
+    return OrderState(
+        entree = entrees[random.nextInt(entrees.size)],
+        side = sides[random.nextInt(sides.size)],
+        accompaniment = accompaniments[random.nextInt(accompaniments.size)]
+    )
+}
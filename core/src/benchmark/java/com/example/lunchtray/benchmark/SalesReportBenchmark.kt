@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.benchmark
+
+import com.example.lunchtray.model.OrderHistory
+import com.example.lunchtray.report.SalesReport
+import java.io.File
+import java.nio.file.Files
+import java.util.Random
+import java.util.TimeZone
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Time to generate the sales report of a day of a million orders on one thread against the
+ * common fork-join pool.
+ */
+internal fun salesReport() {
+    val utc = TimeZone.getTimeZone("UTC")
+    val directory = Files.createTempDirectory("sales-report").toFile()
+    try {
+        val dayStart = 1_630_000_000_000L / 86_400_000 * 86_400_000
+        val count = 1_000_000
+        val random = Random(46)
+        // Blocks are only written when full, or at close
+        OrderHistory(directory, flushDelayMillis = Long.MAX_VALUE, timeZone = utc).use { history ->
+            for (i in 0 until count) {
+                val order = randomOrder(random)
+                history.append(order, dayStart + i * (86_400_000L / count), order.totalCents)
+            }
+        }
+        val day = File(directory, directory.list()!!.single())
+        val report = File(directory, "report.csv")
+        for (pool in listOf(ForkJoinPool(1), ForkJoinPool.commonPool())) {
+            repeat(3) {
+                val start = System.nanoTime()
+                val totals = SalesReport(pool, utc).generate(day, report)
+                val millis = (System.nanoTime() - start) / 1_000_000
+                check(totals.orders == count.toLong()) { "${totals.orders} orders reported" }
+                println("${totals.orders} orders (${day.length() / 1024} KB), " +
+                        "parallelism ${pool.parallelism}: ${millis}ms")
+            }
+        }
+    } finally {
+        directory.deleteRecursively()
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import com.example.lunchtray.model.MenuItem
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Menu catalog compiled at build time from src/main/catalog/menu.tsv. Items are identified by
+ * their ordinal, their position in the menu definition.
+ */
+object Catalog {
+
+    /**
+     * Version of the catalog, derived from the menu definition.
+     */
+    const val VERSION = GeneratedCatalog.VERSION
+
+    /**
+     * Number of items in the catalog.
+     */
+    const val SIZE = GeneratedCatalog.SIZE
+
+    // MenuItem objects, created the first time each ordinal is asked for, from any thread
+    private val items = AtomicReferenceArray<MenuItem>(SIZE)
+
+    /**
+     * Return the ordinal of the item with the given [key], or -1 if there's no such item.
+     */
+    fun ordinalOf(key: String): Int {
+        val ordinal = GeneratedCatalog.SLOTS[hash(key, GeneratedCatalog.HASH_SEED) and
+                GeneratedCatalog.HASH_MASK]
+        return if (ordinal >= 0 && GeneratedCatalog.KEYS[ordinal] == key) ordinal else -1
+    }
+
+    fun key(ordinal: Int): String = GeneratedCatalog.KEYS[ordinal]
+
+    fun name(ordinal: Int): String = GeneratedCatalog.NAMES[ordinal]
+
+    fun description(ordinal: Int): String = GeneratedCatalog.DESCRIPTIONS[ordinal]
+
+    fun priceCents(ordinal: Int): Int = GeneratedCatalog.PRICE_CENTS[ordinal]
+
+    fun type(ordinal: Int): Int = GeneratedCatalog.TYPES[ordinal]
+
+    /**
+     * Return the [MenuItem] for [ordinal]. The same instance is returned on every call, from
+     * every thread.
+     */
+    fun menuItem(ordinal: Int): MenuItem {
+        items.get(ordinal)?.let { return it }
+        val item = MenuItem(
+            name = name(ordinal),
+            description = description(ordinal),
+            price = priceCents(ordinal) / 100.0,
+            type = type(ordinal)
+        )
+        // Another thread may have got there first: everyone keeps its item
+        return if (items.compareAndSet(ordinal, null, item)) item else items.get(ordinal)
+    }
+
+    /**
+     * Return the [MenuItem] with the given [key], or null if there's no such item.
+     */
+    fun menuItem(key: String): MenuItem? {
+        val ordinal = ordinalOf(key)
+        return if (ordinal >= 0) menuItem(ordinal) else null
+    }
+
+    /**
+     * FNV-1a over the UTF-16 code units of [key], with the high bits folded into the low ones.
+     * Must stay in sync with the generateCatalog task in core/build.gradle.
+     */
+    internal fun hash(key: String, seed: Int): Int {
+        var h = seed xor 0x811c9dc5.toInt()
+        for (c in key) {
+            h = (h xor c.code) * 0x01000193
+        }
+        return h xor (h ushr 16)
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.URL
+
+/**
+ * Keeps [file] up to date with the catalog snapshot served at [url].
+ *
+ * Fetches are conditional: the ETag of the snapshot in [file] is kept next to it and sent along,
+ * so an unchanged catalog costs a 304 and no body. A new snapshot is streamed to a temporary file
+ * as it arrives, without holding it in memory, then moved over [file] once complete.
+ */
+class CatalogFetcher(
+    private val url: URL,
+    val file: File,
+    private val timeoutMillis: Int = DEFAULT_TIMEOUT_MILLIS
+) {
+
+    private val etagFile = File(file.path + ".etag")
+    private val partFile = File(file.path + ".part")
+
+    /**
+     * ETag of the snapshot in [file], or null if there is none.
+     */
+    val etag: String?
+        get() = if (file.exists() && etagFile.exists()) etagFile.readText() else null
+
+    /**
+     * Fetch the snapshot unless [file] already holds it. Returns true if [file] was replaced.
+     */
+    @Throws(IOException::class)
+    fun fetch(): Boolean {
+        val connection = url.openConnection() as HttpURLConnection
+        try {
+            connection.connectTimeout = timeoutMillis
+            connection.readTimeout = timeoutMillis
+            etag?.let { connection.setRequestProperty("If-None-Match", it) }
+            when (val status = connection.responseCode) {
+                HttpURLConnection.HTTP_NOT_MODIFIED -> return false
+                HttpURLConnection.HTTP_OK -> Unit
+                else -> throw IOException("Catalog fetch failed: $status")
+            }
+            val length = connection.getHeaderField("Content-Length")?.toLongOrNull()
+            var received = 0L
+            FileOutputStream(partFile).use { out ->
+                connection.inputStream.use { input ->
+                    val buffer = ByteArray(BUFFER_BYTES)
+                    while (true) {
+                        val read = input.read(buffer)
+                        if (read < 0) break
+                        out.write(buffer, 0, read)
+                        received += read
+                    }
+                }
+                out.fd.sync()
+            }
+            if (length != null && received != length) {
+                partFile.delete()
+                throw IOException("Catalog cut short: $received of $length bytes")
+            }
+            if (!partFile.renameTo(file)) throw IOException("Cannot replace $file")
+            // Only once the snapshot is in place, so the ETag never describes an older one
+            val newEtag = connection.getHeaderField("ETag")
+            if (newEtag != null) etagFile.writeText(newEtag) else etagFile.delete()
+            return true
+        } finally {
+            connection.disconnect()
+        }
+    }
+
+    /**
+     * Price orders with the snapshot in [file] from now on, if there is one. Returns whether
+     * there was.
+     */
+    @Throws(IOException::class)
+    fun usePrices(): Boolean {
+        if (!file.exists()) return false
+        file.reader().use { CatalogSnapshot.usePrices(it) }
+        return true
+    }
+
+    companion object {
+        const val DEFAULT_TIMEOUT_MILLIS = 30_000
+        private const val BUFFER_BYTES = 16 * 1024
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.model.PriceTable
+import java.io.IOException
+import java.io.Reader
+import java.io.Writer
+
+/**
+ * The catalog as distributed to kiosks: a comment line with its version, then one line per item
+ * in the tab separated columns of menu.tsv. A snapshot is identified by its [etag], derived from
+ * the version.
+ */
+object CatalogSnapshot {
+
+    const val CONTENT_TYPE = "text/tab-separated-values; charset=utf-8"
+
+    private const val VERSION_PREFIX = "# catalog version "
+
+    fun etag(version: Long): String = "\"$version\""
+
+    /**
+     * Write the compiled [Catalog] to [out].
+     */
+    fun write(out: Writer) {
+        out.write("$VERSION_PREFIX${Catalog.VERSION}\n")
+        for (ordinal in 0 until Catalog.SIZE) {
+            out.write(Catalog.key(ordinal))
+            out.write("\t${Catalog.name(ordinal)}\t${Catalog.description(ordinal)}")
+            out.write("\t${Catalog.priceCents(ordinal)}\t${typeName(Catalog.type(ordinal))}\n")
+        }
+        out.flush()
+    }
+
+    /**
+     * The version in the first line of a snapshot, or null if [firstLine] isn't one.
+     */
+    fun versionOf(firstLine: String): Long? =
+        if (firstLine.startsWith(VERSION_PREFIX)) {
+            firstLine.substring(VERSION_PREFIX.length).trim().toLongOrNull()
+        } else {
+            null
+        }
+
+    /**
+     * Price orders with the snapshot read from [input] from now on. Its items are matched to
+     * the compiled [Catalog] by key; items the snapshot lacks keep their catalog price.
+     */
+    @Throws(IOException::class)
+    fun usePrices(input: Reader) {
+        val lines = input.buffered().lineSequence().iterator()
+        val version = (if (lines.hasNext()) versionOf(lines.next()) else null)
+            ?: throw IOException("Not a catalog snapshot")
+        val prices = IntArray(Catalog.SIZE) { Catalog.priceCents(it) }
+        for (line in lines) {
+            if (line.isBlank()) continue
+            val columns = line.split('\t')
+            val price = columns.getOrNull(3)?.toIntOrNull()
+                ?: throw IOException("Malformed snapshot line: $line")
+            val ordinal = Catalog.ordinalOf(columns[0])
+            if (ordinal >= 0) prices[ordinal] = price
+        }
+        PriceTable.usePrices(version, prices)
+    }
+
+    private fun typeName(type: Int) = when (type) {
+        ItemType.ENTREE -> "ENTREE"
+        ItemType.SIDE_DISH -> "SIDE_DISH"
+        ItemType.ACCOMPANIMENT -> "ACCOMPANIMENT"
+        else -> throw IllegalArgumentException("Unknown item type $type")
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import com.example.lunchtray.model.MenuItem
+
+/**
+ * Map of available menu items to be displayed in the menu fragments, keyed by item key and in
+ * catalog order. Built from the [Catalog] the first time it's used.
+ */
+object DataSource {
+    val menuItems: Map<String, MenuItem> by lazy {
+        val items = LinkedHashMap<String, MenuItem>(Catalog.SIZE * 2)
+        for (ordinal in 0 until Catalog.SIZE) {
+            items[Catalog.key(ordinal)] = Catalog.menuItem(ordinal)
+        }
+        items
+    }
+}
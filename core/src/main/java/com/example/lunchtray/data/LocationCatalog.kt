@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import com.example.lunchtray.model.MenuItem
+import com.example.lunchtray.model.PriceTable
+import java.util.Arrays
+
+/**
+ * Menus of many locations that mostly serve the same items at slightly different prices.
+ *
+ * Every distinct item is stored once, with its strings shared between items, and gets a default
+ * price and availability: those of most locations serving it. Each location only keeps where it
+ * differs from the defaults, as sparse columns of item indices and prices sorted by item. A
+ * [Location] is a view over its slice of those columns, so switching locations just swaps one
+ * reference.
+ */
+class LocationCatalog private constructor(
+    private val locationIds: Array<String>,
+    private val keys: Array<String>,
+    private val names: Array<String>,
+    private val descriptions: Array<String>,
+    private val types: IntArray,
+    private val defaultPrices: IntArray,
+    // Overrides of location i are in [offsets[i], offsets[i + 1]), sorted by item
+    private val offsets: IntArray,
+    private val overrideItems: IntArray,
+    private val overridePrices: IntArray
+) {
+
+    /**
+     * The menu of one location.
+     */
+    inner class Location internal constructor(private val index: Int) {
+
+        val id: String
+            get() = locationIds[index]
+
+        /**
+         * Whether [item] is on this location's menu.
+         */
+        fun isServed(item: Int): Boolean = priceCents(item) != NOT_SERVED
+
+        /**
+         * Price of [item] here, or [NOT_SERVED].
+         */
+        fun priceCents(item: Int): Int {
+            val from = offsets[index]
+            val to = offsets[index + 1]
+            val found = Arrays.binarySearch(overrideItems, from, to, item)
+            return if (found >= 0) overridePrices[found] else defaultPrices[item]
+        }
+
+        /**
+         * Indices of the items served here, in catalog order.
+         */
+        fun items(): IntArray = (0 until itemCount).filter(::isServed).toIntArray()
+
+        /**
+         * [MenuItem] for [item] with this location's price, or null if it isn't served here.
+         */
+        fun menuItem(item: Int): MenuItem? {
+            val price = priceCents(item)
+            if (price == NOT_SERVED) return null
+            return MenuItem(names[item], descriptions[item], price / 100.0, types[item])
+        }
+
+        /**
+         * Prices here indexed by ordinal in the compiled-in [Catalog], for pricing orders. Items
+         * that aren't served here keep their catalog price, since they can't be ordered.
+         */
+        fun catalogPriceCents(): IntArray = IntArray(Catalog.SIZE) { ordinal ->
+            val item = itemOf(Catalog.key(ordinal))
+            val price = if (item >= 0) priceCents(item) else NOT_SERVED
+            if (price != NOT_SERVED) price else Catalog.priceCents(ordinal)
+        }
+
+        /**
+         * Number of items priced or served differently here than at most locations.
+         */
+        val overrides: Int
+            get() = offsets[index + 1] - offsets[index]
+    }
+
+    private val locations = Array(locationIds.size) { Location(it) }
+    private val locationIndex = locationIds.withIndex().associate { it.value to it.index }
+    private val itemIndex = HashMap<String, Int>(keys.size * 2).also { index ->
+        keys.forEachIndexed { item, key -> index.putIfAbsent(key, item) }
+    }
+
+    /**
+     * Number of distinct items over every location.
+     */
+    val itemCount: Int
+        get() = keys.size
+
+    val locationCount: Int
+        get() = locations.size
+
+    /**
+     * The location whose menu is shown.
+     */
+    @Volatile
+    var active: Location = locations[0]
+        private set
+
+    /**
+     * Make [locationId] the active location, whose prices orders are priced with from now on,
+     * and return it.
+     */
+    fun select(locationId: String): Location {
+        val index = requireNotNull(locationIndex[locationId]) { "Unknown location: $locationId" }
+        return locations[index].also {
+            active = it
+            PriceTable.usePrices(Catalog.VERSION, it.catalogPriceCents())
+        }
+    }
+
+    fun location(locationId: String): Location? = locationIndex[locationId]?.let { locations[it] }
+
+    /**
+     * Index of the item with [key], or -1 if no location serves it.
+     */
+    fun itemOf(key: String): Int = itemIndex[key] ?: -1
+
+    fun key(item: Int): String = keys[item]
+
+    fun name(item: Int): String = names[item]
+
+    fun description(item: Int): String = descriptions[item]
+
+    fun type(item: Int): Int = types[item]
+
+    /**
+     * Collects the full menu of each location, then keeps what they share once. Items are the
+     * same when their key, name, description and type all match.
+     */
+    class Builder {
+
+        private data class Item(
+            val key: String,
+            val name: String,
+            val description: String,
+            val type: Int
+        )
+
+        // One instance per distinct string and item
+        private val strings = HashMap<String, String>()
+        private val itemIndex = LinkedHashMap<Item, Int>()
+        private val menus = LinkedHashMap<String, HashMap<Int, Int>>()
+
+        /**
+         * Add an item served at [locationId] for [priceCents].
+         */
+        fun add(
+            locationId: String,
+            key: String,
+            name: String,
+            description: String,
+            priceCents: Int,
+            type: Int
+        ): Builder {
+            require(priceCents >= 0) { "Negative price for $key at $locationId" }
+            val item = Item(intern(key), intern(name), intern(description), type)
+            val index = itemIndex.getOrPut(item) { itemIndex.size }
+            menus.getOrPut(intern(locationId)) { HashMap() }[index] = priceCents
+            return this
+        }
+
+        /**
+         * Add the compiled-in catalog as the menu of [locationId], with prices changed by
+         * [priceCents] (item key to price) and without the items in [notServed].
+         */
+        fun addCatalog(
+            locationId: String,
+            priceCents: Map<String, Int> = emptyMap(),
+            notServed: Set<String> = emptySet()
+        ): Builder {
+            for (ordinal in 0 until Catalog.SIZE) {
+                val key = Catalog.key(ordinal)
+                if (key in notServed) continue
+                add(
+                    locationId, key, Catalog.name(ordinal), Catalog.description(ordinal),
+                    priceCents[key] ?: Catalog.priceCents(ordinal), Catalog.type(ordinal)
+                )
+            }
+            return this
+        }
+
+        fun build(): LocationCatalog {
+            require(menus.isNotEmpty()) { "No locations" }
+            val items = itemIndex.keys.toList()
+            // Default: the most common price, counting "not served" as a price
+            val defaults = IntArray(items.size) { item ->
+                menus.values.groupingBy { it[item] ?: NOT_SERVED }.eachCount()
+                    .maxByOrNull { it.value }!!.key
+            }
+            val offsets = IntArray(menus.size + 1)
+            val overrideItems = ArrayList<Int>()
+            val overridePrices = ArrayList<Int>()
+            menus.values.forEachIndexed { location, menu ->
+                for (item in items.indices) {
+                    val price = menu[item] ?: NOT_SERVED
+                    if (price != defaults[item]) {
+                        overrideItems.add(item)
+                        overridePrices.add(price)
+                    }
+                }
+                offsets[location + 1] = overrideItems.size
+            }
+            return LocationCatalog(
+                locationIds = menus.keys.toTypedArray(),
+                keys = items.map { it.key }.toTypedArray(),
+                names = items.map { it.name }.toTypedArray(),
+                descriptions = items.map { it.description }.toTypedArray(),
+                types = items.map { it.type }.toIntArray(),
+                defaultPrices = defaults,
+                offsets = offsets,
+                overrideItems = overrideItems.toIntArray(),
+                overridePrices = overridePrices.toIntArray()
+            )
+        }
+
+        private fun intern(value: String) = strings.getOrPut(value) { value }
+    }
+
+    companion object {
+        /**
+         * Price of an item that isn't served at a location.
+         */
+        const val NOT_SERVED = -1
+    }
+}
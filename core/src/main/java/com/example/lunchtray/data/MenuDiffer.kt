@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Turns each new [MenuListing] into the changes from the one on screen, per category, so menu
+ * screens only touch the rows that changed.
+ *
+ * Diffs run on [background] and are handed to [listener] on [deliver], usually the main thread.
+ * A diff is thrown away as soon as a newer listing is submitted, even halfway through; only the
+ * newest one is delivered. Listings without any change aren't delivered.
+ */
+class MenuDiffer(
+    private val background: Executor,
+    private val deliver: Executor,
+    private val listener: Listener
+) {
+
+    /**
+     * Changes from the listing with [baseVersion] to [listing].
+     */
+    class Update(
+        val listing: MenuListing,
+        val baseVersion: Long,
+        private val changes: Map<Int, MenuChanges>
+    ) {
+        /**
+         * The changes in the category of [type], or null if there are none.
+         */
+        fun changes(type: Int): MenuChanges? = changes[type]
+    }
+
+    fun interface Listener {
+        fun onMenuChanged(update: Update)
+    }
+
+    // Version of the newest listing submitted
+    private val latest = AtomicLong(MenuListing.EMPTY.version)
+
+    // The listing screens show, only changed on the deliver executor
+    @Volatile
+    var displayed = MenuListing.EMPTY
+        private set
+
+    private val discardedCount = AtomicLong()
+
+    /**
+     * Number of diffs thrown away because a newer listing came in.
+     */
+    val discarded: Long
+        get() = discardedCount.get()
+
+    /**
+     * Diff [listing] against the one on screen. Versions have to increase from one listing to
+     * the next.
+     */
+    fun submit(listing: MenuListing) {
+        latest.set(listing.version)
+        background.execute { diff(listing) }
+    }
+
+    private fun diff(listing: MenuListing) {
+        val base = displayed
+        val changes = HashMap<Int, MenuChanges>()
+        for (type in base.types + listing.types) {
+            if (isStale(listing)) return
+            val typeChanges = MenuDiff.between(base.entries(type), listing.entries(type))
+            if (!typeChanges.isEmpty) changes[type] = typeChanges
+        }
+        deliver.execute {
+            when {
+                isStale(listing) -> Unit
+                // Another listing went on screen meanwhile, start again from that one
+                displayed !== base -> background.execute { diff(listing) }
+                // Screens stay on the base listing, which looks the same
+                changes.isEmpty() -> Unit
+                else -> {
+                    displayed = listing
+                    listener.onMenuChanged(Update(listing, base.version, changes))
+                }
+            }
+        }
+    }
+
+    private fun isStale(listing: MenuListing): Boolean {
+        if (latest.get() == listing.version) return false
+        discardedCount.incrementAndGet()
+        return true
+    }
+}
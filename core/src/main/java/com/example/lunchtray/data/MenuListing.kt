@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+/**
+ * One row of a menu screen.
+ */
+data class MenuEntry(
+    val key: String,
+    val name: String,
+    val description: String,
+    val priceCents: Int,
+    val available: Boolean
+)
+
+/**
+ * What the menu screens show at one [version]: the entries of each category in display order,
+ * by [item type][com.example.lunchtray.constants.ItemType]. Items that aren't offered have no
+ * entry.
+ */
+class MenuListing(val version: Long, private val categories: Map<Int, List<MenuEntry>>) {
+
+    val types: Set<Int>
+        get() = categories.keys
+
+    fun entries(type: Int): List<MenuEntry> = categories[type].orEmpty()
+
+    companion object {
+        val EMPTY = MenuListing(0, emptyMap())
+    }
+}
+
+/**
+ * Changes turning one list of menu entries into another, by entry key.
+ */
+class MenuChanges(
+    val removed: List<String>,
+    val inserted: List<MenuEntry>,
+    // Entries whose content changed
+    val changed: List<MenuEntry>,
+    // Keys of the entries that have to move for the others to keep their place
+    val moved: List<String>,
+    // Every key in the new order
+    val order: List<String>
+) {
+
+    val isEmpty: Boolean
+        get() = removed.isEmpty() && inserted.isEmpty() && changed.isEmpty() && moved.isEmpty()
+}
+
+object MenuDiff {
+
+    /**
+     * The changes from [old] to [new]. Entries are matched by key; as few as possible are
+     * reported as moved, using the longest run of entries already in order.
+     */
+    fun between(old: List<MenuEntry>, new: List<MenuEntry>): MenuChanges {
+        val oldIndex = HashMap<String, Int>(old.size * 2)
+        old.forEachIndexed { i, entry -> oldIndex[entry.key] = i }
+        val newKeys = new.mapTo(HashSet(new.size * 2)) { it.key }
+
+        val inserted = ArrayList<MenuEntry>()
+        val changed = ArrayList<MenuEntry>()
+        // Old positions of the kept entries, in their new order
+        val kept = ArrayList<MenuEntry>()
+        val keptOldIndex = ArrayList<Int>()
+        for (entry in new) {
+            val index = oldIndex[entry.key]
+            if (index == null) {
+                inserted.add(entry)
+            } else {
+                if (old[index] != entry) changed.add(entry)
+                kept.add(entry)
+                keptOldIndex.add(index)
+            }
+        }
+        val staying = longestIncreasing(keptOldIndex)
+        val moved = kept.indices.filter { !staying[it] }.map { kept[it].key }
+        return MenuChanges(
+            removed = old.filter { it.key !in newKeys }.map { it.key },
+            inserted = inserted,
+            changed = changed,
+            moved = moved,
+            order = new.map { it.key }
+        )
+    }
+
+    /**
+     * Mark the members of a longest increasing subsequence of [values].
+     */
+    private fun longestIncreasing(values: List<Int>): BooleanArray {
+        // tails[k]: index of the smallest last value of an increasing run of length k + 1
+        val tails = IntArray(values.size)
+        val previous = IntArray(values.size)
+        var length = 0
+        for (i in values.indices) {
+            var low = 0
+            var high = length
+            while (low < high) {
+                val middle = (low + high) ushr 1
+                if (values[tails[middle]] < values[i]) low = middle + 1 else high = middle
+            }
+            previous[i] = if (low > 0) tails[low - 1] else -1
+            tails[low] = i
+            if (low == length) length++
+        }
+        val members = BooleanArray(values.size)
+        var i = if (length > 0) tails[length - 1] else -1
+        while (i >= 0) {
+            members[i] = true
+            i = previous[i]
+        }
+        return members
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.model.MenuItem
+import java.util.Calendar
+import java.util.TimeZone
+
+/**
+ * Which items are served at what time of day, e.g. breakfast, lunch and dinner menus.
+ *
+ * Serving windows are given as (item ordinal, start minute, end minute) triples, end exclusive,
+ * within a day. They are indexed as a sorted array of the minutes where the menu changes, each
+ * with the [Window] served until the next one, so finding the menu at a given time is a binary
+ * search.
+ */
+class MenuSchedule(
+    size: Int,
+    windowItems: IntArray,
+    windowStarts: IntArray,
+    windowEnds: IntArray
+) {
+
+    /**
+     * The items served between [startMinute] and [endMinute] (exclusive), in minutes of the day.
+     * Their category lists are built on first use, or ahead of time by [prebuild].
+     */
+    class Window internal constructor(
+        val startMinute: Int,
+        val endMinute: Int,
+        private val served: BooleanArray
+    ) {
+
+        fun isServed(ordinal: Int): Boolean = served[ordinal]
+
+        val entrees: List<MenuItem> by lazy { itemsOfType(ItemType.ENTREE) }
+        val sides: List<MenuItem> by lazy { itemsOfType(ItemType.SIDE_DISH) }
+        val accompaniments: List<MenuItem> by lazy { itemsOfType(ItemType.ACCOMPANIMENT) }
+
+        /**
+         * Keys of the items not served in this window.
+         */
+        val offMenuKeys: Set<String> by lazy {
+            served.indices.filter { !served[it] }.mapTo(HashSet()) { Catalog.key(it) }
+        }
+
+        /**
+         * Build the category lists now, so switching to this window does no work.
+         */
+        fun prebuild() {
+            entrees
+            sides
+            accompaniments
+            offMenuKeys
+        }
+
+        private fun itemsOfType(type: Int) =
+            served.indices.filter { served[it] && Catalog.type(it) == type }.map(Catalog::menuItem)
+    }
+
+    // Minutes where the menu changes, ascending and starting at 0, and the window starting at each
+    private val changes: IntArray
+    private val windows: Array<Window>
+
+    init {
+        // Sweep the day: count, for every item, the windows covering the current minute
+        val events = (windowStarts.indices.map { Triple(windowStarts[it], windowItems[it], 1) } +
+                windowEnds.indices.map { Triple(windowEnds[it], windowItems[it], -1) })
+            .sortedBy { it.first }
+        val covering = IntArray(size)
+        val starts = ArrayList<Int>()
+        val served = ArrayList<BooleanArray>()
+        var next = 0
+        var minute = 0
+        while (minute < MINUTES_PER_DAY) {
+            while (next < events.size && events[next].first == minute) {
+                covering[events[next].second] += events[next].third
+                next++
+            }
+            val current = BooleanArray(size) { covering[it] > 0 }
+            // Only keep minutes where the menu actually changes
+            if (served.isEmpty() || !served.last().contentEquals(current)) {
+                starts.add(minute)
+                served.add(current)
+            }
+            minute = if (next < events.size) events[next].first else MINUTES_PER_DAY
+        }
+        changes = starts.toIntArray()
+        windows = Array(starts.size) { i ->
+            Window(starts[i], starts.getOrElse(i + 1) { MINUTES_PER_DAY }, served[i])
+        }
+    }
+
+    /**
+     * The window served at [minuteOfDay].
+     */
+    fun windowAt(minuteOfDay: Int): Window = windows[indexAt(minuteOfDay)]
+
+    /**
+     * The window served after the one at [minuteOfDay], wrapping around midnight.
+     */
+    fun windowAfter(minuteOfDay: Int): Window = windows[(indexAt(minuteOfDay) + 1) % windows.size]
+
+    /**
+     * Milliseconds from [millis] until the menu next changes, in [timeZone].
+     */
+    fun millisUntilChange(millis: Long, timeZone: TimeZone = TimeZone.getDefault()): Long {
+        val calendar = Calendar.getInstance(timeZone).apply { timeInMillis = millis }
+        val minute = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE)
+        val intoMinute = calendar.get(Calendar.SECOND) * 1000L + calendar.get(Calendar.MILLISECOND)
+        return (windowAt(minute).endMinute - minute) * 60_000L - intoMinute
+    }
+
+    /**
+     * Number of different menus served over a day.
+     */
+    val windowCount: Int
+        get() = windows.size
+
+    private fun indexAt(minuteOfDay: Int): Int {
+        require(minuteOfDay in 0 until MINUTES_PER_DAY) { "Not a minute of the day: $minuteOfDay" }
+        val index = changes.binarySearch(minuteOfDay)
+        // Not a change itself: the window that started before it
+        return if (index >= 0) index else -index - 2
+    }
+
+    companion object {
+        const val MINUTES_PER_DAY = 24 * 60
+
+        /**
+         * Schedule of the catalog, from the serving hours in the menu definition.
+         */
+        val catalog: MenuSchedule by lazy {
+            MenuSchedule(
+                Catalog.SIZE,
+                GeneratedCatalog.WINDOW_ITEMS,
+                GeneratedCatalog.WINDOW_STARTS,
+                GeneratedCatalog.WINDOW_ENDS
+            )
+        }
+
+        /**
+         * Minute of the day at [millis] in [timeZone].
+         */
+        fun minuteOfDay(millis: Long, timeZone: TimeZone = TimeZone.getDefault()): Int {
+            val calendar = Calendar.getInstance(timeZone).apply { timeInMillis = millis }
+            return calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE)
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.inventory
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicIntegerArray
+
+/**
+ * Stock left for each catalog item, indexed by ordinal. Any thread can take items: counts are
+ * decremented with compare-and-set, so an item is never handed out more times than it was
+ * stocked, and submitters never block each other.
+ *
+ * Items are [UNLIMITED] until they are given a count with [restock]. Listeners hear about every
+ * item that sells out or becomes available again.
+ */
+class Inventory(stock: IntArray = IntArray(Catalog.SIZE) { UNLIMITED }) {
+
+    /**
+     * Notified, on the thread that made the change, when an item sells out or is back in stock.
+     */
+    fun interface Listener {
+        fun onAvailabilityChanged(ordinal: Int, available: Boolean)
+    }
+
+    private val size = stock.size
+
+    // One count per cache line, so submitters taking different items don't contend
+    private val counts = AtomicIntegerArray(size * INTS_PER_LINE).apply {
+        stock.forEachIndexed { ordinal, count -> set(ordinal * INTS_PER_LINE, count) }
+    }
+
+    private val listeners = CopyOnWriteArrayList<Listener>()
+
+    fun addListener(listener: Listener) {
+        listeners.add(listener)
+    }
+
+    fun removeListener(listener: Listener) {
+        listeners.remove(listener)
+    }
+
+    /**
+     * Number of [ordinal] items left, or [UNLIMITED].
+     */
+    fun remaining(ordinal: Int): Int = counts.get(ordinal * INTS_PER_LINE)
+
+    fun isAvailable(ordinal: Int): Boolean = remaining(ordinal) != 0
+
+    /**
+     * Take one [ordinal] item. Returns false if it's sold out.
+     */
+    fun take(ordinal: Int): Boolean {
+        val index = ordinal * INTS_PER_LINE
+        while (true) {
+            val count = counts.get(index)
+            if (count == 0) return false
+            if (count == UNLIMITED) return true
+            if (counts.compareAndSet(index, count, count - 1)) {
+                if (count == 1) notify(ordinal, false)
+                return true
+            }
+        }
+    }
+
+    /**
+     * Take every item of [order], or none of them if one is sold out. Returns whether the order
+     * can be served.
+     */
+    fun take(order: OrderState): Boolean {
+        if (!takeIfChosen(order.entree)) return false
+        if (!takeIfChosen(order.side)) {
+            putBackIfChosen(order.entree)
+            return false
+        }
+        if (!takeIfChosen(order.accompaniment)) {
+            putBackIfChosen(order.side)
+            putBackIfChosen(order.entree)
+            return false
+        }
+        return true
+    }
+
+    /**
+     * Add [count] [ordinal] items back, e.g. from a cancelled order.
+     */
+    fun putBack(ordinal: Int, count: Int = 1) {
+        val index = ordinal * INTS_PER_LINE
+        while (true) {
+            val current = counts.get(index)
+            if (current == UNLIMITED) return
+            val updated = if (current > UNLIMITED - count) UNLIMITED - 1 else current + count
+            if (counts.compareAndSet(index, current, updated)) {
+                if (current == 0) notify(ordinal, true)
+                return
+            }
+        }
+    }
+
+    /**
+     * Set the stock of [ordinal] to [count], or [UNLIMITED] to stop tracking it.
+     */
+    fun restock(ordinal: Int, count: Int) {
+        require(count >= 0) { "Negative stock for ordinal $ordinal: $count" }
+        val previous = counts.getAndSet(ordinal * INTS_PER_LINE, count)
+        if ((previous == 0) != (count == 0)) notify(ordinal, count != 0)
+    }
+
+    private fun takeIfChosen(ordinal: Int) = ordinal == OrderState.NONE || take(ordinal)
+
+    private fun putBackIfChosen(ordinal: Int) {
+        if (ordinal != OrderState.NONE) putBack(ordinal)
+    }
+
+    private fun notify(ordinal: Int, available: Boolean) {
+        listeners.forEach { it.onAvailabilityChanged(ordinal, available) }
+    }
+
+    companion object {
+        /**
+         * Stock of an item that is never counted.
+         */
+        const val UNLIMITED = Int.MAX_VALUE
+
+        private const val INTS_PER_LINE = 16
+
+        /**
+         * The inventory of this device, shared by every screen.
+         */
+        val shared = Inventory()
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.inventory
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Short-lived holds on [inventory] stock, placed while a customer goes through the order flow so
+ * an item they picked can't sell out before they reach checkout.
+ *
+ * A hold takes one unit of stock. It ends exactly once: it's either committed by the order, or
+ * its unit goes back to the inventory when it's released or expires after [holdMillis], as
+ * timed by [wheel].
+ */
+class Reservations(
+    private val inventory: Inventory,
+    private val holdMillis: Long = DEFAULT_HOLD_MILLIS,
+    private val wheel: TimingWheel = TimingWheel()
+) {
+
+    /**
+     * One unit of [ordinal] set aside.
+     */
+    inner class Hold internal constructor(val ordinal: Int) {
+
+        private val state = AtomicInteger(HELD)
+        @Volatile
+        internal var timeout: TimingWheel.Timeout? = null
+
+        val isHeld: Boolean
+            get() = state.get() == HELD
+
+        /**
+         * Give the unit back to the inventory. Returns false if the hold already ended.
+         */
+        fun release(): Boolean {
+            if (!state.compareAndSet(HELD, RELEASED)) return false
+            timeout?.cancel()
+            active.decrementAndGet()
+            inventory.putBack(ordinal)
+            return true
+        }
+
+        /**
+         * Keep the unit for good. Returns false if the hold already ended.
+         */
+        fun commit(): Boolean {
+            if (!state.compareAndSet(HELD, COMMITTED)) return false
+            timeout?.cancel()
+            active.decrementAndGet()
+            return true
+        }
+
+        internal fun expire() {
+            if (state.compareAndSet(HELD, RELEASED)) {
+                active.decrementAndGet()
+                inventory.putBack(ordinal)
+            }
+        }
+    }
+
+    /**
+     * The holds of one order: at most one per item type, replaced as the customer changes their
+     * mind. Safe to use from any thread.
+     */
+    inner class Session internal constructor() {
+
+        private val holds = AtomicReferenceArray<Hold?>(SLOTS)
+
+        /**
+         * Hold one [ordinal] item in place of the previous item of the same type. Returns false,
+         * keeping the previous hold, if it's sold out.
+         */
+        fun hold(ordinal: Int): Boolean {
+            val hold = this@Reservations.hold(ordinal) ?: return false
+            holds.getAndSet(slotOf(ordinal), hold)?.release()
+            return true
+        }
+
+        /**
+         * Give back the [ordinal] item this session holds, if any, e.g. when it leaves the order.
+         */
+        fun release(ordinal: Int) {
+            val slot = slotOf(ordinal)
+            val hold = holds.get(slot) ?: return
+            if (hold.ordinal == ordinal && holds.compareAndSet(slot, hold, null)) hold.release()
+        }
+
+        /**
+         * Whether this session still holds an [ordinal] item.
+         */
+        fun isHolding(ordinal: Int): Boolean =
+            holds.get(slotOf(ordinal))?.let { it.ordinal == ordinal && it.isHeld } == true
+
+        /**
+         * Take the items of [order] for good, through this session's holds where they are still
+         * valid and from the inventory otherwise. Returns false, taking nothing, if an item whose
+         * hold expired sold out in the meantime. Every hold ends either way.
+         */
+        fun commit(order: OrderState): Boolean {
+            val taken = IntArray(SLOTS) { OrderState.NONE }
+            val items = intArrayOf(order.entree, order.side, order.accompaniment)
+            var complete = true
+            for (ordinal in items) {
+                if (ordinal == OrderState.NONE) continue
+                val slot = slotOf(ordinal)
+                val hold = holds.getAndSet(slot, null)
+                if (hold != null && hold.ordinal == ordinal && hold.commit()) {
+                    taken[slot] = ordinal
+                    continue
+                }
+                hold?.release()
+                if (complete && inventory.take(ordinal)) {
+                    taken[slot] = ordinal
+                } else {
+                    complete = false
+                }
+            }
+            releaseAll()
+            if (!complete) {
+                taken.forEach { if (it != OrderState.NONE) inventory.putBack(it) }
+            }
+            return complete
+        }
+
+        /**
+         * Release every hold, e.g. when the order is cancelled.
+         */
+        fun releaseAll() {
+            for (slot in 0 until SLOTS) {
+                holds.getAndSet(slot, null)?.release()
+            }
+        }
+    }
+
+    private val active = AtomicInteger()
+
+    /**
+     * Number of holds currently set aside.
+     */
+    val activeHolds: Int
+        get() = active.get()
+
+    fun newSession() = Session()
+
+    /**
+     * Hold one [ordinal] item, or return null if it's sold out.
+     */
+    fun hold(ordinal: Int): Hold? {
+        if (!inventory.take(ordinal)) return null
+        val hold = Hold(ordinal)
+        active.incrementAndGet()
+        hold.timeout = wheel.schedule(holdMillis, Runnable { hold.expire() })
+        return hold
+    }
+
+    companion object {
+        const val DEFAULT_HOLD_MILLIS = 5 * 60 * 1000L
+
+        // One hold per item type: entree, side and accompaniment
+        private const val SLOTS = 3
+
+        private fun slotOf(ordinal: Int) = Catalog.type(ordinal) - 1
+
+        /**
+         * Holds on [Inventory.shared], expired by a background thread.
+         */
+        val shared: Reservations by lazy {
+            Reservations(Inventory.shared, wheel = TimingWheel().apply { start() })
+        }
+
+        private const val HELD = 0
+        private const val RELEASED = 1
+        private const val COMMITTED = 2
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.inventory
+
+import java.io.Closeable
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Hierarchical timing wheel: scheduling, cancelling and expiring a timeout are O(1), however many
+ * are pending.
+ *
+ * Time advances in ticks of [tickMillis]. The first wheel has a slot per tick; each of the higher
+ * wheels has a slot per lap of the wheel below it. Timeouts are placed in the lowest wheel whose
+ * range covers them, and move down a wheel when the wheel below starts the lap they fall in.
+ * Expired actions run on the thread that calls [advance], outside of the wheel's lock.
+ *
+ * The default [clock] is monotonic, so changing the wall clock neither expires nor extends
+ * timeouts.
+ */
+class TimingWheel(
+    private val tickMillis: Long = DEFAULT_TICK_MILLIS,
+    private val clock: () -> Long = { System.nanoTime() / NANOS_PER_MILLI }
+) : Closeable {
+
+    /**
+     * A scheduled action, until it runs or is cancelled.
+     */
+    inner class Timeout internal constructor(
+        internal val deadline: Long,
+        internal val action: Runnable
+    ) {
+        internal var prev: Timeout? = null
+        internal var next: Timeout? = null
+
+        /**
+         * Cancel the action. Returns false if it already ran or was cancelled.
+         */
+        fun cancel(): Boolean = synchronized(this@TimingWheel) {
+            if (prev == null) return false
+            unlink(this)
+            pending--
+            true
+        }
+    }
+
+    // Each slot is a circular list of timeouts behind a sentinel
+    private val slots = Array(LEVELS * SLOTS) {
+        Timeout(0, Runnable { }).also { sentinel ->
+            sentinel.prev = sentinel
+            sentinel.next = sentinel
+        }
+    }
+
+    private val origin = clock()
+    private var currentTick = 0L
+    private var scheduler: ScheduledExecutorService? = null
+    private var ticking: ScheduledFuture<*>? = null
+
+    /**
+     * Number of timeouts waiting to expire.
+     */
+    var pending = 0
+        private set
+
+    /**
+     * Run [action] once [delayMillis] have passed, unless the returned timeout is cancelled first.
+     */
+    @Synchronized
+    fun schedule(delayMillis: Long, action: Runnable): Timeout {
+        // Nothing is placed, so the ticks missed while idle can be skipped
+        if (pending == 0) currentTick = maxOf(currentTick, (clock() - origin) / tickMillis)
+        // First tick at or after the deadline, even if the wheel is lagging behind the clock
+        val deadline = maxOf(
+            (clock() - origin + delayMillis + tickMillis - 1) / tickMillis,
+            currentTick + 1
+        )
+        require(deadline - currentTick < SPAN) { "Delay too long for this wheel: $delayMillis ms" }
+        val timeout = Timeout(deadline, action)
+        place(timeout)
+        if (pending++ == 0) startTicking()
+        return timeout
+    }
+
+    /**
+     * Expire every timeout due at [nowMillis].
+     */
+    fun advance(nowMillis: Long = clock()) {
+        var expired: Timeout? = null
+        synchronized(this) {
+            val target = (nowMillis - origin) / tickMillis
+            while (currentTick < target) {
+                currentTick++
+                cascade()
+                // Move the due timeouts to a private list
+                val sentinel = slots[(currentTick and MASK).toInt()]
+                while (sentinel.next !== sentinel) {
+                    val timeout = sentinel.next!!
+                    unlink(timeout)
+                    pending--
+                    timeout.next = expired
+                    expired = timeout
+                }
+            }
+            if (pending == 0) {
+                ticking?.cancel(false)
+                ticking = null
+            }
+        }
+        while (expired != null) {
+            val timeout = expired!!
+            expired = timeout.next
+            timeout.next = null
+            timeout.action.run()
+        }
+    }
+
+    /**
+     * Advance every tick on a background thread until [close] is called. The thread is parked
+     * while no timeout is pending.
+     */
+    @Synchronized
+    fun start() {
+        check(scheduler == null) { "Already started" }
+        scheduler = Executors.newSingleThreadScheduledExecutor { runnable ->
+            Thread(runnable, "timing-wheel").apply { isDaemon = true }
+        }
+        if (pending > 0) startTicking()
+    }
+
+    override fun close() {
+        val running = synchronized(this) {
+            ticking = null
+            scheduler.also { scheduler = null }
+        }
+        running?.shutdown()
+    }
+
+    /**
+     * Whether the background thread is advancing the wheel.
+     */
+    internal val isTicking: Boolean
+        @Synchronized get() = ticking != null
+
+    private fun startTicking() {
+        val running = scheduler ?: return
+        if (ticking != null) return
+        ticking = running.scheduleAtFixedRate(
+            { advance() }, tickMillis, tickMillis, TimeUnit.MILLISECONDS
+        )
+    }
+
+    // Re-place the timeouts of every higher wheel that starts a new slot on this tick
+    private fun cascade() {
+        var level = 1
+        while (level < LEVELS && currentTick and ((1L shl (BITS * level)) - 1) == 0L) {
+            level++
+        }
+        for (upper in level - 1 downTo 1) {
+            val slot = ((currentTick ushr (BITS * upper)) and MASK).toInt()
+            val sentinel = slots[upper * SLOTS + slot]
+            while (sentinel.next !== sentinel) {
+                val timeout = sentinel.next!!
+                unlink(timeout)
+                place(timeout)
+            }
+        }
+    }
+
+    private fun place(timeout: Timeout) {
+        val delta = timeout.deadline - currentTick
+        var level = 0
+        while (level < LEVELS - 1 && delta >= 1L shl (BITS * (level + 1))) {
+            level++
+        }
+        val slot = ((timeout.deadline ushr (BITS * level)) and MASK).toInt()
+        val sentinel = slots[level * SLOTS + slot]
+        timeout.prev = sentinel.prev
+        timeout.next = sentinel
+        sentinel.prev!!.next = timeout
+        sentinel.prev = timeout
+    }
+
+    private fun unlink(timeout: Timeout) {
+        timeout.prev!!.next = timeout.next
+        timeout.next!!.prev = timeout.prev
+        timeout.prev = null
+        timeout.next = null
+    }
+
+    companion object {
+        const val DEFAULT_TICK_MILLIS = 100L
+
+        private const val NANOS_PER_MILLI = 1_000_000L
+
+        // Four wheels of 64 slots: 64^4 ticks, close to 20 days with the default tick
+        private const val BITS = 6
+        private const val SLOTS = 1 shl BITS
+        private const val MASK = SLOTS - 1L
+        private const val LEVELS = 4
+        private const val SPAN = 1L shl (BITS * LEVELS)
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.kitchen
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Counters indexed by catalog ordinal that many threads can add to without contending, and that
+ * can be drained as a consistent cut: every batch added through [add] is either entirely in a
+ * drain or entirely in a later one.
+ *
+ * Each thread adds to its own stripe of counters, padded so stripes don't share cache lines.
+ * There are two banks of stripes. Writers add to the bank of the current epoch; [drainInto]
+ * switches to the other bank, waits for writers still busy with the old one, then folds it into
+ * the caller's totals. Only one thread may drain at a time.
+ */
+class EpochCounters(
+    private val size: Int,
+    stripes: Int = defaultStripes()
+) {
+
+    private val stripeMask = Integer.highestOneBit(maxOf(stripes, 1) * 2 - 1) - 1
+
+    // Longs per stripe: the counters plus one in-flight counter, rounded up to whole cache lines
+    private val stride = (size + 1 + LONGS_PER_LINE - 1) / LONGS_PER_LINE * LONGS_PER_LINE +
+            LONGS_PER_LINE
+
+    private val banks = arrayOf(
+        AtomicLongArray((stripeMask + 1) * stride),
+        AtomicLongArray((stripeMask + 1) * stride)
+    )
+    private val epoch = AtomicLong()
+
+    /**
+     * Add [delta] to the counter of each ordinal in [ordinals], as one batch. Negative ordinals
+     * are skipped.
+     */
+    fun add(ordinals: IntArray, delta: Long) {
+        val base = stripe() * stride
+        while (true) {
+            val current = epoch.get()
+            val bank = banks[(current and 1).toInt()]
+            bank.incrementAndGet(base + size)
+            if (epoch.get() != current) {
+                // A drain switched banks in between, move to the new one
+                bank.decrementAndGet(base + size)
+                continue
+            }
+            for (ordinal in ordinals) {
+                if (ordinal >= 0) bank.addAndGet(base + ordinal, delta)
+            }
+            bank.decrementAndGet(base + size)
+            return
+        }
+    }
+
+    /**
+     * Add [delta] to the counter of [ordinal].
+     */
+    fun add(ordinal: Int, delta: Long) = add(intArrayOf(ordinal), delta)
+
+    /**
+     * Add everything counted since the previous drain to [totals].
+     */
+    fun drainInto(totals: LongArray) {
+        val old = banks[(epoch.getAndIncrement() and 1).toInt()]
+        val stripeCount = stripeMask + 1
+        // Wait for writers that started adding to the old bank before the switch
+        for (stripe in 0 until stripeCount) {
+            while (old.get(stripe * stride + size) != 0L) Thread.yield()
+        }
+        for (stripe in 0 until stripeCount) {
+            val base = stripe * stride
+            for (ordinal in 0 until size) {
+                val value = old.getAndSet(base + ordinal, 0)
+                if (value != 0L) totals[ordinal] += value
+            }
+        }
+    }
+
+    private fun stripe(): Int {
+        val id = Thread.currentThread().id
+        return ((id xor (id ushr 16)) * -0x61c8864680b583ebL ushr 40).toInt() and stripeMask
+    }
+
+    companion object {
+        private const val LONGS_PER_LINE = 8
+
+        private fun defaultStripes() = Runtime.getRuntime().availableProcessors() * 2
+    }
+}
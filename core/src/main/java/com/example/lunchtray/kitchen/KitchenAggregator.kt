@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.kitchen
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderSink
+import com.example.lunchtray.model.OrderState
+import java.io.Closeable
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Pending item counts for the kitchen at one point in time, indexed by catalog ordinal.
+ */
+class KitchenSnapshot(
+    val sequence: Long,
+    val takenAtMillis: Long,
+    val orders: Long,
+    private val pending: LongArray
+) {
+
+    fun pending(ordinal: Int): Long = pending[ordinal]
+
+    /**
+     * Ordinals of the items with something pending, most pending first.
+     */
+    fun busiest(): List<Int> = pending.indices
+        .filter { pending[it] > 0 }
+        .sortedByDescending { pending[it] }
+
+    companion object {
+        val EMPTY = KitchenSnapshot(0, 0, 0, LongArray(Catalog.SIZE))
+    }
+}
+
+/**
+ * Aggregates submitted orders into per-item pending counts for the kitchen display.
+ *
+ * Any number of threads can submit orders without contending with each other. The counts are
+ * published as an immutable [KitchenSnapshot] every time [refresh] runs, either on demand or at a
+ * fixed rate after [start]. A snapshot never contains part of an order.
+ */
+class KitchenAggregator(stripes: Int = Runtime.getRuntime().availableProcessors() * 2) :
+    OrderSink, Closeable {
+
+    /**
+     * Notified with every new snapshot, on the refreshing thread.
+     */
+    fun interface Listener {
+        fun onSnapshot(snapshot: KitchenSnapshot)
+    }
+
+    // Catalog ordinals, plus one slot counting orders
+    private val counters = EpochCounters(Catalog.SIZE + 1, stripes)
+    private val totals = LongArray(Catalog.SIZE + 1)
+    private val listeners = CopyOnWriteArrayList<Listener>()
+    private var scheduler: ScheduledExecutorService? = null
+
+    @Volatile
+    var snapshot = KitchenSnapshot.EMPTY
+        private set
+
+    override fun accept(order: OrderState) {
+        counters.add(intArrayOf(order.entree, order.side, order.accompaniment, ORDERS), 1)
+    }
+
+    /**
+     * Mark [count] units of the item with [ordinal] as served, as when the kitchen bumps them off
+     * its display. Returns false, and marks nothing, if fewer are pending. Orders submitted since
+     * the last [refresh] count as pending; the served units leave the next snapshot.
+     */
+    @Synchronized
+    fun complete(ordinal: Int, count: Long = 1): Boolean {
+        require(count > 0) { "Nothing to serve" }
+        counters.drainInto(totals)
+        if (totals[ordinal] < count) return false
+        totals[ordinal] -= count
+        return true
+    }
+
+    /**
+     * Fold in everything submitted since the last refresh and publish a new snapshot.
+     */
+    @Synchronized
+    fun refresh(): KitchenSnapshot {
+        counters.drainInto(totals)
+        val next = KitchenSnapshot(
+            sequence = snapshot.sequence + 1,
+            takenAtMillis = System.currentTimeMillis(),
+            orders = totals[ORDERS],
+            pending = totals.copyOf(Catalog.SIZE)
+        )
+        snapshot = next
+        listeners.forEach { it.onSnapshot(next) }
+        return next
+    }
+
+    /**
+     * Refresh every [periodMillis] on a background thread until [close] is called.
+     */
+    @Synchronized
+    fun start(periodMillis: Long) {
+        check(scheduler == null) { "Already started" }
+        scheduler = Executors.newSingleThreadScheduledExecutor { runnable ->
+            Thread(runnable, "kitchen-refresh").apply { isDaemon = true }
+        }.also {
+            it.scheduleAtFixedRate(::refresh, periodMillis, periodMillis, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    override fun close() {
+        val running = synchronized(this) { scheduler.also { scheduler = null } }
+        running?.shutdown()
+    }
+
+    fun addListener(listener: Listener) {
+        listeners.add(listener)
+    }
+
+    fun removeListener(listener: Listener) {
+        listeners.remove(listener)
+    }
+
+    companion object {
+        private const val ORDERS = Catalog.SIZE
+    }
+}
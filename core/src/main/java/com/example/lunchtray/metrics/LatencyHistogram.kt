@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.metrics
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Lock-free histogram of non-negative values (typically nanoseconds), with buckets laid out like
+ * an HDR histogram: values below 32 get their own bucket, larger values are grouped in buckets
+ * whose width grows with the magnitude, keeping the relative error under about 6%.
+ *
+ * Recording is a couple of atomic increments and can happen from any thread.
+ */
+class LatencyHistogram {
+
+    private val counts = AtomicLongArray(BUCKET_COUNT)
+    private val total = AtomicLong()
+    private val max = AtomicLong()
+
+    val count: Long
+        get() = total.get()
+
+    fun record(value: Long) {
+        val v = if (value < 0) 0 else value
+        counts.incrementAndGet(indexOf(v))
+        total.incrementAndGet()
+        var currentMax = max.get()
+        while (v > currentMax && !max.compareAndSet(currentMax, v)) {
+            currentMax = max.get()
+        }
+    }
+
+    /**
+     * Return a consistent copy of the recorded values.
+     */
+    fun snapshot(): Snapshot {
+        val copy = LongArray(BUCKET_COUNT)
+        var sum = 0L
+        for (i in 0 until BUCKET_COUNT) {
+            copy[i] = counts.get(i)
+            sum += copy[i]
+        }
+        return Snapshot(copy, sum, max.get())
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKET_COUNT) counts.set(i, 0)
+        total.set(0)
+        max.set(0)
+    }
+
+    /**
+     * Immutable copy of a histogram.
+     */
+    class Snapshot internal constructor(
+        private val counts: LongArray,
+        val count: Long,
+        val max: Long
+    ) {
+
+        /**
+         * Return the value below which [percentile] percent of the recorded values fall, reported
+         * as the upper bound of its bucket.
+         */
+        fun valueAt(percentile: Double): Long {
+            if (count == 0L) return 0
+            val target = maxOf(1L, Math.ceil(count * percentile / 100.0).toLong())
+            var seen = 0L
+            for (i in counts.indices) {
+                seen += counts[i]
+                if (seen >= target) return minOf(upperBoundOf(i), max)
+            }
+            return max
+        }
+
+        /**
+         * Call [action] with the upper bound and the count of every non-empty bucket.
+         */
+        fun forEachBucket(action: (upperBound: Long, count: Long) -> Unit) {
+            for (i in counts.indices) {
+                if (counts[i] != 0L) action(upperBoundOf(i), counts[i])
+            }
+        }
+    }
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 5
+        private const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+        private const val HALF = SUB_BUCKETS / 2
+        private const val BUCKET_COUNT = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF
+
+        internal fun indexOf(value: Long): Int {
+            if (value < SUB_BUCKETS) return value.toInt()
+            val shift = 63 - java.lang.Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1)
+            val top = (value ushr shift).toInt()
+            return SUB_BUCKETS + (shift - 1) * HALF + (top - HALF)
+        }
+
+        internal fun upperBoundOf(index: Int): Long {
+            if (index < SUB_BUCKETS) return index.toLong()
+            val k = index - SUB_BUCKETS
+            val shift = k / HALF + 1
+            val top = (k % HALF + HALF).toLong()
+            return ((top + 1) shl shift) - 1
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import com.example.lunchtray.data.Catalog
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+
+/**
+ * Prices many orders at once against a set of item prices, e.g. every open cart and past order
+ * after a price change. Rows are split into fork-join tasks that run on all cores of [pool].
+ *
+ * A row is priced as its order would be on its own, [quantity][OrderColumns.quantity] times over:
+ * the subtotal is multiplied first and tax is computed on the result, with the same [PriceTable]
+ * and [Pricing] rules as [OrderState].
+ */
+class BulkRepricer(
+    private val priceCents: IntArray = IntArray(Catalog.SIZE) { Catalog.priceCents(it) },
+    private val taxRate: Double = Pricing.TAX_RATE,
+    private val pool: ForkJoinPool = ForkJoinPool.commonPool()
+) {
+
+    // Falls back to adding up prices when the catalog is too large to tabulate
+    private val table = PriceTable.build(
+        Catalog.VERSION,
+        priceCents,
+        IntArray(priceCents.size) { Catalog.type(it) },
+        taxRate
+    )
+
+    fun reprice(orders: OrderColumns): PricedColumns =
+        PricedColumns(orders.size).also { repriceInto(orders, it) }
+
+    /**
+     * Price every row of [orders] into the same row of [priced].
+     */
+    fun repriceInto(orders: OrderColumns, priced: PricedColumns) {
+        require(priced.size >= orders.size) { "${priced.size} rows for ${orders.size} orders" }
+        pool.invoke(Task(orders, priced, 0, orders.size))
+    }
+
+    private inner class Task(
+        private val orders: OrderColumns,
+        private val priced: PricedColumns,
+        private val from: Int,
+        private val to: Int
+    ) : RecursiveAction() {
+
+        override fun compute() {
+            if (to - from <= LEAF_ROWS) {
+                priceRows(orders, priced, from, to)
+            } else {
+                val middle = (from + to) ushr 1
+                invokeAll(Task(orders, priced, from, middle), Task(orders, priced, middle, to))
+            }
+        }
+    }
+
+    private fun priceRows(orders: OrderColumns, priced: PricedColumns, from: Int, to: Int) {
+        val entrees = orders.entree
+        val sides = orders.side
+        val accompaniments = orders.accompaniment
+        val quantities = orders.quantity
+        for (row in from until to) {
+            val quantity = quantities[row]
+            val subtotal = quantity * if (table != null) {
+                table.subtotalCents(entrees[row], sides[row], accompaniments[row])
+            } else {
+                priceOf(entrees[row]) + priceOf(sides[row]) + priceOf(accompaniments[row])
+            }
+            // A single order's tax is in the table, several have to be taxed together
+            val tax = if (quantity == 1 && table != null) {
+                table.taxCents(entrees[row], sides[row], accompaniments[row])
+            } else {
+                Pricing.taxCents(subtotal, taxRate)
+            }
+            priced.subtotalCents[row] = subtotal
+            priced.taxCents[row] = tax
+            priced.totalCents[row] = subtotal + tax
+        }
+    }
+
+    private fun priceOf(ordinal: Int): Long =
+        if (ordinal == OrderState.NONE) 0L else priceCents[ordinal].toLong()
+
+    companion object {
+        // Rows priced by one task without splitting further
+        private const val LEAF_ROWS = 8 * 1024
+    }
+}
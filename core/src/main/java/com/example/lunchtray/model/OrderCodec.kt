@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import com.example.lunchtray.data.Catalog
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.Flushable
+import java.io.OutputStream
+import java.nio.ByteBuffer
+
+/**
+ * Binary encoding of orders, shared by everything that stores or sends them.
+ *
+ * A stream starts with a header: the bytes 'L' 'T', the format version and the version of the
+ * catalog the ordinals refer to, as a varint. Each order follows as five varints: the time since
+ * the previous order in milliseconds, zigzag encoded; the entree, side and accompaniment ordinals
+ * plus one, so "none" is 0; and the amount charged in cents, zigzag encoded. A typical order takes
+ * 7 to 9 bytes.
+ */
+object OrderCodec {
+
+    const val FORMAT_VERSION = 1
+
+    internal const val MAGIC_0 = 'L'.code
+    internal const val MAGIC_1 = 'T'.code
+
+    /**
+     * Encode [order] on its own, e.g. to save it.
+     */
+    fun encode(order: OrderState, timestampMillis: Long = 0): ByteArray {
+        val bytes = ByteArrayOutputStream(MAX_HEADER_BYTES + MAX_RECORD_BYTES)
+        OrderEncoder(bytes).use { it.write(order, timestampMillis) }
+        return bytes.toByteArray()
+    }
+
+    /**
+     * Decode the first order of [bytes], or return null if they hold none or were written for
+     * another catalog.
+     */
+    fun decode(bytes: ByteArray): OrderState? {
+        val decoder = OrderDecoder(ByteBuffer.wrap(bytes))
+        if (decoder.catalogVersion != Catalog.VERSION || !decoder.next()) return null
+        return decoder.order()
+    }
+
+    internal const val MAX_HEADER_BYTES = 3 + 10
+    internal const val MAX_RECORD_BYTES = 5 * 10
+}
+
+/**
+ * Writes orders to [out] in the [OrderCodec] format. Orders are buffered; call [flush] or
+ * [close] to write them out.
+ */
+class OrderEncoder(
+    private val out: OutputStream,
+    catalogVersion: Long = Catalog.VERSION
+) : Flushable, Closeable {
+
+    private val buffer = ByteArray(BUFFER_BYTES)
+    private var position = 0
+    private var previousTimestamp = 0L
+
+    init {
+        buffer[position++] = OrderCodec.MAGIC_0.toByte()
+        buffer[position++] = OrderCodec.MAGIC_1.toByte()
+        buffer[position++] = OrderCodec.FORMAT_VERSION.toByte()
+        putVarint(catalogVersion)
+    }
+
+    fun write(order: OrderState, timestampMillis: Long, totalCents: Long = order.totalCents) =
+        write(order.entree, order.side, order.accompaniment, timestampMillis, totalCents)
+
+    fun write(entree: Int, side: Int, accompaniment: Int, timestampMillis: Long, totalCents: Long) {
+        if (position + OrderCodec.MAX_RECORD_BYTES > buffer.size) drain()
+        putVarint(zigzag(timestampMillis - previousTimestamp))
+        putVarint(entree + 1L)
+        putVarint(side + 1L)
+        putVarint(accompaniment + 1L)
+        putVarint(zigzag(totalCents))
+        previousTimestamp = timestampMillis
+    }
+
+    override fun flush() {
+        drain()
+        out.flush()
+    }
+
+    override fun close() {
+        flush()
+        out.close()
+    }
+
+    private fun drain() {
+        out.write(buffer, 0, position)
+        position = 0
+    }
+
+    private fun putVarint(value: Long) {
+        var remaining = value
+        while (remaining and 0x7fL.inv() != 0L) {
+            buffer[position++] = ((remaining and 0x7f) or 0x80).toByte()
+            remaining = remaining ushr 7
+        }
+        buffer[position++] = remaining.toByte()
+    }
+
+    private fun zigzag(value: Long) = (value shl 1) xor (value shr 63)
+
+    companion object {
+        private const val BUFFER_BYTES = 8 * 1024
+    }
+}
+
+/**
+ * Reads orders in the [OrderCodec] format straight out of [source], which can be a heap, direct
+ * or memory-mapped buffer; nothing is copied. The decoder is a cursor: [next] moves to the next
+ * order, whose fields are then available as properties, without allocating.
+ */
+class OrderDecoder(source: ByteBuffer) {
+
+    // Own position, so the caller's buffer isn't moved
+    private val buffer = source.duplicate()
+
+    val formatVersion: Int
+    val catalogVersion: Long
+
+    var entree = OrderState.NONE
+        private set
+    var side = OrderState.NONE
+        private set
+    var accompaniment = OrderState.NONE
+        private set
+    var timestampMillis = 0L
+        private set
+    var totalCents = 0L
+        private set
+
+    init {
+        require(buffer.remaining() >= 3 &&
+                buffer.get().toInt() == OrderCodec.MAGIC_0 &&
+                buffer.get().toInt() == OrderCodec.MAGIC_1
+        ) { "Not an order stream" }
+        formatVersion = buffer.get().toInt()
+        require(formatVersion == OrderCodec.FORMAT_VERSION) {
+            "Unsupported order format version $formatVersion"
+        }
+        catalogVersion = getVarint()
+    }
+
+    /**
+     * Move to the next order. Returns false at the end of the stream, and throws
+     * [java.nio.BufferUnderflowException] if it ends in the middle of an order.
+     */
+    fun next(): Boolean {
+        if (!buffer.hasRemaining()) return false
+        timestampMillis += unzigzag(getVarint())
+        entree = getVarint().toInt() - 1
+        side = getVarint().toInt() - 1
+        accompaniment = getVarint().toInt() - 1
+        totalCents = unzigzag(getVarint())
+        return true
+    }
+
+    /**
+     * The current order as an [OrderState].
+     */
+    fun order() = OrderState(entree, side, accompaniment)
+
+    private fun getVarint(): Long {
+        var value = 0L
+        var shift = 0
+        while (true) {
+            val byte = buffer.get().toInt()
+            value = value or ((byte and 0x7f).toLong() shl shift)
+            if (byte and 0x80 == 0) return value
+            shift += 7
+            require(shift < 64) { "Malformed varint" }
+        }
+    }
+
+    private fun unzigzag(value: Long) = (value ushr 1) xor -(value and 1)
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+/**
+ * Many orders stored column by column: one primitive array per field instead of one object per
+ * order, so they can be scanned in bulk without chasing pointers. Row i is [quantity] copies of
+ * the order made of [entree], [side] and [accompaniment] at i.
+ */
+class OrderColumns(val size: Int) {
+
+    val entree = IntArray(size) { OrderState.NONE }
+    val side = IntArray(size) { OrderState.NONE }
+    val accompaniment = IntArray(size) { OrderState.NONE }
+    val quantity = IntArray(size) { 1 }
+
+    operator fun set(row: Int, order: OrderState) = set(row, order, 1)
+
+    fun set(row: Int, order: OrderState, quantity: Int) {
+        entree[row] = order.entree
+        side[row] = order.side
+        accompaniment[row] = order.accompaniment
+        this.quantity[row] = quantity
+    }
+
+    operator fun get(row: Int) = OrderState(entree[row], side[row], accompaniment[row])
+
+    companion object {
+        fun of(orders: List<OrderState>) = OrderColumns(orders.size).apply {
+            orders.forEachIndexed { row, order -> set(row, order) }
+        }
+    }
+}
+
+/**
+ * Amounts in cents for each row of an [OrderColumns].
+ */
+class PricedColumns(val size: Int) {
+    val subtotalCents = LongArray(size)
+    val taxCents = LongArray(size)
+    val totalCents = LongArray(size)
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.Flushable
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.text.SimpleDateFormat
+import java.util.Calendar
+import java.util.Date
+import java.util.Locale
+import java.util.TimeZone
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Submitted orders kept in local files under [directory], one per business day, for reports.
+ *
+ * A file is a sequence of blocks, each one a big-endian int length followed by an [OrderCodec]
+ * stream of up to [blockOrders] orders. Blocks are independent of each other, so they can be
+ * read in parallel. Orders are encoded on the submitting thread, but files are only opened and
+ * written by a background thread, a block at a time; a partial block is written out by [flush],
+ * and at the latest [flushDelayMillis] after its first order, so a process that's killed loses no
+ * more than that. With a delay of 0 every order is written out at once.
+ */
+class OrderHistory(
+    val directory: File,
+    private val blockOrders: Int = DEFAULT_BLOCK_ORDERS,
+    private val flushDelayMillis: Long = DEFAULT_FLUSH_DELAY_MILLIS,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val timeZone: TimeZone = TimeZone.getDefault(),
+    private val writer: ScheduledExecutorService = sharedWriter
+) : OrderSink, Flushable, Closeable {
+
+    private val block = ByteArrayOutputStream()
+    private var encoder = OrderEncoder(block)
+    private var pending = 0
+    private var flushTask: ScheduledFuture<*>? = null
+
+    // Business day of the block being encoded: its file, its first millisecond and the next day's
+    private var dayFile: File? = null
+    private var dayStart = 0L
+    private var dayEnd = 0L
+
+    // File being written and the first write that failed, only used on the writer thread
+    private var out: DataOutputStream? = null
+    private var outFile: File? = null
+    private var failure: IOException? = null
+
+    init {
+        if (!directory.isDirectory && !directory.mkdirs()) {
+            throw IOException("Cannot create $directory")
+        }
+    }
+
+    /**
+     * The file holding the orders of the business day that [millis] falls in.
+     */
+    fun fileFor(millis: Long): File {
+        val format = SimpleDateFormat(DAY_PATTERN, Locale.US)
+        format.timeZone = timeZone
+        return File(directory, "$FILE_PREFIX${format.format(Date(millis))}$FILE_SUFFIX")
+    }
+
+    override fun accept(order: OrderState) {
+        append(order, clock(), order.totalCents)
+    }
+
+    @Synchronized
+    fun append(order: OrderState, timestampMillis: Long, totalCents: Long) {
+        if (dayFile == null || timestampMillis < dayStart || timestampMillis >= dayEnd) {
+            startDay(timestampMillis)
+        }
+        encoder.write(order, timestampMillis, totalCents)
+        pending++
+        when {
+            pending == blockOrders -> handOff()
+            flushDelayMillis <= 0 -> flush()
+            pending == 1 -> flushTask = writer.schedule(
+                { flush() }, flushDelayMillis, TimeUnit.MILLISECONDS
+            )
+        }
+    }
+
+    /**
+     * Hand the orders appended so far, a partial block included, to the writer thread. Returns at
+     * once; the future completes once they are in the file, or fails with the [IOException] that
+     * lost them.
+     */
+    @Synchronized
+    fun flushAsync(): Future<*> {
+        if (pending > 0) handOff()
+        return writer.submit(Callable {
+            out?.flush()
+            failure?.let { failure = null; throw it }
+        })
+    }
+
+    /**
+     * Same as [flushAsync], without waiting for the orders to be written.
+     */
+    override fun flush() {
+        flushAsync()
+    }
+
+    /**
+     * Write out the orders appended so far and close the file, waiting for both.
+     */
+    override fun close() {
+        val closed = synchronized(this) {
+            if (pending > 0) handOff()
+            dayFile = null
+            writer.submit(Callable {
+                closeFile()
+                failure?.let { failure = null; throw it }
+            })
+        }
+        try {
+            closed.get()
+        } catch (e: ExecutionException) {
+            throw e.cause as? IOException ?: IOException(e.cause)
+        }
+    }
+
+    /**
+     * Hand the block being encoded to the writer and start the one of the day of [millis].
+     */
+    private fun startDay(millis: Long) {
+        if (pending > 0) handOff()
+        val calendar = Calendar.getInstance(timeZone).apply {
+            timeInMillis = millis
+            set(Calendar.HOUR_OF_DAY, 0)
+            set(Calendar.MINUTE, 0)
+            set(Calendar.SECOND, 0)
+            set(Calendar.MILLISECOND, 0)
+        }
+        dayStart = calendar.timeInMillis
+        calendar.add(Calendar.DAY_OF_MONTH, 1)
+        dayEnd = calendar.timeInMillis
+        dayFile = fileFor(millis)
+    }
+
+    private fun handOff() {
+        flushTask?.cancel(false)
+        flushTask = null
+        encoder.flush()
+        val bytes = block.toByteArray()
+        val file = dayFile!!
+        block.reset()
+        encoder = OrderEncoder(block)
+        pending = 0
+        writer.execute { writeBlock(file, bytes) }
+    }
+
+    private fun writeBlock(file: File, bytes: ByteArray) {
+        try {
+            if (file != outFile) {
+                closeFile()
+                out = DataOutputStream(FileOutputStream(file, true).buffered())
+                outFile = file
+            }
+            val out = out!!
+            out.writeInt(bytes.size)
+            out.write(bytes)
+        } catch (e: IOException) {
+            // The block is lost; the next one opens the file again
+            if (failure == null) failure = e
+            out = null
+            outFile = null
+        }
+    }
+
+    private fun closeFile() {
+        try {
+            out?.close()
+        } catch (e: IOException) {
+            if (failure == null) failure = e
+        }
+        out = null
+        outFile = null
+    }
+
+    companion object {
+        const val DEFAULT_BLOCK_ORDERS = 4096
+        const val DEFAULT_FLUSH_DELAY_MILLIS = 2_000L
+
+        private const val FILE_PREFIX = "orders-"
+        private const val FILE_SUFFIX = ".bin"
+        private const val DAY_PATTERN = "yyyy-MM-dd"
+
+        // Opens and writes the files of every history, in the order blocks are handed to it
+        private val sharedWriter: ScheduledExecutorService by lazy {
+            Executors.newSingleThreadScheduledExecutor { runnable ->
+                Thread(runnable, "order-history-writer").apply { isDaemon = true }
+            }
+        }
+
+        /**
+         * History registered with [OrderSubmissions] by [install], if any.
+         */
+        @Volatile
+        var installed: OrderHistory? = null
+            private set
+
+        /**
+         * Keep every order passed to [OrderSubmissions] in daily files under [directory]. Only
+         * the first call opens a history, later ones return it.
+         */
+        @Synchronized
+        fun install(directory: File): OrderHistory = installed ?: OrderHistory(directory).also {
+            OrderSubmissions.register(it)
+            installed = it
+        }
+
+        /**
+         * Map [file] and return a buffer per block, without copying. A block cut short, e.g. by
+         * a crash while it was written, is left out. A day without orders has no file, and no
+         * blocks.
+         */
+        fun blocks(file: File): List<ByteBuffer> {
+            if (!file.exists()) return emptyList()
+            val mapped = RandomAccessFile(file, "r").use {
+                it.channel.map(FileChannel.MapMode.READ_ONLY, 0, it.length())
+            }
+            val blocks = ArrayList<ByteBuffer>()
+            while (mapped.remaining() >= Int.SIZE_BYTES) {
+                val length = mapped.getInt()
+                if (length < 0 || length > mapped.remaining()) break
+                val end = mapped.position() + length
+                blocks.add(mapped.duplicate().apply { limit(end) }.slice())
+                mapped.position(end)
+            }
+            return blocks
+        }
+    }
+}
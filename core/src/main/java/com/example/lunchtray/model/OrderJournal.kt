@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+/**
+ * Makes every change to the order in [store] as a recorded event, so past states of the order can
+ * be looked up and the way it was put together can be audited.
+ *
+ * The last [capacity] events are kept in a ring buffer. Every [snapshotInterval] events the state
+ * of the order is kept as well, so rebuilding any retained state replays at most
+ * [snapshotInterval] - 1 events. Changes to the order have to go through the journal for its
+ * history to be complete.
+ */
+class OrderJournal(
+    val store: OrderStore = OrderStore(),
+    val capacity: Int = DEFAULT_CAPACITY,
+    val snapshotInterval: Int = DEFAULT_SNAPSHOT_INTERVAL,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    /**
+     * Receives the events of [OrderJournal.events].
+     */
+    fun interface Visitor {
+        fun onEvent(sequence: Long, timestampMillis: Long, kind: Int, ordinal: Int)
+    }
+
+    init {
+        require(snapshotInterval > 0 && capacity % snapshotInterval == 0) {
+            "capacity must be a multiple of snapshotInterval"
+        }
+    }
+
+    // Kind in the upper half, ordinal plus one in the lower half
+    private val events = LongArray(capacity)
+    private val timestamps = LongArray(capacity)
+
+    // Snapshot n is the state before event n * snapshotInterval
+    private val snapshotCount = capacity / snapshotInterval + 1
+    private val snapshots = arrayOfNulls<OrderState>(snapshotCount)
+
+    /**
+     * Number of events recorded so far, which is also the sequence number of the next one.
+     */
+    @get:Synchronized
+    var count = 0L
+        private set
+
+    init {
+        keepSnapshot(0, store.state)
+    }
+
+    /**
+     * Sequence number of the oldest event still kept. Events are dropped a snapshot interval at
+     * a time, so every kept one can be replayed from a snapshot.
+     */
+    val oldestSequence: Long
+        @Synchronized get() {
+            val overwritten = count - capacity
+            if (overwritten <= 0) return 0
+            return (overwritten + snapshotInterval - 1) / snapshotInterval * snapshotInterval
+        }
+
+    /**
+     * Choose the item with the given [ordinal], replacing the item of the same type.
+     */
+    @Synchronized
+    fun select(ordinal: Int): OrderState = record(SELECT, ordinal)
+
+    /**
+     * Take the item with the given [ordinal] out of the order. Nothing is recorded if it isn't in
+     * the order.
+     */
+    @Synchronized
+    fun deselect(ordinal: Int): OrderState = record(DESELECT, ordinal)
+
+    /**
+     * Cancel the order and start a new one.
+     */
+    @Synchronized
+    fun reset(): OrderState = record(RESET, OrderState.NONE)
+
+    /**
+     * Record that the current order was submitted and start a new one. Returns the order that was
+     * submitted.
+     */
+    @Synchronized
+    fun submit(): OrderState {
+        val submitted = store.state
+        record(SUBMIT, OrderState.NONE)
+        return submitted
+    }
+
+    /**
+     * The state of the order after the first [sequence] events, rebuilt from the closest snapshot.
+     * [sequence] has to be between [oldestSequence] and [count].
+     */
+    @Synchronized
+    fun stateAt(sequence: Long): OrderState {
+        require(sequence in oldestSequence..count) {
+            "Event $sequence is not kept, the journal holds $oldestSequence to $count"
+        }
+        val number = sequence / snapshotInterval
+        var state = snapshots[(number % snapshotCount).toInt()]!!
+        for (replayed in number * snapshotInterval until sequence) {
+            val event = events[(replayed % capacity).toInt()]
+            state = apply(state, (event ushr 32).toInt(), event.toInt() - 1)
+        }
+        return state
+    }
+
+    /**
+     * Visit the kept events from [fromSequence] on, oldest first.
+     */
+    @Synchronized
+    fun events(fromSequence: Long = oldestSequence, visitor: Visitor) {
+        for (sequence in maxOf(fromSequence, oldestSequence) until count) {
+            val slot = (sequence % capacity).toInt()
+            val event = events[slot]
+            visitor.onEvent(sequence, timestamps[slot], (event ushr 32).toInt(), event.toInt() - 1)
+        }
+    }
+
+    private fun record(kind: Int, ordinal: Int): OrderState {
+        val previous = store.state
+        val next = store.update { apply(it, kind, ordinal) }
+        if (next === previous) return next
+        val slot = (count % capacity).toInt()
+        events[slot] = (kind.toLong() shl 32) or (ordinal + 1L)
+        timestamps[slot] = clock()
+        count++
+        if (count % snapshotInterval == 0L) keepSnapshot(count / snapshotInterval, next)
+        return next
+    }
+
+    private fun keepSnapshot(number: Long, state: OrderState) {
+        snapshots[(number % snapshotCount).toInt()] = state
+    }
+
+    companion object {
+        const val SELECT = 1
+        const val DESELECT = 2
+        const val RESET = 3
+        const val SUBMIT = 4
+
+        const val DEFAULT_CAPACITY = 1024
+        const val DEFAULT_SNAPSHOT_INTERVAL = 64
+
+        /**
+         * The state after an event of [kind] for [ordinal] happened to [state].
+         */
+        fun apply(state: OrderState, kind: Int, ordinal: Int): OrderState = when (kind) {
+            SELECT -> state.withItem(ordinal)
+            DESELECT -> state.without(ordinal)
+            RESET, SUBMIT -> state.reset()
+            else -> throw IllegalArgumentException("Unknown event kind $kind")
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+
+/**
+ * Immutable snapshot of an order. Items are catalog ordinals, or [NONE] when nothing was chosen
+ * yet. Every change produces a new state with a higher [version].
+ */
+data class OrderState(
+    val entree: Int = NONE,
+    val side: Int = NONE,
+    val accompaniment: Int = NONE,
+    val version: Long = 0
+) {
+
+    /**
+     * Subtotal in cents, derived from the chosen items.
+     */
+    val subtotalCents: Long
+        get() = PriceTable.forCatalog()?.subtotalCents(entree, side, accompaniment)
+            ?: priceOf(entree) + priceOf(side) + priceOf(accompaniment)
+
+    val taxCents: Long
+        get() = taxCents(Pricing.TAX_RATE)
+
+    val totalCents: Long
+        get() = totalCents(Pricing.TAX_RATE)
+
+    /**
+     * Tax in cents where the tax rate is [taxRate].
+     */
+    fun taxCents(taxRate: Double): Long =
+        PriceTable.forCatalog(taxRate)?.taxCents(entree, side, accompaniment)
+            ?: Pricing.taxCents(subtotalCents, taxRate)
+
+    /**
+     * Total in cents where the tax rate is [taxRate].
+     */
+    fun totalCents(taxRate: Double): Long =
+        PriceTable.forCatalog(taxRate)?.totalCents(entree, side, accompaniment)
+            ?: subtotalCents + Pricing.taxCents(subtotalCents, taxRate)
+
+    fun withEntree(ordinal: Int) = copy(entree = ordinal, version = version + 1)
+
+    fun withSide(ordinal: Int) = copy(side = ordinal, version = version + 1)
+
+    fun withAccompaniment(ordinal: Int) = copy(accompaniment = ordinal, version = version + 1)
+
+    /**
+     * Choose the item with the given [ordinal], in the slot that matches its type.
+     */
+    fun withItem(ordinal: Int): OrderState = when (Catalog.type(ordinal)) {
+        ItemType.ENTREE -> withEntree(ordinal)
+        ItemType.SIDE_DISH -> withSide(ordinal)
+        ItemType.ACCOMPANIMENT -> withAccompaniment(ordinal)
+        else -> throw IllegalArgumentException("Unknown item type for ordinal $ordinal")
+    }
+
+    /**
+     * Take the item with the given [ordinal] out of the order, if it's in it.
+     */
+    fun without(ordinal: Int): OrderState = when (ordinal) {
+        NONE -> this
+        entree -> withEntree(NONE)
+        side -> withSide(NONE)
+        accompaniment -> withAccompaniment(NONE)
+        else -> this
+    }
+
+    /**
+     * Return an empty order that still follows this one.
+     */
+    fun reset() = OrderState(version = version + 1)
+
+    companion object {
+        const val NONE = -1
+
+        val EMPTY = OrderState()
+
+        private fun priceOf(ordinal: Int): Long =
+            if (ordinal == NONE) 0L else PriceTable.priceCents(ordinal).toLong()
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Holds the current [OrderState] and lets any thread change it without locking. Changes are
+ * applied with compare-and-set, so concurrent changes are never lost: a change that raced with
+ * another one is simply applied again on top of the newer state.
+ */
+class OrderStore(initial: OrderState = OrderState.EMPTY) {
+
+    /**
+     * Notified after every successful change, on the thread that made it.
+     */
+    fun interface Listener {
+        fun onOrderChanged(previous: OrderState, current: OrderState)
+    }
+
+    private val current = AtomicReference(initial)
+    private val listeners = CopyOnWriteArrayList<Listener>()
+
+    val state: OrderState
+        get() = current.get()
+
+    /**
+     * Apply [change] to the current state and return the new state. [change] must be free of side
+     * effects, since it may run more than once.
+     */
+    fun update(change: (OrderState) -> OrderState): OrderState {
+        while (true) {
+            val previous = current.get()
+            val next = change(previous)
+            if (next === previous) return previous
+            if (current.compareAndSet(previous, next)) {
+                listeners.forEach { it.onOrderChanged(previous, next) }
+                return next
+            }
+        }
+    }
+
+    fun addListener(listener: Listener) {
+        listeners.add(listener)
+    }
+
+    fun removeListener(listener: Listener) {
+        listeners.remove(listener)
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Receives orders once they are submitted.
+ */
+fun interface OrderSink {
+    fun accept(order: OrderState)
+}
+
+/**
+ * Hands every submitted order to the registered [OrderSink]s, on the submitting thread.
+ */
+object OrderSubmissions {
+
+    private val sinks = CopyOnWriteArrayList<OrderSink>()
+
+    fun register(sink: OrderSink) {
+        sinks.add(sink)
+    }
+
+    fun unregister(sink: OrderSink) {
+        sinks.remove(sink)
+    }
+
+    fun submit(order: OrderState) {
+        sinks.forEach { it.accept(order) }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Subtotal and tax of every possible order, for one catalog and one tax rate. An order is at most
+ * one item of each type, so the table has a cell for each (entree, side, accompaniment)
+ * combination, "none" included, and pricing an order is a single lookup.
+ *
+ * Amounts are the ones [Pricing] computes; the table only saves doing it on every change.
+ * Orders are priced with the compiled-in catalog until other prices are put in use with
+ * [usePrices], as when a location or a fetched catalog snapshot is selected.
+ */
+class PriceTable private constructor(
+    val catalogVersion: Long,
+    val taxRate: Double,
+    // Position of each ordinal within its item type, 1-based; 0 stands for "none"
+    private val positions: IntArray,
+    private val sides: Int,
+    private val accompaniments: Int,
+    private val subtotals: LongArray,
+    private val taxes: LongArray
+) {
+
+    fun subtotalCents(entree: Int, side: Int, accompaniment: Int): Long =
+        subtotals[indexOf(entree, side, accompaniment)]
+
+    fun taxCents(entree: Int, side: Int, accompaniment: Int): Long =
+        taxes[indexOf(entree, side, accompaniment)]
+
+    fun totalCents(entree: Int, side: Int, accompaniment: Int): Long {
+        val index = indexOf(entree, side, accompaniment)
+        return subtotals[index] + taxes[index]
+    }
+
+    private fun indexOf(entree: Int, side: Int, accompaniment: Int): Int =
+        (positionOf(entree) * sides + positionOf(side)) * accompaniments + positionOf(accompaniment)
+
+    private fun positionOf(ordinal: Int) = if (ordinal == OrderState.NONE) 0 else positions[ordinal]
+
+    companion object {
+        /**
+         * Largest table built, in cells. Bigger catalogs are priced item by item.
+         */
+        const val MAX_CELLS = 1 shl 16
+
+        // Prices in use, by catalog ordinal, with their tables per tax rate and the last one
+        // looked up. Replaced as a whole, so a table never outlives its prices.
+        private class Prices(val catalogVersion: Long, val cents: IntArray) {
+            val tables = ConcurrentHashMap<Double, PriceTable>()
+            @Volatile
+            var recent: PriceTable? = null
+        }
+
+        private val catalogPrices = Prices(Catalog.VERSION, IntArray(Catalog.SIZE) {
+            Catalog.priceCents(it)
+        })
+
+        @Volatile
+        private var prices = catalogPrices
+
+        private val types = IntArray(Catalog.SIZE) { Catalog.type(it) }
+
+        // Whether the catalog has too many combinations to tabulate
+        private val oversized: Boolean by lazy {
+            val counts = IntArray(ItemType.ACCOMPANIMENT + 1)
+            for (type in types) counts[type]++
+            (counts[ItemType.ENTREE] + 1L) * (counts[ItemType.SIDE_DISH] + 1) *
+                    (counts[ItemType.ACCOMPANIMENT] + 1) > MAX_CELLS
+        }
+
+        /**
+         * Price orders with [priceCents], indexed by catalog ordinal, from now on. The tables of
+         * the previous prices are dropped and new ones built as they're needed.
+         */
+        fun usePrices(catalogVersion: Long, priceCents: IntArray) {
+            require(priceCents.size == Catalog.SIZE) { "Expected ${Catalog.SIZE} prices" }
+            prices = Prices(catalogVersion, priceCents.copyOf())
+        }
+
+        /**
+         * Price orders with the compiled-in catalog again.
+         */
+        fun useCatalogPrices() {
+            prices = catalogPrices
+        }
+
+        /**
+         * Price in use for the item with [ordinal].
+         */
+        fun priceCents(ordinal: Int): Int = prices.cents[ordinal]
+
+        /**
+         * Table for the prices in use and [taxRate], built the first time it's needed. Null when
+         * the catalog is too large to tabulate.
+         */
+        fun forCatalog(taxRate: Double = Pricing.TAX_RATE): PriceTable? {
+            val current = prices
+            val last = current.recent
+            if (last != null && last.taxRate == taxRate) return last
+            if (oversized) return null
+            val table = current.tables.getOrPut(taxRate) {
+                build(current.catalogVersion, current.cents, types, taxRate)!!
+            }
+            current.recent = table
+            return table
+        }
+
+        /**
+         * Build the table for the items with the given [priceCents] and [types], indexed by
+         * ordinal, or return null if it would have more than [MAX_CELLS] cells.
+         */
+        fun build(
+            catalogVersion: Long,
+            priceCents: IntArray,
+            types: IntArray,
+            taxRate: Double
+        ): PriceTable? {
+            // Group ordinals by type
+            val byType = listOf(ItemType.ENTREE, ItemType.SIDE_DISH, ItemType.ACCOMPANIMENT)
+                .map { type -> types.indices.filter { types[it] == type } }
+            val (entrees, sides, accompaniments) = byType.map { it.size + 1 }
+            val cells = entrees.toLong() * sides * accompaniments
+            if (cells > MAX_CELLS) return null
+
+            val positions = IntArray(types.size)
+            for (ordinals in byType) {
+                ordinals.forEachIndexed { i, ordinal -> positions[ordinal] = i + 1 }
+            }
+            // Prices by position, 0 for "none"
+            val (entreePrices, sidePrices, accompanimentPrices) = byType.map { ordinals ->
+                LongArray(ordinals.size + 1) { position ->
+                    if (position == 0) 0L else priceCents[ordinals[position - 1]].toLong()
+                }
+            }
+
+            val subtotals = LongArray(cells.toInt())
+            val taxes = LongArray(cells.toInt())
+            var index = 0
+            for (entree in entreePrices) {
+                for (side in sidePrices) {
+                    for (accompaniment in accompanimentPrices) {
+                        val subtotal = entree + side + accompaniment
+                        subtotals[index] = subtotal
+                        taxes[index] = Pricing.taxCents(subtotal, taxRate)
+                        index++
+                    }
+                }
+            }
+            return PriceTable(
+                catalogVersion, taxRate, positions, sides, accompaniments, subtotals, taxes
+            )
+        }
+    }
+}
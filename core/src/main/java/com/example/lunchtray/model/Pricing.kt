@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import java.text.NumberFormat
+
+/**
+ * Tax and formatting rules shared by everything that prices an order. Amounts are in cents.
+ */
+object Pricing {
+
+    // Default tax rate
+    const val TAX_RATE = 0.08
+
+    /**
+     * Tax on [subtotalCents], rounded half-even to the cent like the currency formatter does.
+     */
+    fun taxCents(subtotalCents: Long, taxRate: Double = TAX_RATE): Long =
+        Math.rint(subtotalCents * taxRate).toLong()
+
+    /**
+     * Format [cents] as a currency amount in the default locale.
+     */
+    fun format(cents: Long): String = NumberFormat.getCurrencyInstance().format(cents / 100.0)
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.recommend
+
+/**
+ * The up to [capacity] top ranked of the keys 0 until [keyCount], as a min-heap ordered by
+ * [order] with the lowest ranked key at the root. The heap knows the slot of each key, so a key
+ * whose rank went up is moved in O(log [capacity]) instead of searched for.
+ */
+internal class IndexedMinHeap(
+    private val capacity: Int,
+    keyCount: Int,
+    private val order: KeyOrder
+) {
+
+    fun interface KeyOrder {
+        /**
+         * Positive when key [a] ranks above key [b].
+         */
+        fun compare(a: Int, b: Int): Int
+    }
+
+    private val keys = IntArray(capacity)
+
+    // Slot of each key, or -1
+    private val slots = IntArray(keyCount) { -1 }
+
+    var size = 0
+        private set
+
+    operator fun contains(key: Int): Boolean = slots[key] >= 0
+
+    /**
+     * Take in [key] after its rank went up: it moves away from the root if it's already in the
+     * heap, or replaces the root if it now ranks above it.
+     */
+    fun raise(key: Int) {
+        val slot = slots[key]
+        when {
+            slot >= 0 -> siftDown(slot)
+            size < capacity -> {
+                place(size, key)
+                siftUp(size++)
+            }
+            order.compare(key, keys[0]) > 0 -> {
+                slots[keys[0]] = -1
+                place(0, key)
+                siftDown(0)
+            }
+        }
+    }
+
+    /**
+     * Restore the heap after the rank of any number of its keys changed.
+     */
+    fun rebuild() {
+        for (slot in size / 2 - 1 downTo 0) siftDown(slot)
+    }
+
+    /**
+     * Keys in the heap, top ranked first.
+     */
+    fun ranked(): IntArray {
+        // At most capacity keys: sorting them is cheap
+        return keys.copyOf(size).sortedWith { a, b -> order.compare(b, a) }.toIntArray()
+    }
+
+    private fun place(slot: Int, key: Int) {
+        keys[slot] = key
+        slots[key] = slot
+    }
+
+    private fun siftUp(from: Int) {
+        var slot = from
+        val key = keys[slot]
+        while (slot > 0) {
+            val parent = (slot - 1) / 2
+            val above = keys[parent]
+            if (order.compare(key, above) >= 0) break
+            place(slot, above)
+            slot = parent
+        }
+        place(slot, key)
+    }
+
+    private fun siftDown(from: Int) {
+        var slot = from
+        val key = keys[slot]
+        while (true) {
+            var child = slot * 2 + 1
+            if (child >= size) break
+            if (child + 1 < size && order.compare(keys[child + 1], keys[child]) < 0) child++
+            val below = keys[child]
+            if (order.compare(below, key) >= 0) break
+            place(slot, below)
+            slot = child
+        }
+        place(slot, key)
+    }
+}
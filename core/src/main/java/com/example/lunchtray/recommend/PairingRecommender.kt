@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.recommend
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderSink
+import com.example.lunchtray.model.OrderState
+import com.example.lunchtray.model.OrderSubmissions
+
+/**
+ * Learns from submitted orders which items are ordered together: sides with each entree, and
+ * accompaniments with each side.
+ *
+ * Pair counts live in a [size] x [size] matrix indexed by catalog ordinal, updated as each order
+ * comes in. Every row also keeps a min-heap of its [k] most frequent partners, adjusted on each
+ * update, so [pairedWith] never sorts a row.
+ */
+class PairingRecommender(
+    private val k: Int = DEFAULT_K,
+    private val size: Int = Catalog.SIZE
+) : OrderSink {
+
+    // counts[a * size + b]: orders with both a and b
+    private val counts = IntArray(size * size)
+
+    // Per row: its k most frequent partners
+    private val heaps = Array(size) { row ->
+        IndexedMinHeap(k, size) { a, b -> compare(row, a, b) }
+    }
+
+    @Synchronized
+    override fun accept(order: OrderState) {
+        pair(order.entree, order.side)
+        pair(order.side, order.accompaniment)
+    }
+
+    /**
+     * Number of orders that had both [first] and [second], where [second] is the side of entree
+     * [first] or the accompaniment of side [first].
+     */
+    @Synchronized
+    fun count(first: Int, second: Int): Int = counts[first * size + second]
+
+    /**
+     * Up to [k] items most often ordered with [ordinal], most frequent first. Ties go to the item
+     * that comes first in the menu.
+     */
+    @Synchronized
+    fun pairedWith(ordinal: Int): IntArray {
+        if (ordinal == OrderState.NONE) return IntArray(0)
+        return heaps[ordinal].ranked()
+    }
+
+    private fun pair(first: Int, second: Int) {
+        if (first == OrderState.NONE || second == OrderState.NONE) return
+        counts[first * size + second]++
+        heaps[first].raise(second)
+    }
+
+    // Positive when partner a of row ranks above partner b
+    private fun compare(row: Int, a: Int, b: Int): Int {
+        val byCount = counts[row * size + a].compareTo(counts[row * size + b])
+        return if (byCount != 0) byCount else b.compareTo(a)
+    }
+
+    companion object {
+        const val DEFAULT_K = 4
+
+        /**
+         * Recommender fed with every order passed to [OrderSubmissions].
+         */
+        val shared: PairingRecommender by lazy {
+            PairingRecommender().also { OrderSubmissions.register(it) }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.recommend
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderSink
+import com.example.lunchtray.model.OrderState
+import com.example.lunchtray.model.OrderSubmissions
+
+/**
+ * Ranks the items of each category by how often they were ordered lately. Every order counts for
+ * its items with a weight that halves every [halfLifeMillis], so the ranking follows what sells
+ * now rather than what sold last month.
+ *
+ * Rather than decaying every count as time passes, later orders count for more: an order placed
+ * [halfLifeMillis] after another weighs twice as much. Scores already counted keep their order,
+ * so each category keeps its [k] most popular items in an indexed min-heap, which an order
+ * updates in O(log k) instead of sorting the category again. Before weights get too large all
+ * scores are scaled down by the same factor.
+ */
+class PopularityRanking(
+    private val k: Int = DEFAULT_K,
+    private val halfLifeMillis: Long = DEFAULT_HALF_LIFE_MILLIS,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val size: Int = Catalog.SIZE
+) : OrderSink {
+
+    private val types = IntArray(size) { Catalog.type(it) }
+    private val typeCount = (types.maxOrNull() ?: 0) + 1
+
+    // Weighted order count of each item, relative to the weight of an order placed at origin
+    private val scores = DoubleArray(size)
+    private var origin = clock()
+
+    // Per category: its k most popular items
+    private val heaps = Array(typeCount) { IndexedMinHeap(k, size) { a, b -> compare(a, b) } }
+
+    @Synchronized
+    override fun accept(order: OrderState) {
+        val weight = weightAt(clock())
+        count(order.entree, weight)
+        count(order.side, weight)
+        count(order.accompaniment, weight)
+    }
+
+    /**
+     * Orders of [ordinal] so far, each decayed by the time since it was placed.
+     */
+    @Synchronized
+    fun score(ordinal: Int): Double = scores[ordinal] / weightAt(clock())
+
+    /**
+     * Items of the category of [type]: its up to [k] most popular ones, most popular first, then
+     * the others in menu order. Ties go to the item that comes first in the menu.
+     */
+    @Synchronized
+    fun ranked(type: Int): IntArray {
+        val heap = heaps.getOrNull(type) ?: return IntArray(0)
+        val rest = (0 until size).filter { types[it] == type && it !in heap }
+        return heap.ranked() + rest
+    }
+
+    private fun count(ordinal: Int, weight: Double) {
+        if (ordinal == OrderState.NONE) return
+        scores[ordinal] += weight
+        heaps[types[ordinal]].raise(ordinal)
+    }
+
+    /**
+     * Weight of an order placed at [nowMillis]. Scores are scaled down first when it would get
+     * too large, and the heaps rebuilt in case some scores rounded to the same value.
+     */
+    private fun weightAt(nowMillis: Long): Double {
+        val halfLives = (nowMillis - origin).toDouble() / halfLifeMillis
+        if (halfLives < RESCALE_HALF_LIVES) return Math.pow(2.0, halfLives)
+        val factor = Math.pow(2.0, -halfLives)
+        for (i in scores.indices) scores[i] *= factor
+        origin = nowMillis
+        heaps.forEach { it.rebuild() }
+        return 1.0
+    }
+
+    // Positive when item a ranks above item b
+    private fun compare(a: Int, b: Int): Int {
+        val byScore = scores[a].compareTo(scores[b])
+        return if (byScore != 0) byScore else b.compareTo(a)
+    }
+
+    companion object {
+        const val DEFAULT_K = 4
+        const val DEFAULT_HALF_LIFE_MILLIS = 2 * 60 * 60 * 1000L
+
+        // Weights stay below 2^512, far from overflowing even summed over many orders
+        private const val RESCALE_HALF_LIVES = 512.0
+
+        /**
+         * Ranking registered with [OrderSubmissions] by [install], if any.
+         */
+        @Volatile
+        var installed: PopularityRanking? = null
+            private set
+
+        /**
+         * Rank the menus by every order passed to [OrderSubmissions]. Only the first call creates
+         * a ranking, later ones return it.
+         */
+        @Synchronized
+        fun install(): PopularityRanking = installed ?: PopularityRanking().also {
+            OrderSubmissions.register(it)
+            installed = it
+        }
+    }
+}
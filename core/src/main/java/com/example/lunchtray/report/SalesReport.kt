@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.report
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderDecoder
+import com.example.lunchtray.model.OrderHistory
+import com.example.lunchtray.model.OrderState
+import java.io.File
+import java.io.Writer
+import java.nio.ByteBuffer
+import java.util.TimeZone
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveTask
+
+/**
+ * Sales figures added up over a set of orders. Items are counted by catalog ordinal and revenue
+ * is at catalog prices; the amounts charged come from the order records, and tax is what was
+ * charged on top of the items.
+ *
+ * Orders recorded against another version of the catalog count towards the orders and amounts
+ * charged, by hour too, but their items can't be told, so neither can their tax. They're also
+ * counted as [otherCatalogOrders].
+ */
+class SalesTotals {
+    var orders = 0L
+        private set
+    var chargedCents = 0L
+        private set
+    var taxCents = 0L
+        private set
+    var otherCatalogOrders = 0L
+        private set
+    val itemCounts = LongArray(Catalog.SIZE)
+
+    // Indexed by ItemType
+    val revenueByType = LongArray(TYPES)
+    val ordersByHour = LongArray(HOURS)
+    val chargedByHour = LongArray(HOURS)
+
+    internal fun add(decoder: OrderDecoder, hour: Int) {
+        val subtotal = addItem(decoder.entree) + addItem(decoder.side) +
+                addItem(decoder.accompaniment)
+        orders++
+        chargedCents += decoder.totalCents
+        taxCents += decoder.totalCents - subtotal
+        ordersByHour[hour]++
+        chargedByHour[hour] += decoder.totalCents
+    }
+
+    internal fun addOtherCatalog(decoder: OrderDecoder, hour: Int) {
+        orders++
+        otherCatalogOrders++
+        chargedCents += decoder.totalCents
+        ordersByHour[hour]++
+        chargedByHour[hour] += decoder.totalCents
+    }
+
+    private fun addItem(ordinal: Int): Long {
+        if (ordinal == OrderState.NONE) return 0
+        val price = Catalog.priceCents(ordinal).toLong()
+        itemCounts[ordinal]++
+        revenueByType[Catalog.type(ordinal)] += price
+        return price
+    }
+
+    /**
+     * Add everything in [other] to these totals.
+     */
+    fun merge(other: SalesTotals): SalesTotals {
+        orders += other.orders
+        chargedCents += other.chargedCents
+        taxCents += other.taxCents
+        otherCatalogOrders += other.otherCatalogOrders
+        for (i in itemCounts.indices) itemCounts[i] += other.itemCounts[i]
+        for (i in revenueByType.indices) revenueByType[i] += other.revenueByType[i]
+        for (hour in 0 until HOURS) {
+            ordersByHour[hour] += other.ordersByHour[hour]
+            chargedByHour[hour] += other.chargedByHour[hour]
+        }
+        return this
+    }
+
+    companion object {
+        const val HOURS = 24
+        private const val TYPES = 4
+    }
+}
+
+/**
+ * End-of-day sales report over the [OrderHistory] file of a day: item counts, revenue by item
+ * type, tax and orders by hour.
+ *
+ * History blocks are split into fork-join tasks that decode their orders straight out of the
+ * mapped file and add them up into partial totals, merged as the tasks join. No order is kept
+ * in memory. Runs on [pool], so it's meant to be called off the main thread.
+ */
+class SalesReport(
+    private val pool: ForkJoinPool = ForkJoinPool.commonPool(),
+    private val timeZone: TimeZone = TimeZone.getDefault()
+) {
+
+    /**
+     * Add up the orders of the [history] file, see [OrderHistory.fileFor], and write the report
+     * to [report].
+     */
+    fun generate(history: File, report: File): SalesTotals {
+        val totals = totals(OrderHistory.blocks(history))
+        report.bufferedWriter().use { write(totals, it) }
+        return totals
+    }
+
+    fun totals(blocks: List<ByteBuffer>): SalesTotals = pool.invoke(Task(blocks, 0, blocks.size))
+
+    /**
+     * Write [totals] as comma separated sections, amounts in dollars.
+     */
+    fun write(totals: SalesTotals, out: Writer) {
+        out.write("orders,${totals.orders}\n")
+        out.write("charged,${dollars(totals.chargedCents)}\n")
+        out.write("tax,${dollars(totals.taxCents)}\n")
+        out.write("other catalog orders,${totals.otherCatalogOrders}\n")
+        out.write("\nitem,name,count\n")
+        for (ordinal in 0 until Catalog.SIZE) {
+            out.write("${Catalog.key(ordinal)},${Catalog.name(ordinal)},")
+            out.write("${totals.itemCounts[ordinal]}\n")
+        }
+        out.write("\ntype,revenue\n")
+        out.write("entree,${dollars(totals.revenueByType[ItemType.ENTREE])}\n")
+        out.write("side,${dollars(totals.revenueByType[ItemType.SIDE_DISH])}\n")
+        out.write("accompaniment,${dollars(totals.revenueByType[ItemType.ACCOMPANIMENT])}\n")
+        out.write("\nhour,orders,charged\n")
+        for (hour in 0 until SalesTotals.HOURS) {
+            out.write("$hour,${totals.ordersByHour[hour]},${dollars(totals.chargedByHour[hour])}\n")
+        }
+    }
+
+    private inner class Task(
+        private val blocks: List<ByteBuffer>,
+        private val from: Int,
+        private val to: Int
+    ) : RecursiveTask<SalesTotals>() {
+
+        override fun compute(): SalesTotals {
+            if (to - from <= LEAF_BLOCKS) return addUp(blocks, from, to)
+            val middle = (from + to) ushr 1
+            val right = Task(blocks, middle, to).apply { fork() }
+            val totals = Task(blocks, from, middle).compute()
+            return totals.merge(right.join())
+        }
+    }
+
+    private fun addUp(blocks: List<ByteBuffer>, from: Int, to: Int): SalesTotals {
+        val totals = SalesTotals()
+        for (index in from until to) {
+            val decoder = OrderDecoder(blocks[index])
+            // Ordinals of another catalog can't be priced
+            if (decoder.catalogVersion != Catalog.VERSION) {
+                while (decoder.next()) {
+                    totals.addOtherCatalog(decoder, hourOf(decoder.timestampMillis))
+                }
+                continue
+            }
+            while (decoder.next()) totals.add(decoder, hourOf(decoder.timestampMillis))
+        }
+        return totals
+    }
+
+    private fun hourOf(millis: Long): Int =
+        (Math.floorMod(millis + timeZone.getOffset(millis), DAY_MILLIS) / HOUR_MILLIS).toInt()
+
+    private fun dollars(cents: Long): String {
+        val sign = if (cents < 0) "-" else ""
+        val absolute = Math.abs(cents)
+        return "$sign${absolute / 100}.${(absolute % 100).toString().padStart(2, '0')}"
+    }
+
+    companion object {
+        // History blocks added up by one task without splitting further
+        private const val LEAF_BLOCKS = 4
+
+        private const val HOUR_MILLIS = 60 * 60 * 1000L
+        private const val DAY_MILLIS = 24 * HOUR_MILLIS
+    }
+}
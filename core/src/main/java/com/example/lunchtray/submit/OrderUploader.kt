@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.submit
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.URL
+import java.net.URLEncoder
+
+/**
+ * Sends orders to the order intake server.
+ */
+fun interface OrderUploader {
+
+    /**
+     * Send [order]. Returns 0 once the server took it, or how many milliseconds to hold off when
+     * the server is too busy to take it now. Throws [IOException] if the server can't be reached
+     * and [IllegalArgumentException] if it rejects the order for good.
+     */
+    @Throws(IOException::class)
+    fun upload(order: OrderState): Long
+}
+
+/**
+ * Posts orders to the /orders endpoint at [url], form encoded with the keys of their items.
+ * 429 and 503 responses are the server asking to slow down, for as long as their Retry-After
+ * header says.
+ */
+class HttpOrderUploader(
+    private val url: URL,
+    private val timeoutMillis: Int = DEFAULT_TIMEOUT_MILLIS
+) : OrderUploader {
+
+    override fun upload(order: OrderState): Long {
+        val body = formOf(order).toByteArray(Charsets.UTF_8)
+        val connection = url.openConnection() as HttpURLConnection
+        try {
+            connection.requestMethod = "POST"
+            connection.doOutput = true
+            connection.connectTimeout = timeoutMillis
+            connection.readTimeout = timeoutMillis
+            connection.setFixedLengthStreamingMode(body.size)
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded")
+            connection.outputStream.use { it.write(body) }
+            val status = connection.responseCode
+            // Read the response out so the connection can be reused
+            (if (status < 400) connection.inputStream else connection.errorStream)
+                ?.use { it.readBytes() }
+            return when {
+                status in 200..299 -> 0
+                status == 429 || status == 503 -> retryAfterMillis(connection)
+                status in 400..499 -> throw IllegalArgumentException("Order rejected: $status")
+                else -> throw IOException("Order intake failed: $status")
+            }
+        } finally {
+            connection.disconnect()
+        }
+    }
+
+    private fun retryAfterMillis(connection: HttpURLConnection): Long {
+        val seconds = connection.getHeaderField("Retry-After")?.trim()?.toLongOrNull()
+        return if (seconds != null && seconds >= 0) maxOf(seconds * 1000, 1) else
+            DEFAULT_RETRY_AFTER_MILLIS
+    }
+
+    companion object {
+        const val DEFAULT_TIMEOUT_MILLIS = 10_000
+        const val DEFAULT_RETRY_AFTER_MILLIS = 1_000L
+
+        /**
+         * [order] as the form the intake server parses, e.g. entree=pasta&side=soup.
+         */
+        fun formOf(order: OrderState): String = listOf(
+            "entree" to order.entree,
+            "side" to order.side,
+            "accompaniment" to order.accompaniment
+        ).filter { it.second != OrderState.NONE }.joinToString("&") { (field, ordinal) ->
+            "$field=${URLEncoder.encode(Catalog.key(ordinal), "UTF-8")}"
+        }
+    }
+}
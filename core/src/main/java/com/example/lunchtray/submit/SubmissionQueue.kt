@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.submit
+
+import com.example.lunchtray.metrics.LatencyHistogram
+import com.example.lunchtray.model.OrderSink
+import com.example.lunchtray.model.OrderState
+import com.example.lunchtray.model.OrderSubmissions
+import java.io.Closeable
+import java.io.IOException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingDeque
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Sends submitted orders to the server through [uploader] without overwhelming it.
+ *
+ * - At most [capacity] orders are waiting or being sent; [offer] and [reserve] refuse more.
+ * - Uploads start at no more than [ratePerSecond] on average, in bursts of up to [burst].
+ * - At most [maxInFlight] uploads run at the same time.
+ *
+ * When the server asks to hold off, or can't be reached, the order goes back to the head of the
+ * queue, nothing is sent until the delay has passed and the rate is halved. Each upload that goes
+ * through raises it again by a tenth of [ratePerSecond]. Orders are only given up on when the
+ * server rejects them or the uploader fails with anything other than an [IOException].
+ */
+class SubmissionQueue(
+    private val uploader: OrderUploader,
+    val ratePerSecond: Double = DEFAULT_RATE_PER_SECOND,
+    private val burst: Int = DEFAULT_BURST,
+    val maxInFlight: Int = DEFAULT_MAX_IN_FLIGHT,
+    val capacity: Int = DEFAULT_CAPACITY
+) : OrderSink, Closeable {
+
+    // An order past capacity, accepted without a slot, doesn't hold one
+    private class Pending(val order: OrderState, val queuedAt: Long, val holdsSlot: Boolean)
+
+    private val queue = LinkedBlockingDeque<Pending>()
+    private val slots = Semaphore(capacity)
+    private val reservedSlots = AtomicInteger()
+    private val overCapacity = AtomicInteger()
+    private val uploadPermits = Semaphore(maxInFlight)
+    private val uploads: ExecutorService = Executors.newFixedThreadPool(maxInFlight) { runnable ->
+        Thread(runnable, "order-upload").apply { isDaemon = true }
+    }
+
+    // Token bucket, only used by the dispatcher
+    private var tokens = burst.toDouble()
+    private var refilledAt = System.nanoTime()
+
+    // Nothing is sent before this time, in System.nanoTime()
+    @Volatile
+    private var holdUntil = 0L
+    private val failures = AtomicInteger()
+
+    @Volatile
+    private var running = true
+
+    /**
+     * Upload rate currently allowed, lowered while the server pushes back.
+     */
+    @Volatile
+    var currentRate = ratePerSecond
+        private set
+
+    /**
+     * Time orders spent queued before their upload started, in nanoseconds.
+     */
+    val waitTimes = LatencyHistogram()
+
+    private val throttled = AtomicLong()
+    private val uploadedCount = AtomicLong()
+    private val retriedCount = AtomicLong()
+    private val droppedCount = AtomicLong()
+
+    /**
+     * Orders waiting or being sent.
+     */
+    val queueDepth: Int
+        get() = capacity - slots.availablePermits() - reservedSlots.get() + overCapacity.get()
+
+    val inFlight: Int
+        get() = maxInFlight - uploadPermits.availablePermits()
+
+    /**
+     * Total time uploads were held back by the rate or by the server.
+     */
+    val throttledMillis: Long
+        get() = TimeUnit.NANOSECONDS.toMillis(throttled.get())
+
+    val uploaded: Long
+        get() = uploadedCount.get()
+
+    val retried: Long
+        get() = retriedCount.get()
+
+    val dropped: Long
+        get() = droppedCount.get()
+
+    /**
+     * Whether [offer] would take another order right now.
+     */
+    val hasRoom: Boolean
+        get() = slots.availablePermits() > 0
+
+    private val dispatcher = Thread(::dispatchLoop, "order-submissions").apply {
+        isDaemon = true
+        start()
+    }
+
+    /**
+     * Queue [order] for upload. Returns false if the queue is full or closed.
+     */
+    fun offer(order: OrderState): Boolean {
+        if (!running || !slots.tryAcquire()) return false
+        queue.put(Pending(order, System.nanoTime(), holdsSlot = true))
+        return true
+    }
+
+    /**
+     * Hold a slot for an order about to be submitted, before its items are taken from stock, so
+     * the next [accept] gets it even if the queue fills up in the meantime. Returns false if the
+     * queue is full or closed. A slot that isn't used is given back by [cancelReservation].
+     */
+    fun reserve(): Boolean {
+        if (!running || !slots.tryAcquire()) return false
+        reservedSlots.incrementAndGet()
+        return true
+    }
+
+    fun cancelReservation() {
+        if (takeReservation()) slots.release()
+    }
+
+    /**
+     * Queue a submitted order for upload. Its items are already taken from stock, so it's never
+     * refused: it takes a slot held by [reserve] or a free one, and past [capacity] it waits
+     * without one.
+     */
+    override fun accept(order: OrderState) {
+        val holdsSlot = takeReservation() || slots.tryAcquire()
+        if (!holdsSlot) overCapacity.incrementAndGet()
+        queue.put(Pending(order, System.nanoTime(), holdsSlot))
+    }
+
+    /**
+     * Stop sending. Orders still queued are not sent.
+     */
+    override fun close() {
+        running = false
+        dispatcher.interrupt()
+        dispatcher.join()
+        uploads.shutdownNow()
+    }
+
+    private fun dispatchLoop() {
+        try {
+            while (running) {
+                // Wait for a free upload first, so an order put back by it is the next one taken
+                uploadPermits.acquire()
+                val pending = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)
+                if (pending == null) {
+                    uploadPermits.release()
+                    continue
+                }
+                val start = System.nanoTime()
+                takeToken()
+                val now = System.nanoTime()
+                throttled.addAndGet(now - start)
+                waitTimes.record(now - pending.queuedAt)
+                uploads.execute { upload(pending) }
+            }
+        } catch (e: InterruptedException) {
+            // Closed
+        }
+    }
+
+    /**
+     * Wait until the server's hold is over and a token is available, and take it.
+     */
+    private fun takeToken() {
+        while (true) {
+            val now = System.nanoTime()
+            val hold = holdUntil - now
+            if (hold > 0) {
+                TimeUnit.NANOSECONDS.sleep(hold)
+                continue
+            }
+            val rate = currentRate
+            tokens = minOf(burst.toDouble(), tokens + (now - refilledAt) * rate / NANOS_PER_SECOND)
+            refilledAt = now
+            if (tokens >= 1) {
+                tokens -= 1
+                return
+            }
+            TimeUnit.NANOSECONDS.sleep(((1 - tokens) / rate * NANOS_PER_SECOND).toLong() + 1)
+        }
+    }
+
+    private fun upload(pending: Pending) {
+        try {
+            val holdMillis = uploader.upload(pending.order)
+            if (holdMillis > 0) {
+                retry(pending, holdMillis)
+            } else {
+                failures.set(0)
+                release(pending)
+                uploadedCount.incrementAndGet()
+                speedUp()
+            }
+        } catch (e: IOException) {
+            val attempt = minOf(failures.getAndIncrement(), MAX_BACKOFF_DOUBLINGS)
+            retry(pending, FAILURE_BACKOFF_MILLIS shl attempt)
+        } catch (e: RuntimeException) {
+            // Rejected, or the uploader can't send it at all, e.g. for a URL that isn't http:
+            // retrying won't help
+            release(pending)
+            droppedCount.incrementAndGet()
+        } finally {
+            uploadPermits.release()
+        }
+    }
+
+    private fun takeReservation(): Boolean {
+        while (true) {
+            val reserved = reservedSlots.get()
+            if (reserved == 0) return false
+            if (reservedSlots.compareAndSet(reserved, reserved - 1)) return true
+        }
+    }
+
+    private fun release(pending: Pending) {
+        if (pending.holdsSlot) slots.release() else overCapacity.decrementAndGet()
+    }
+
+    private fun retry(pending: Pending, holdMillis: Long) {
+        retriedCount.incrementAndGet()
+        slowDown(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(holdMillis))
+        queue.putFirst(pending)
+    }
+
+    @Synchronized
+    private fun slowDown(until: Long) {
+        if (until - holdUntil > 0) holdUntil = until
+        currentRate = maxOf(ratePerSecond * MIN_RATE_FRACTION, currentRate / 2)
+    }
+
+    @Synchronized
+    private fun speedUp() {
+        currentRate = minOf(ratePerSecond, currentRate + ratePerSecond / 10)
+    }
+
+    companion object {
+        const val DEFAULT_RATE_PER_SECOND = 5.0
+        const val DEFAULT_BURST = 10
+        const val DEFAULT_MAX_IN_FLIGHT = 4
+        const val DEFAULT_CAPACITY = 256
+
+        // The rate is never lowered below this fraction of the configured one
+        private const val MIN_RATE_FRACTION = 1.0 / 16
+
+        // Hold after the server couldn't be reached, doubled for each failure in a row
+        private const val FAILURE_BACKOFF_MILLIS = 500L
+        private const val MAX_BACKOFF_DOUBLINGS = 6
+
+        private const val POLL_MILLIS = 100L
+        private const val NANOS_PER_SECOND = 1e9
+
+        /**
+         * Queue registered with [OrderSubmissions] by [install], if any.
+         */
+        @Volatile
+        var installed: SubmissionQueue? = null
+            private set
+
+        /**
+         * Upload every order passed to [OrderSubmissions] with [uploader]. Only the first call
+         * creates a queue, later ones return it.
+         */
+        @Synchronized
+        fun install(uploader: OrderUploader): SubmissionQueue =
+            installed ?: SubmissionQueue(uploader).also {
+                OrderSubmissions.register(it)
+                installed = it
+            }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+/**
+ * Tests for the generated [Catalog].
+ */
+class CatalogTest {
+
+    private val keys = (0 until Catalog.SIZE).map { Catalog.key(it) }
+
+    @Test
+    fun `every_key_maps_to_its_ordinal`() {
+        keys.forEachIndexed { ordinal, key ->
+            assertEquals(ordinal, Catalog.ordinalOf(key))
+        }
+    }
+
+    @Test
+    fun `unknown_keys_are_rejected`() {
+        assertEquals(-1, Catalog.ordinalOf(""))
+        assertEquals(-1, Catalog.ordinalOf("steak"))
+        assertNull(Catalog.menuItem("Cauliflower"))
+    }
+
+    @Test
+    fun `menu_items_match_catalog`() {
+        val item = Catalog.menuItem("cauliflower")!!
+        assertEquals("Cauliflower", item.name)
+        assertEquals(7.00, item.price, 0.0)
+        assertSame(item, DataSource.menuItems["cauliflower"])
+        assertEquals(keys, DataSource.menuItems.keys.toList())
+    }
+}
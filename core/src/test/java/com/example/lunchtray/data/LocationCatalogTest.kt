@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.model.PriceTable
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+class LocationCatalogTest {
+
+    private val locations = 300
+
+    // Expected price of each item key at each location, null when not served
+    private val expected = HashMap<Pair<String, String>, Int?>()
+
+    private val catalog: LocationCatalog by lazy {
+        val random = Random(43)
+        val builder = LocationCatalog.Builder()
+        for (location in 0 until locations) {
+            val id = "store-$location"
+            val prices = HashMap<String, Int>()
+            val notServed = HashSet<String>()
+            // A couple of local price changes, and sometimes an item off the menu
+            repeat(2) {
+                val ordinal = random.nextInt(Catalog.SIZE)
+                val change = 25 * (1 + random.nextInt(4))
+                prices[Catalog.key(ordinal)] = Catalog.priceCents(ordinal) + change
+            }
+            if (location % 10 == 0) notServed.add("pickles")
+            builder.addCatalog(id, prices, notServed)
+            for (ordinal in 0 until Catalog.SIZE) {
+                val key = Catalog.key(ordinal)
+                expected[id to key] =
+                    if (key in notServed) null else prices[key] ?: Catalog.priceCents(ordinal)
+            }
+            // A regional special, only served at a few locations
+            if (location < 3) {
+                builder.add(
+                    id, "tamales", "Tamales", "Corn masa, green chile", 650, ItemType.ENTREE
+                )
+                expected[id to "tamales"] = 650
+            }
+        }
+        builder.build()
+    }
+
+    @After
+    fun tearDown() {
+        // Selecting a location changes how orders are priced
+        PriceTable.useCatalogPrices()
+    }
+
+    @Test
+    fun `every_location_keeps_its_prices`() {
+        assertEquals(locations, catalog.locationCount)
+        assertEquals(Catalog.SIZE + 1, catalog.itemCount)
+        for (location in 0 until locations) {
+            val menu = catalog.location("store-$location")!!
+            for (item in 0 until catalog.itemCount) {
+                val price = expected[menu.id to catalog.key(item)]
+                assertEquals(price ?: LocationCatalog.NOT_SERVED, menu.priceCents(item))
+                assertEquals(price != null, menu.isServed(item))
+            }
+        }
+    }
+
+    @Test
+    fun `only_differences_are_stored_per_location`() {
+        val overrides = (0 until locations).sumOf { catalog.location("store-$it")!!.overrides }
+        val cells = locations * catalog.itemCount
+        assertTrue(overrides < cells / 5)
+        // Items and their strings exist once, whatever the number of locations
+        val tamales = catalog.itemOf("tamales")
+        assertSame(catalog.name(tamales), catalog.location("store-1")!!.menuItem(tamales)!!.name)
+        assertNull(catalog.location("store-5")!!.menuItem(tamales))
+    }
+
+    @Test
+    fun `switching_locations_changes_the_active_menu`() {
+        val pickles = catalog.itemOf("pickles")
+        assertSame(catalog.select("store-10"), catalog.active)
+        assertFalse(catalog.active.isServed(pickles))
+        catalog.select("store-11")
+        assertEquals("store-11", catalog.active.id)
+        assertTrue(catalog.active.isServed(pickles))
+        assertEquals(Catalog.SIZE, catalog.active.items().size)
+    }
+}
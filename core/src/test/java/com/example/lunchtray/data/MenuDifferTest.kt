@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.ArrayDeque
+import java.util.Random
+import java.util.concurrent.Executor
+
+class MenuDifferTest {
+
+    private fun entry(key: String, priceCents: Int = 100, available: Boolean = true) =
+        MenuEntry(key, key.uppercase(), "", priceCents, available)
+
+    // Runs tasks only when asked to, to interleave background and main thread work
+    private class QueuedExecutor : Executor {
+        val tasks = ArrayDeque<Runnable>()
+        override fun execute(task: Runnable) {
+            tasks.add(task)
+        }
+        fun runAll() {
+            while (tasks.isNotEmpty()) tasks.poll().run()
+        }
+    }
+
+    @Test
+    fun `only_changed_entries_are_reported`() {
+        val old = listOf(entry("a"), entry("b"), entry("c"), entry("d"), entry("e"))
+        val new = listOf(entry("b"), entry("c", available = false), entry("f"), entry("e"),
+            entry("a"), entry("d", priceCents = 120))
+        val changes = MenuDiff.between(old, new)
+        assertEquals(emptyList<String>(), changes.removed)
+        assertEquals(listOf("f"), changes.inserted.map { it.key })
+        assertEquals(listOf("c", "d"), changes.changed.map { it.key })
+        // b and c keep their order with either d or e; a and the other one move around them
+        assertEquals(2, changes.moved.size)
+        assertTrue("a" in changes.moved)
+        assertEquals(new.map { it.key }, changes.order)
+
+        assertTrue(MenuDiff.between(new, new).isEmpty)
+        assertEquals(listOf("f"), MenuDiff.between(new, old).removed)
+    }
+
+    @Test
+    fun `moves_are_minimal`() {
+        val random = Random(49)
+        repeat(500) {
+            val old = (0 until 20).map { entry("k$it") }
+            val new = old.shuffled(random).take(10 + random.nextInt(10))
+            val changes = MenuDiff.between(old, new)
+            // The entries not moved are in their old relative order
+            val staying = changes.order.filter { it !in changes.moved }
+            assertEquals(staying, old.map { it.key }.filter { it in staying })
+            // Keeping any moved entry in place instead would break that order
+            for (key in changes.moved) {
+                val more = changes.order.filter { it !in changes.moved || it == key }
+                assertTrue(more != old.map { it.key }.filter { it in more })
+            }
+        }
+    }
+
+    @Test
+    fun `stale_diffs_are_discarded`() {
+        val background = QueuedExecutor()
+        val main = QueuedExecutor()
+        val updates = ArrayList<MenuDiffer.Update>()
+        val differ = MenuDiffer(background, main) { updates.add(it) }
+        val type = 1
+
+        differ.submit(MenuListing(1, mapOf(type to listOf(entry("a"), entry("b")))))
+        background.runAll()
+        main.runAll()
+        assertEquals(1, updates.size)
+        assertEquals(0L, updates[0].baseVersion)
+
+        // Version 2 is diffed, but 3 arrives before the result is on screen
+        differ.submit(MenuListing(2, mapOf(type to listOf(entry("a", available = false)))))
+        background.tasks.poll().run()
+        differ.submit(MenuListing(3, mapOf(type to listOf(entry("b"), entry("a")))))
+        background.runAll()
+        main.runAll()
+        assertEquals(2, updates.size)
+        assertEquals(1, differ.discarded)
+        val update = updates[1]
+        assertEquals(3L, update.listing.version)
+        assertEquals(1L, update.baseVersion)
+        val changes = update.changes(type)!!
+        assertEquals(1, changes.moved.size)
+        assertEquals(emptyList<MenuEntry>(), changes.changed)
+        assertNull(update.changes(type + 1))
+
+        // Nothing changed, nothing delivered
+        differ.submit(MenuListing(4, mapOf(type to listOf(entry("b"), entry("a")))))
+        background.runAll()
+        main.runAll()
+        assertEquals(2, updates.size)
+        assertEquals(3L, differ.displayed.version)
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Calendar
+import java.util.Random
+import java.util.TimeZone
+
+class MenuScheduleTest {
+
+    private val chili = Catalog.ordinalOf("chili")
+    private val pasta = Catalog.ordinalOf("pasta")
+    private val soup = Catalog.ordinalOf("soup")
+    private val berries = Catalog.ordinalOf("berries")
+
+    // Berries for breakfast, chili for lunch, pasta for dinner, soup from lunch until 2 am
+    private val schedule = MenuSchedule(
+        Catalog.SIZE,
+        windowItems = intArrayOf(berries, chili, pasta, soup, soup),
+        windowStarts = intArrayOf(7 * 60, 11 * 60, 17 * 60, 11 * 60, 0),
+        windowEnds = intArrayOf(11 * 60, 17 * 60, 22 * 60, 24 * 60, 2 * 60)
+    )
+
+    @Test
+    fun `menu_follows_the_time_of_day`() {
+        assertTrue(schedule.windowAt(90).isServed(soup))
+        assertFalse(schedule.windowAt(2 * 60).isServed(soup))
+        assertTrue(schedule.windowAt(7 * 60).isServed(berries))
+        assertTrue(schedule.windowAt(11 * 60 - 1).isServed(berries))
+
+        val lunch = schedule.windowAt(11 * 60)
+        assertEquals(11 * 60, lunch.startMinute)
+        assertEquals(17 * 60, lunch.endMinute)
+        assertEquals(listOf(Catalog.name(chili)), lunch.entrees.map { it.name })
+        assertEquals(listOf(Catalog.name(soup)), lunch.sides.map { it.name })
+        assertTrue(lunch.offMenuKeys.contains("berries"))
+        assertSame(lunch, schedule.windowAt(16 * 60 + 59))
+
+        assertSame(schedule.windowAt(17 * 60), schedule.windowAfter(12 * 60))
+        // Nothing served between 2 and 7 am, wraps around to the first window of the day
+        assertEquals(6, schedule.windowCount)
+        assertSame(schedule.windowAt(0), schedule.windowAfter(23 * 60))
+    }
+
+    @Test
+    fun `lookups_match_a_scan_of_the_windows`() {
+        val random = Random(42)
+        val count = 500
+        val items = IntArray(count) { random.nextInt(Catalog.SIZE) }
+        val starts = IntArray(count) { random.nextInt(MenuSchedule.MINUTES_PER_DAY - 1) }
+        val ends = IntArray(count) {
+            starts[it] + 1 + random.nextInt(MenuSchedule.MINUTES_PER_DAY - starts[it])
+        }
+        val randomSchedule = MenuSchedule(Catalog.SIZE, items, starts, ends)
+        for (minute in 0 until MenuSchedule.MINUTES_PER_DAY) {
+            val window = randomSchedule.windowAt(minute)
+            assertTrue(minute in window.startMinute until window.endMinute)
+            for (ordinal in 0 until Catalog.SIZE) {
+                val served = (0 until count).any {
+                    items[it] == ordinal && minute >= starts[it] && minute < ends[it]
+                }
+                assertEquals(served, window.isServed(ordinal))
+            }
+        }
+    }
+
+    @Test
+    fun `time_until_the_next_menu`() {
+        val utc = TimeZone.getTimeZone("UTC")
+        val at = Calendar.getInstance(utc).apply {
+            clear()
+            set(2021, Calendar.JUNE, 1, 10, 59, 30)
+        }.timeInMillis
+        assertEquals(10 * 60 + 59, MenuSchedule.minuteOfDay(at, utc))
+        assertEquals(30_000L, schedule.millisUntilChange(at, utc))
+    }
+
+    @Test
+    fun `catalog_items_without_hours_are_served_all_day`() {
+        val window = MenuSchedule.catalog.windowAt(0)
+        assertEquals(0, window.startMinute)
+        assertEquals(MenuSchedule.MINUTES_PER_DAY, window.endMinute)
+        window.prebuild()
+        assertEquals(4, window.entrees.size)
+        assertTrue(window.offMenuKeys.isEmpty())
+    }
+}
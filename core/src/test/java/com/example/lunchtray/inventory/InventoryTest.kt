@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.inventory
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+class InventoryTest {
+
+    private val soup = Catalog.ordinalOf("soup")
+    private val chili = Catalog.ordinalOf("chili")
+    private val bread = Catalog.ordinalOf("bread")
+
+    private fun order(side: Int = soup) =
+        OrderState(entree = chili, side = side, accompaniment = bread)
+
+    @Test
+    fun `items_are_unlimited_until_restocked`() {
+        val inventory = Inventory()
+        repeat(1_000) { assertTrue(inventory.take(order())) }
+        assertEquals(Inventory.UNLIMITED, inventory.remaining(soup))
+    }
+
+    @Test
+    fun `order_takes_all_of_its_items_or_none`() {
+        val inventory = Inventory()
+        inventory.restock(chili, 5)
+        inventory.restock(soup, 1)
+
+        assertTrue(inventory.take(order()))
+        assertFalse(inventory.take(order()))
+        // The chili taken before the soup turned out to be sold out went back
+        assertEquals(4, inventory.remaining(chili))
+        assertTrue(inventory.take(order(side = OrderState.NONE)))
+        assertEquals(3, inventory.remaining(chili))
+    }
+
+    @Test
+    fun `sold_out_and_back_in_stock_are_notified_once`() {
+        val inventory = Inventory()
+        val changes = CopyOnWriteArrayList<Pair<Int, Boolean>>()
+        inventory.addListener { ordinal, available -> changes.add(ordinal to available) }
+        inventory.restock(soup, 2)
+
+        inventory.take(soup)
+        inventory.take(soup)
+        inventory.take(soup)
+        inventory.putBack(soup)
+        inventory.putBack(soup)
+
+        assertEquals(listOf(soup to false, soup to true), changes)
+        assertEquals(2, inventory.remaining(soup))
+    }
+
+    @Test
+    fun `concurrent_submitters_never_oversell`() {
+        val stock = 10_000
+        val inventory = Inventory()
+        inventory.restock(soup, stock)
+        val soldOut = AtomicInteger()
+        inventory.addListener { _, available -> if (!available) soldOut.incrementAndGet() }
+        val served = AtomicInteger()
+        val start = CountDownLatch(1)
+
+        val submitters = List(16) {
+            thread {
+                start.await()
+                repeat(stock / 4) { if (inventory.take(order())) served.incrementAndGet() }
+            }
+        }
+        start.countDown()
+        submitters.forEach { it.join() }
+
+        assertEquals(stock, served.get())
+        assertEquals(0, inventory.remaining(soup))
+        assertEquals(1, soldOut.get())
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.inventory
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+class ReservationsTest {
+
+    private var now = 0L
+    private val wheel = TimingWheel(tickMillis = 100) { now }
+    private val inventory = Inventory()
+    private val reservations = Reservations(inventory, holdMillis = 60_000, wheel = wheel)
+
+    private val soup = Catalog.ordinalOf("soup")
+    private val salad = Catalog.ordinalOf("salad")
+    private val chili = Catalog.ordinalOf("chili")
+
+    @Test
+    fun `holds_take_stock_until_released_or_expired`() {
+        inventory.restock(soup, 2)
+        val first = reservations.hold(soup)!!
+        val second = reservations.hold(soup)!!
+        assertNull(reservations.hold(soup))
+        assertEquals(0, inventory.remaining(soup))
+
+        assertTrue(first.release())
+        assertFalse(first.release())
+        assertEquals(1, inventory.remaining(soup))
+
+        now += 60_000
+        wheel.advance()
+        assertFalse(second.isHeld)
+        assertEquals(2, inventory.remaining(soup))
+        assertEquals(0, reservations.activeHolds)
+    }
+
+    @Test
+    fun `session_keeps_one_hold_per_item_type`() {
+        inventory.restock(soup, 1)
+        inventory.restock(salad, 1)
+        val session = reservations.newSession()
+
+        assertTrue(session.hold(soup))
+        assertTrue(session.hold(salad))
+        // Changing the side gave the soup back
+        assertEquals(1, inventory.remaining(soup))
+        assertTrue(session.isHolding(salad))
+
+        session.releaseAll()
+        assertEquals(1, inventory.remaining(salad))
+        assertEquals(0, reservations.activeHolds)
+    }
+
+    @Test
+    fun `session_releases_a_single_item`() {
+        inventory.restock(soup, 1)
+        inventory.restock(chili, 1)
+        val session = reservations.newSession()
+        session.hold(chili)
+        session.hold(soup)
+
+        // Not the item held for that type: nothing changes
+        session.release(salad)
+        assertTrue(session.isHolding(soup))
+        session.release(soup)
+        assertFalse(session.isHolding(soup))
+        assertEquals(1, inventory.remaining(soup))
+        assertTrue(session.isHolding(chili))
+        assertEquals(1, reservations.activeHolds)
+    }
+
+    @Test
+    fun `commit_uses_holds_and_falls_back_to_stock_after_expiry`() {
+        inventory.restock(soup, 1)
+        inventory.restock(chili, 1)
+        val session = reservations.newSession()
+        session.hold(chili)
+        session.hold(soup)
+        now += 60_000
+        wheel.advance()
+
+        // The chili hold expired and someone else took the last one
+        assertTrue(inventory.take(chili))
+        val order = OrderState(entree = chili, side = soup)
+        assertFalse(session.commit(order))
+        assertEquals(1, inventory.remaining(soup))
+
+        val other = reservations.newSession()
+        inventory.restock(chili, 1)
+        other.hold(chili)
+        assertTrue(other.commit(order))
+        assertEquals(0, inventory.remaining(chili))
+        assertEquals(0, inventory.remaining(soup))
+        assertEquals(0, reservations.activeHolds)
+    }
+
+    @Test
+    fun `concurrent_sessions_keep_stock_consistent`() {
+        val stock = 500
+        inventory.restock(soup, stock)
+        val committed = AtomicInteger()
+        val start = CountDownLatch(1)
+
+        // Sessions hold, change their mind, commit or cancel while holds keep expiring
+        val sessions = List(16) { t ->
+            thread {
+                start.await()
+                repeat(2_000) { i ->
+                    val session = reservations.newSession()
+                    if (!session.hold(soup)) return@repeat
+                    session.hold(salad)
+                    when ((i + t) % 3) {
+                        0 -> if (session.commit(OrderState(side = soup))) {
+                            committed.incrementAndGet()
+                        }
+                        1 -> session.releaseAll()
+                        else -> Unit // abandoned, left to expire
+                    }
+                }
+            }
+        }
+        val expirer = thread {
+            start.await()
+            while (sessions.any { it.isAlive }) {
+                now += 10_000
+                wheel.advance(now)
+            }
+        }
+        start.countDown()
+        sessions.forEach { it.join() }
+        expirer.join()
+        now += 60_000
+        wheel.advance()
+
+        assertEquals(0, reservations.activeHolds)
+        assertEquals(stock - committed.get(), inventory.remaining(soup))
+    }
+}
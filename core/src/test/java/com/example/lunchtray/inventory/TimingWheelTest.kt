@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.inventory
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class TimingWheelTest {
+
+    private var now = 1_000_000L
+    private val wheel = TimingWheel(tickMillis = 10) { now }
+
+    @Test
+    fun `timeouts_fire_at_their_deadline_on_every_wheel`() {
+        val fired = mutableMapOf<Long, Long>()
+        // One delay per wheel, and around the lap boundaries between them
+        val delays = listOf(10L, 630L, 640L, 650L, 40_950L, 40_960L, 41_000L, 2_621_430L,
+            2_621_440L, 5_000_000L, 167_772_150L)
+        delays.forEach { delay -> wheel.schedule(delay) { fired[delay] = now } }
+        val start = now
+
+        while (fired.size < delays.size) {
+            now += 10
+            wheel.advance()
+        }
+        delays.forEach { delay -> assertEquals("delay $delay", start + delay, fired[delay]) }
+        assertEquals(0, wheel.pending)
+    }
+
+    @Test
+    fun `cancelled_timeouts_never_fire`() {
+        var fired = 0
+        val timeouts = List(1_000) { wheel.schedule(it * 100L) { fired++ } }
+        timeouts.filterIndexed { i, _ -> i % 2 == 0 }.forEach { assertTrue(it.cancel()) }
+        assertFalse(timeouts[0].cancel())
+        assertEquals(500, wheel.pending)
+
+        now += 100_000
+        wheel.advance()
+        assertEquals(500, fired)
+        assertFalse(timeouts[1].cancel())
+    }
+
+    @Test
+    fun `random_timeouts_fire_within_a_tick_of_their_deadline`() {
+        val random = Random(38)
+        val deadlines = mutableListOf<Long>()
+        val fired = mutableListOf<Long>()
+        repeat(100_000) {
+            val deadline = now + 1 + random.nextInt(1_000_000)
+            deadlines.add(deadline)
+            wheel.schedule(deadline - now) { fired.add(deadline) }
+        }
+        while (wheel.pending > 0) {
+            now += 10 + random.nextInt(5_000)
+            wheel.advance()
+            // Everything due has fired, nothing else
+            assertTrue(fired.all { it <= now })
+            val due = now - 10
+            assertEquals(deadlines.count { it <= due }, fired.count { it <= due })
+        }
+        assertEquals(deadlines.sorted(), fired.sorted())
+    }
+
+    @Test
+    fun `background_thread_only_ticks_while_timeouts_are_pending`() {
+        TimingWheel(tickMillis = 5).use { wheel ->
+            wheel.start()
+            assertFalse(wheel.isTicking)
+            val fired = CountDownLatch(1)
+            wheel.schedule(20) { fired.countDown() }
+            assertTrue(wheel.isTicking)
+            assertTrue(fired.await(10, TimeUnit.SECONDS))
+            val deadline = System.currentTimeMillis() + 10_000
+            while (wheel.isTicking) {
+                check(System.currentTimeMillis() < deadline) { "Still ticking" }
+                Thread.sleep(5)
+            }
+            assertEquals(0, wheel.pending)
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.kitchen
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.concurrent.thread
+
+class KitchenAggregatorTest {
+
+    private val order = OrderState.EMPTY
+        .withEntree(Catalog.ordinalOf("pasta"))
+        .withSide(Catalog.ordinalOf("potatoes"))
+        .withAccompaniment(Catalog.ordinalOf("bread"))
+
+    @Test
+    fun `pending_counts_follow_submits_and_completions`() {
+        val kitchen = KitchenAggregator(stripes = 4)
+        repeat(40) { kitchen.accept(order) }
+        assertTrue(kitchen.complete(Catalog.ordinalOf("potatoes"), 15))
+        val snapshot = kitchen.refresh()
+        assertEquals(40L, snapshot.orders)
+        assertEquals(40L, snapshot.pending(Catalog.ordinalOf("pasta")))
+        assertEquals(25L, snapshot.pending(Catalog.ordinalOf("potatoes")))
+        assertEquals(0L, snapshot.pending(Catalog.ordinalOf("chili")))
+        assertEquals(Catalog.ordinalOf("pasta"), snapshot.busiest().first())
+    }
+
+    @Test
+    fun `items_that_are_not_pending_cannot_be_served`() {
+        val kitchen = KitchenAggregator(stripes = 4)
+        repeat(3) { kitchen.accept(order) }
+        assertFalse(kitchen.complete(Catalog.ordinalOf("pasta"), 4))
+        assertFalse(kitchen.complete(Catalog.ordinalOf("chili")))
+        assertTrue(kitchen.complete(Catalog.ordinalOf("pasta"), 3))
+        assertFalse(kitchen.complete(Catalog.ordinalOf("pasta")))
+        assertEquals(0L, kitchen.refresh().pending(Catalog.ordinalOf("pasta")))
+    }
+
+    @Test
+    fun `snapshots_never_contain_part_of_an_order`() {
+        val kitchen = KitchenAggregator(stripes = 8)
+        val submitters = 8
+        val ordersEach = 200_000
+        val running = AtomicBoolean(true)
+        var inconsistent = 0
+        val refresher = thread {
+            while (running.get()) {
+                val snapshot = kitchen.refresh()
+                val entrees = snapshot.pending(Catalog.ordinalOf("pasta"))
+                if (entrees != snapshot.orders ||
+                    snapshot.pending(Catalog.ordinalOf("potatoes")) != entrees ||
+                    snapshot.pending(Catalog.ordinalOf("bread")) != entrees) {
+                    inconsistent++
+                }
+            }
+        }
+        (0 until submitters).map {
+            thread { repeat(ordersEach) { kitchen.accept(order) } }
+        }.forEach { it.join() }
+        running.set(false)
+        refresher.join()
+
+        assertEquals(0, inconsistent)
+        assertEquals((submitters * ordersEach).toLong(), kitchen.refresh().orders)
+    }
+}
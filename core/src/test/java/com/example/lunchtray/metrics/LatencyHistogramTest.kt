@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.metrics
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.concurrent.thread
+
+class LatencyHistogramTest {
+
+    @Test
+    fun `bucket_bounds_contain_their_values`() {
+        for (value in listOf(0L, 1L, 31L, 32L, 33L, 1_000L, 123_456_789L, Long.MAX_VALUE)) {
+            val index = LatencyHistogram.indexOf(value)
+            assertTrue(value <= LatencyHistogram.upperBoundOf(index))
+            if (index > 0) assertTrue(value > LatencyHistogram.upperBoundOf(index - 1))
+        }
+    }
+
+    @Test
+    fun `percentiles_are_within_bucket_precision`() {
+        val histogram = LatencyHistogram()
+        for (value in 1L..10_000L) histogram.record(value * 1_000)
+        val snapshot = histogram.snapshot()
+        assertEquals(10_000L, snapshot.count)
+        assertEquals(10_000_000L, snapshot.max)
+        val p50 = snapshot.valueAt(50.0)
+        assertTrue(p50 >= 5_000_000L && p50 <= 5_000_000L * 107 / 100)
+        val p99 = snapshot.valueAt(99.0)
+        assertTrue(p99 >= 9_900_000L && p99 <= 10_000_000L)
+    }
+
+    @Test
+    fun `concurrent_records_are_all_counted`() {
+        val histogram = LatencyHistogram()
+        (0 until 4).map {
+            thread { repeat(100_000) { value -> histogram.record(value.toLong()) } }
+        }.forEach { it.join() }
+        assertEquals(400_000L, histogram.snapshot().count)
+        assertEquals(99_999L, histogram.snapshot().max)
+    }
+}
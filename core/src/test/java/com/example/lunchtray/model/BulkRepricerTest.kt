@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Random
+import java.util.concurrent.ForkJoinPool
+
+class BulkRepricerTest {
+
+    private fun randomOrders(count: Int, seed: Long): OrderColumns {
+        val random = Random(seed)
+        val types = listOf(ItemType.ENTREE, ItemType.SIDE_DISH, ItemType.ACCOMPANIMENT)
+        val byType = types.map { type ->
+            listOf(OrderState.NONE) + (0 until Catalog.SIZE).filter { Catalog.type(it) == type }
+        }
+        val orders = OrderColumns(count)
+        for (row in 0 until count) {
+            val (entrees, sides, accompaniments) = byType
+            val order = OrderState(
+                entree = entrees[random.nextInt(entrees.size)],
+                side = sides[random.nextInt(sides.size)],
+                accompaniment = accompaniments[random.nextInt(accompaniments.size)]
+            )
+            orders.set(row, order, if (random.nextInt(10) == 0) 1 + random.nextInt(5) else 1)
+        }
+        return orders
+    }
+
+    @Test
+    fun `bulk_prices_match_single_orders`() {
+        val orders = randomOrders(100_000, 40)
+        for (taxRate in listOf(Pricing.TAX_RATE, 0.0725)) {
+            val priced = BulkRepricer(taxRate = taxRate).reprice(orders)
+            for (row in 0 until orders.size) {
+                val order = orders[row]
+                val quantity = orders.quantity[row]
+                if (quantity == 1) {
+                    assertEquals(order.subtotalCents, priced.subtotalCents[row])
+                    assertEquals(order.taxCents(taxRate), priced.taxCents[row])
+                    assertEquals(order.totalCents(taxRate), priced.totalCents[row])
+                } else {
+                    val subtotal = order.subtotalCents * quantity
+                    assertEquals(subtotal, priced.subtotalCents[row])
+                    assertEquals(Pricing.taxCents(subtotal, taxRate), priced.taxCents[row])
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `new_prices_apply_to_every_row`() {
+        val orders = randomOrders(50_000, 41)
+        // Everything costs a dollar more
+        val raised = IntArray(Catalog.SIZE) { Catalog.priceCents(it) + 100 }
+        val before = BulkRepricer().reprice(orders)
+        val after = BulkRepricer(raised).reprice(orders)
+        for (row in 0 until orders.size) {
+            val items = listOf(orders.entree[row], orders.side[row], orders.accompaniment[row])
+                .count { it != OrderState.NONE }
+            assertEquals(
+                before.subtotalCents[row] + 100L * items * orders.quantity[row],
+                after.subtotalCents[row]
+            )
+        }
+    }
+
+    @Test
+    fun `parallel_and_sequential_prices_agree`() {
+        val orders = randomOrders(1_000_000, 42)
+        val sequential = BulkRepricer(pool = ForkJoinPool(1)).reprice(orders)
+        val parallel = BulkRepricer().reprice(orders)
+        assertArrayEquals(sequential.subtotalCents, parallel.subtotalCents)
+        assertArrayEquals(sequential.taxCents, parallel.taxCents)
+        assertArrayEquals(sequential.totalCents, parallel.totalCents)
+    }
+}
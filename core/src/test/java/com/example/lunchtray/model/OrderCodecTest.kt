@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.util.Random
+
+class OrderCodecTest {
+
+    private class Entry(val order: OrderState, val timestampMillis: Long, val totalCents: Long)
+
+    private fun ordinalsOf(type: Int) =
+        listOf(OrderState.NONE) + (0 until Catalog.SIZE).filter { Catalog.type(it) == type }
+
+    private fun randomEntries(count: Int): List<Entry> {
+        val random = Random(44)
+        val entrees = ordinalsOf(ItemType.ENTREE)
+        val sides = ordinalsOf(ItemType.SIDE_DISH)
+        val accompaniments = ordinalsOf(ItemType.ACCOMPANIMENT)
+        var timestamp = 1_630_000_000_000L
+        return List(count) {
+            val order = OrderState(
+                entree = entrees[random.nextInt(entrees.size)],
+                side = sides[random.nextInt(sides.size)],
+                accompaniment = accompaniments[random.nextInt(accompaniments.size)]
+            )
+            // Mostly increasing, sometimes out of order
+            timestamp += random.nextInt(60_000) - 5_000
+            Entry(order, timestamp, if (it % 50 == 0) -order.totalCents else order.totalCents)
+        }
+    }
+
+    private fun encode(entries: List<Entry>): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        OrderEncoder(bytes).use { encoder ->
+            entries.forEach { encoder.write(it.order, it.timestampMillis, it.totalCents) }
+        }
+        return bytes.toByteArray()
+    }
+
+    @Test
+    fun `orders_round_trip`() {
+        val entries = randomEntries(50_000)
+        val bytes = encode(entries)
+        for (buffer in listOf(
+            ByteBuffer.wrap(bytes),
+            ByteBuffer.allocateDirect(bytes.size).put(bytes).also { it.flip() }
+        )) {
+            val decoder = OrderDecoder(buffer)
+            assertEquals(Catalog.VERSION, decoder.catalogVersion)
+            for (entry in entries) {
+                assertTrue(decoder.next())
+                assertEquals(entry.order, decoder.order())
+                assertEquals(entry.timestampMillis, decoder.timestampMillis)
+                assertEquals(entry.totalCents, decoder.totalCents)
+            }
+            assertFalse(decoder.next())
+            // The decoder has its own position
+            assertEquals(0, buffer.position())
+        }
+    }
+
+    @Test
+    fun `single_orders_for_saved_state`() {
+        val order = OrderState(entree = Catalog.ordinalOf("chili"), side = OrderState.NONE)
+        val bytes = OrderCodec.encode(order)
+        assertTrue(bytes.size < 16)
+        assertEquals(order, OrderCodec.decode(bytes))
+
+        val otherCatalog = ByteArrayOutputStream()
+        OrderEncoder(otherCatalog, Catalog.VERSION + 1).use { it.write(order, 0) }
+        assertNull(OrderCodec.decode(otherCatalog.toByteArray()))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `other_data_is_rejected`() {
+        OrderDecoder(ByteBuffer.wrap("{\"entree\":1}".toByteArray()))
+    }
+
+    @Test
+    fun `binary_is_a_fraction_of_json`() {
+        val entries = randomEntries(200_000)
+        val binary = encode(entries)
+        val json = encodeJson(entries)
+        val decoder = OrderDecoder(ByteBuffer.wrap(binary))
+        var binarySum = 0L
+        while (decoder.next()) binarySum += decoder.totalCents + decoder.entree
+        assertEquals(decodeJson(json), binarySum)
+        assertTrue("${binary.size} against ${json.size} bytes", binary.size * 10 < json.size)
+    }
+
+    // The JSON an order would otherwise be written as, one object per line
+    private fun encodeJson(entries: List<Entry>): ByteArray {
+        val json = StringBuilder()
+        for (entry in entries) {
+            json.append("{\"catalogVersion\":").append(Catalog.VERSION)
+                .append(",\"timestampMillis\":").append(entry.timestampMillis)
+                .append(",\"entree\":").append(entry.order.entree)
+                .append(",\"side\":").append(entry.order.side)
+                .append(",\"accompaniment\":").append(entry.order.accompaniment)
+                .append(",\"totalCents\":").append(entry.totalCents)
+                .append("}\n")
+        }
+        return json.toString().toByteArray()
+    }
+
+    private fun decodeJson(json: ByteArray): Long {
+        var sum = 0L
+        for (line in String(json).lineSequence()) {
+            if (line.isEmpty()) continue
+            val fields = line.substring(1, line.length - 1).split(',').associate {
+                val (name, value) = it.split(':')
+                name.trim('"') to value.toLong()
+            }
+            sum += fields.getValue("totalCents") + fields.getValue("entree")
+        }
+        return sum
+    }
+}
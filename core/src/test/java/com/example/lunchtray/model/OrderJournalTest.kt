@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import com.example.lunchtray.data.Catalog
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Random
+
+class OrderJournalTest {
+
+    @Test
+    fun `past_states_are_rebuilt_from_snapshots`() {
+        val journal = OrderJournal(capacity = 256, snapshotInterval = 16)
+        val random = Random(45)
+        // States[n] is the state after n events
+        val states = mutableListOf(journal.store.state)
+        repeat(10_000) {
+            val before = journal.count
+            val ordinal = random.nextInt(Catalog.SIZE)
+            val next = when (random.nextInt(10)) {
+                0 -> journal.reset()
+                1 -> journal.submit().let { journal.store.state }
+                in 2..4 -> journal.deselect(ordinal)
+                else -> journal.select(ordinal)
+            }
+            if (journal.count > before) states.add(next)
+        }
+
+        assertEquals(states.size - 1L, journal.count)
+        assertEquals(journal.store.state, journal.stateAt(journal.count))
+        for (sequence in journal.oldestSequence..journal.count) {
+            assertEquals(states[sequence.toInt()], journal.stateAt(sequence))
+        }
+        assertEquals(0L, journal.oldestSequence % 16)
+        assertEquals(true, journal.count - journal.oldestSequence in 241..256)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `dropped_states_are_not_rebuilt`() {
+        val journal = OrderJournal(capacity = 16, snapshotInterval = 4)
+        repeat(40) { journal.select(it % Catalog.SIZE) }
+        journal.stateAt(journal.oldestSequence - 1)
+    }
+
+    @Test
+    fun `events_form_an_audit_trail`() {
+        var now = 1_000L
+        val journal = OrderJournal(clock = { now++ })
+        val chili = Catalog.ordinalOf("chili")
+        val soup = Catalog.ordinalOf("soup")
+        journal.select(chili)
+        journal.select(soup)
+        // Not in the order, nothing happens
+        journal.deselect(Catalog.ordinalOf("rice"))
+        journal.deselect(chili)
+        val submitted = journal.submit()
+        journal.reset()
+
+        assertEquals(OrderState(side = soup, version = 3), submitted)
+        val trail = mutableListOf<String>()
+        journal.events { sequence, timestamp, kind, ordinal ->
+            trail.add("$sequence $timestamp $kind $ordinal")
+        }
+        assertEquals(
+            listOf(
+                "0 1000 ${OrderJournal.SELECT} $chili",
+                "1 1001 ${OrderJournal.SELECT} $soup",
+                "2 1002 ${OrderJournal.DESELECT} $chili",
+                "3 1003 ${OrderJournal.SUBMIT} ${OrderState.NONE}",
+                "4 1004 ${OrderJournal.RESET} ${OrderState.NONE}"
+            ),
+            trail
+        )
+        assertEquals(OrderState(entree = chili, side = soup, version = 2), journal.stateAt(2))
+    }
+}
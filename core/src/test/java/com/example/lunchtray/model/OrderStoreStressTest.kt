@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import com.example.lunchtray.data.Catalog
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+
+/**
+ * Concurrency stress tests for [OrderStore], in the style of jcstress: each round starts several
+ * actors at the same time on a fresh store, then an arbiter checks the final state.
+ */
+class OrderStoreStressTest {
+
+    private val rounds = 200
+
+    @Test
+    fun `concurrent_changes_are_never_lost`() {
+        val actors = 4
+        val changesPerActor = 1_000
+        repeat(rounds) {
+            val store = OrderStore()
+            runActors(actors) { actor ->
+                val ordinal = Catalog.ordinalOf(listOf("salad", "soup", "potatoes", "rice")[actor])
+                repeat(changesPerActor) { store.update { state -> state.withSide(ordinal) } }
+            }
+            assertEquals((actors * changesPerActor).toLong(), store.state.version)
+        }
+    }
+
+    @Test
+    fun `changes_to_different_items_do_not_overwrite_each_other`() {
+        val entree = Catalog.ordinalOf("pasta")
+        val side = Catalog.ordinalOf("soup")
+        val accompaniment = Catalog.ordinalOf("berries")
+        repeat(rounds) {
+            val store = OrderStore()
+            runActors(3) { actor ->
+                repeat(100) {
+                    when (actor) {
+                        0 -> store.update { it.withEntree(entree) }
+                        1 -> store.update { it.withSide(side) }
+                        else -> store.update { it.withAccompaniment(accompaniment) }
+                    }
+                }
+            }
+            val state = store.state
+            assertEquals(entree, state.entree)
+            assertEquals(side, state.side)
+            assertEquals(accompaniment, state.accompaniment)
+            assertEquals(
+                (Catalog.priceCents(entree) + Catalog.priceCents(side) +
+                        Catalog.priceCents(accompaniment)).toLong(),
+                state.subtotalCents
+            )
+        }
+    }
+
+    @Test
+    fun `listeners_see_every_change_once`() {
+        val store = OrderStore()
+        val notified = AtomicLong()
+        store.addListener { previous, current ->
+            assertEquals(previous.version + 1, current.version)
+            notified.incrementAndGet()
+        }
+        runActors(4) {
+            repeat(1_000) { store.update { state -> state.withEntree(Catalog.ordinalOf("chili")) } }
+        }
+        assertEquals(store.state.version, notified.get())
+    }
+
+    private fun runActors(count: Int, actor: (Int) -> Unit) {
+        val barrier = CyclicBarrier(count)
+        val errors = mutableListOf<Throwable>()
+        (0 until count).map { index ->
+            thread {
+                try {
+                    barrier.await()
+                    actor(index)
+                } catch (t: Throwable) {
+                    synchronized(errors) { errors.add(t) }
+                }
+            }
+        }.forEach { it.join() }
+        errors.firstOrNull()?.let { throw it }
+    }
+}
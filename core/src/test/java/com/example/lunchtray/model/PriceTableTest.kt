@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.model
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.data.CatalogSnapshot
+import com.example.lunchtray.data.LocationCatalog
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+import java.io.StringReader
+import java.io.StringWriter
+
+class PriceTableTest {
+
+    private fun ordinalsOf(type: Int) =
+        listOf(OrderState.NONE) + (0 until Catalog.SIZE).filter { Catalog.type(it) == type }
+
+    private fun priceOf(ordinal: Int) =
+        if (ordinal == OrderState.NONE) 0L else Catalog.priceCents(ordinal).toLong()
+
+    private val order = OrderState(
+        entree = Catalog.ordinalOf("cauliflower"),
+        side = Catalog.ordinalOf("salad"),
+        accompaniment = Catalog.ordinalOf("bread")
+    )
+
+    @After
+    fun tearDown() {
+        PriceTable.useCatalogPrices()
+    }
+
+    @Test
+    fun `every_combination_matches_item_by_item_pricing`() {
+        for (taxRate in listOf(Pricing.TAX_RATE, 0.0, 0.0725, 0.1025)) {
+            val table = PriceTable.forCatalog(taxRate)!!
+            for (entree in ordinalsOf(ItemType.ENTREE)) {
+                for (side in ordinalsOf(ItemType.SIDE_DISH)) {
+                    for (accompaniment in ordinalsOf(ItemType.ACCOMPANIMENT)) {
+                        val subtotal = priceOf(entree) + priceOf(side) + priceOf(accompaniment)
+                        val tax = Pricing.taxCents(subtotal, taxRate)
+                        assertEquals(subtotal, table.subtotalCents(entree, side, accompaniment))
+                        assertEquals(tax, table.taxCents(entree, side, accompaniment))
+                        assertEquals(subtotal + tax, table.totalCents(entree, side, accompaniment))
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `tables_are_built_once_per_tax_rate`() {
+        assertSame(PriceTable.forCatalog(0.05), PriceTable.forCatalog(0.05))
+        assertEquals(0.05, PriceTable.forCatalog(0.05)!!.taxRate, 0.0)
+        assertEquals(Catalog.VERSION, PriceTable.forCatalog()!!.catalogVersion)
+    }
+
+    @Test
+    fun `large_catalogs_are_not_tabulated`() {
+        // 100 items of each type: 101^3 cells
+        val types = IntArray(300) { it / 100 + 1 }
+        val prices = IntArray(300) { it * 10 }
+        assertNull(PriceTable.build(1L, prices, types, Pricing.TAX_RATE))
+        assertNotNull(PriceTable.build(1L, prices.copyOf(120), types.copyOf(120), Pricing.TAX_RATE))
+    }
+
+    @Test
+    fun `order_totals_use_the_table`() {
+        assertEquals(1000L, order.subtotalCents)
+        assertEquals(80L, order.taxCents)
+        assertEquals(1080L, order.totalCents)
+        assertEquals(1100L, order.totalCents(0.10))
+    }
+
+    @Test
+    fun `price_overrides_change_the_tabulated_total`() {
+        val locations = LocationCatalog.Builder()
+            .addCatalog("downtown")
+            .addCatalog("airport", priceCents = mapOf("cauliflower" to 900))
+            .build()
+        locations.select("airport")
+        assertEquals(1200L, PriceTable.forCatalog()!!.subtotalCents(
+            order.entree, order.side, order.accompaniment))
+        assertEquals(1296L, order.totalCents)
+
+        locations.select("downtown")
+        assertEquals(1080L, order.totalCents)
+    }
+
+    @Test
+    fun `fetched_snapshot_prices_are_used`() {
+        val snapshot = StringWriter().also { CatalogSnapshot.write(it) }.toString().lines()
+            .joinToString("\n") { line ->
+                val columns = line.split('\t').toMutableList()
+                if (columns[0] == "cauliflower") columns[3] = "900"
+                columns.joinToString("\t")
+            }
+        CatalogSnapshot.usePrices(StringReader(snapshot))
+        assertEquals(1200L, order.subtotalCents)
+        assertEquals(1265L, OrderState(entree = order.entree, side = order.side).totalCents(0.1))
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.recommend
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+class IndexedMinHeapTest {
+
+    @Test
+    fun `keeps_the_top_ranked_keys`() {
+        val ranks = intArrayOf(5, 1, 4, 2, 3)
+        val heap = IndexedMinHeap(3, ranks.size) { a, b -> ranks[a].compareTo(ranks[b]) }
+        ranks.indices.forEach { heap.raise(it) }
+
+        assertEquals(3, heap.size)
+        assertArrayEquals(intArrayOf(0, 2, 4), heap.ranked())
+        assertFalse(1 in heap)
+
+        ranks[1] = 6
+        heap.raise(1)
+        assertArrayEquals(intArrayOf(1, 0, 2), heap.ranked())
+        assertTrue(1 in heap)
+        assertFalse(4 in heap)
+    }
+
+    @Test
+    fun `rebuild_restores_the_order_after_ranks_change`() {
+        val ranks = intArrayOf(1, 2, 3, 4)
+        val heap = IndexedMinHeap(4, ranks.size) { a, b -> ranks[a].compareTo(ranks[b]) }
+        ranks.indices.forEach { heap.raise(it) }
+        ranks.reverse()
+        heap.rebuild()
+
+        assertArrayEquals(intArrayOf(0, 1, 2, 3), heap.ranked())
+    }
+
+    @Test
+    fun `matches_a_full_sort_of_random_raises`() {
+        val random = Random(7)
+        val ranks = IntArray(50)
+        val heap = IndexedMinHeap(5, ranks.size) { a, b ->
+            val byRank = ranks[a].compareTo(ranks[b])
+            if (byRank != 0) byRank else b.compareTo(a)
+        }
+        repeat(2000) {
+            val key = random.nextInt(ranks.size)
+            ranks[key]++
+            heap.raise(key)
+        }
+        val sorted = ranks.indices.sortedWith(compareBy({ -ranks[it] }, { it })).take(5)
+        assertArrayEquals(sorted.toIntArray(), heap.ranked())
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.recommend
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Random
+
+class PairingRecommenderTest {
+
+    private val chili = Catalog.ordinalOf("chili")
+    private val pasta = Catalog.ordinalOf("pasta")
+    private val soup = Catalog.ordinalOf("soup")
+    private val salad = Catalog.ordinalOf("salad")
+    private val rice = Catalog.ordinalOf("rice")
+    private val bread = Catalog.ordinalOf("bread")
+
+    @Test
+    fun `most_frequent_pairings_come_first`() {
+        val recommender = PairingRecommender()
+        repeat(3) { recommender.accept(OrderState(entree = chili, side = rice)) }
+        repeat(5) { recommender.accept(OrderState(entree = chili, side = soup)) }
+        recommender.accept(OrderState(entree = chili, side = salad, accompaniment = bread))
+        recommender.accept(OrderState(entree = pasta, side = salad, accompaniment = bread))
+
+        assertArrayEquals(intArrayOf(soup, rice, salad), recommender.pairedWith(chili))
+        assertArrayEquals(intArrayOf(salad), recommender.pairedWith(pasta))
+        assertArrayEquals(intArrayOf(bread), recommender.pairedWith(salad))
+        assertEquals(2, recommender.count(salad, bread))
+        assertArrayEquals(intArrayOf(), recommender.pairedWith(OrderState.NONE))
+    }
+
+    @Test
+    fun `heaps_match_a_full_sort_of_each_row`() {
+        val random = Random(41)
+        val byType = (1..3).map { type ->
+            (0 until Catalog.SIZE).filter { Catalog.type(it) == type }
+        }
+        // Skewed choices, so counts cross each other over time
+        fun pick(items: List<Int>): Int {
+            val skewed = random.nextDouble().let { it * it }
+            return items[(items.size * skewed).toInt()]
+        }
+        for (k in 1..4) {
+            val recommender = PairingRecommender(k)
+            repeat(20_000) {
+                val (entrees, sides, accompaniments) = byType
+                recommender.accept(
+                    OrderState(pick(entrees), pick(sides), pick(accompaniments))
+                )
+                if (it % 997 == 0) {
+                    for (ordinal in 0 until Catalog.SIZE) {
+                        val expected = (0 until Catalog.SIZE)
+                            .filter { partner -> recommender.count(ordinal, partner) > 0 }
+                            .sortedWith(
+                                compareByDescending<Int> { partner ->
+                                    recommender.count(ordinal, partner)
+                                }.thenBy { partner -> partner }
+                            )
+                            .take(k)
+                        assertEquals(expected, recommender.pairedWith(ordinal).toList())
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.recommend
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Random
+
+class PopularityRankingTest {
+
+    private val cauliflower = Catalog.ordinalOf("cauliflower")
+    private val chili = Catalog.ordinalOf("chili")
+    private val pasta = Catalog.ordinalOf("pasta")
+    private val skillet = Catalog.ordinalOf("skillet")
+    private val soup = Catalog.ordinalOf("soup")
+    private val rice = Catalog.ordinalOf("rice")
+
+    private var now = 0L
+
+    @Test
+    fun `most_ordered_items_come_first_in_each_category`() {
+        val ranking = PopularityRanking(k = 2, clock = { now })
+        repeat(3) { ranking.accept(OrderState(entree = pasta, side = rice)) }
+        repeat(2) { ranking.accept(OrderState(entree = skillet, side = soup)) }
+        ranking.accept(OrderState(entree = chili))
+
+        // Beyond the top two, entrees stay in menu order
+        assertArrayEquals(
+            intArrayOf(pasta, skillet, cauliflower, chili),
+            ranking.ranked(ItemType.ENTREE)
+        )
+        assertEquals(listOf(rice, soup), ranking.ranked(ItemType.SIDE_DISH).take(2))
+        assertEquals(3.0, ranking.score(pasta), 1e-9)
+    }
+
+    @Test
+    fun `old_orders_count_for_less`() {
+        val halfLife = PopularityRanking.DEFAULT_HALF_LIFE_MILLIS
+        val ranking = PopularityRanking(clock = { now })
+        repeat(4) { ranking.accept(OrderState(entree = chili)) }
+        now += 2 * halfLife
+        assertEquals(1.0, ranking.score(chili), 1e-9)
+
+        repeat(2) { ranking.accept(OrderState(entree = pasta)) }
+        assertEquals(pasta, ranking.ranked(ItemType.ENTREE).first())
+        assertEquals(2.0, ranking.score(pasta), 1e-9)
+    }
+
+    @Test
+    fun `heaps_match_a_full_sort_of_each_category`() {
+        val random = Random(43)
+        val types = listOf(ItemType.ENTREE, ItemType.SIDE_DISH, ItemType.ACCOMPANIMENT)
+        val byType = types.map { type ->
+            (0 until Catalog.SIZE).filter { Catalog.type(it) == type }
+        }
+        // Skewed choices that drift over time, so scores cross each other
+        fun pick(items: List<Int>, drift: Int): Int {
+            val skewed = random.nextDouble().let { it * it }
+            return items[((items.size * skewed).toInt() + drift) % items.size]
+        }
+        for (k in 1..4) {
+            // A short half-life, so scores get rescaled along the way
+            val ranking = PopularityRanking(k, halfLifeMillis = 10, clock = { now })
+            repeat(20_000) {
+                now++
+                val drift = it / 2_000
+                val (entrees, sides, accompaniments) = byType
+                ranking.accept(
+                    OrderState(
+                        pick(entrees, drift), pick(sides, drift), pick(accompaniments, drift)
+                    )
+                )
+                if (it % 997 == 0) {
+                    for ((type, items) in types.zip(byType)) {
+                        val top = items
+                            .filter { ordinal -> ranking.score(ordinal) > 0 }
+                            .sortedWith(
+                                compareByDescending<Int> { ordinal -> ranking.score(ordinal) }
+                                    .thenBy { ordinal -> ordinal }
+                            )
+                            .take(k)
+                        val expected = top + items.filter { ordinal -> ordinal !in top }
+                        assertEquals(expected, ranking.ranked(type).toList())
+                    }
+                }
+            }
+        }
+    }
+}
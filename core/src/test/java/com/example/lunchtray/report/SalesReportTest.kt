@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.report
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderEncoder
+import com.example.lunchtray.model.OrderHistory
+import com.example.lunchtray.model.OrderState
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.util.Random
+import java.util.TimeZone
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+
+class SalesReportTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val utc = TimeZone.getTimeZone("UTC")
+
+    // Midnight UTC
+    private val dayStart = 1_630_000_000_000L / 86_400_000 * 86_400_000
+
+    private fun ordinalsOf(type: Int) =
+        listOf(OrderState.NONE) + (0 until Catalog.SIZE).filter { Catalog.type(it) == type }
+
+    /**
+     * Write [count] orders spread over one day to a history file, adding them up as they go
+     * into [expected].
+     */
+    private fun writeHistory(count: Int, expected: SalesTotals? = null): File {
+        val random = Random(46)
+        val entrees = ordinalsOf(ItemType.ENTREE)
+        val sides = ordinalsOf(ItemType.SIDE_DISH)
+        val accompaniments = ordinalsOf(ItemType.ACCOMPANIMENT)
+        val directory = folder.newFolder()
+        // Blocks are only written when full, or at close
+        val history = OrderHistory(directory, flushDelayMillis = Long.MAX_VALUE, timeZone = utc)
+        history.use {
+            for (i in 0 until count) {
+                val order = OrderState(
+                    entree = entrees[random.nextInt(entrees.size)],
+                    side = sides[random.nextInt(sides.size)],
+                    accompaniment = accompaniments[random.nextInt(accompaniments.size)]
+                )
+                val timestamp = dayStart + i * (86_400_000L / count)
+                history.append(order, timestamp, order.totalCents)
+                expected?.let { addUp(it, order, timestamp) }
+            }
+        }
+        return history.fileFor(dayStart)
+    }
+
+    private fun addUp(totals: SalesTotals, order: OrderState, timestamp: Long) {
+        val one = SalesTotals()
+        val hour = ((timestamp - dayStart) / 3_600_000).toInt()
+        for (ordinal in listOf(order.entree, order.side, order.accompaniment)) {
+            if (ordinal == OrderState.NONE) continue
+            one.itemCounts[ordinal]++
+            one.revenueByType[Catalog.type(ordinal)] += Catalog.priceCents(ordinal).toLong()
+        }
+        one.ordersByHour[hour]++
+        one.chargedByHour[hour] += order.totalCents
+        totals.merge(one)
+    }
+
+    @Test
+    fun `parallel_totals_match_a_sequential_count`() {
+        val expected = SalesTotals()
+        val history = writeHistory(100_003, expected)
+        val report = folder.newFile()
+        val totals = SalesReport(ForkJoinPool(4), utc).generate(history, report)
+
+        assertEquals(100_003L, totals.orders)
+        assertArrayEquals(expected.itemCounts, totals.itemCounts)
+        assertArrayEquals(expected.revenueByType, totals.revenueByType)
+        assertArrayEquals(expected.ordersByHour, totals.ordersByHour)
+        assertArrayEquals(expected.chargedByHour, totals.chargedByHour)
+        assertEquals(expected.chargedByHour.sum(), totals.chargedCents)
+        assertEquals(totals.chargedCents - totals.revenueByType.sum(), totals.taxCents)
+
+        val lines = report.readLines()
+        assertEquals("orders,100003", lines[0])
+        val chili = Catalog.ordinalOf("chili")
+        assertTrue("chili,Three Bean Chili,${totals.itemCounts[chili]}" in lines)
+        assertTrue(lines.last().startsWith("23,"))
+    }
+
+    @Test
+    fun `a_block_cut_short_is_left_out`() {
+        val history = writeHistory(OrderHistory.DEFAULT_BLOCK_ORDERS * 2)
+        val bytes = history.readBytes()
+        history.writeBytes(bytes.copyOf(bytes.size - 3))
+        val totals = SalesReport(timeZone = utc).totals(OrderHistory.blocks(history))
+        assertEquals(OrderHistory.DEFAULT_BLOCK_ORDERS.toLong(), totals.orders)
+    }
+
+    @Test
+    fun `orders_are_kept_per_business_day`() {
+        val history = OrderHistory(folder.newFolder(), timeZone = utc)
+        val order = OrderState(entree = Catalog.ordinalOf("chili"))
+        history.use {
+            it.append(order, dayStart - 1, order.totalCents)
+            repeat(3) { i -> it.append(order, dayStart + i, order.totalCents) }
+        }
+        val report = SalesReport(timeZone = utc)
+        assertEquals(1L, report.totals(OrderHistory.blocks(history.fileFor(dayStart - 1))).orders)
+        val today = report.totals(OrderHistory.blocks(history.fileFor(dayStart)))
+        assertEquals(3L, today.orders)
+        assertEquals(3L, today.ordersByHour[0])
+        val tomorrow = history.fileFor(dayStart + 86_400_000)
+        assertEquals(0L, report.totals(OrderHistory.blocks(tomorrow)).orders)
+    }
+
+    @Test
+    fun `orders_of_another_catalog_are_still_counted`() {
+        val expected = SalesTotals()
+        val history = writeHistory(10, expected)
+        val block = ByteArrayOutputStream()
+        OrderEncoder(block, Catalog.VERSION + 1).use { encoder ->
+            encoder.write(0, 0, 0, dayStart + 3_600_000, 1_000)
+        }
+        DataOutputStream(FileOutputStream(history, true)).use { out ->
+            out.writeInt(block.size())
+            block.writeTo(out)
+        }
+        val totals = SalesReport(timeZone = utc).totals(OrderHistory.blocks(history))
+        assertEquals(11L, totals.orders)
+        assertEquals(1L, totals.otherCatalogOrders)
+        // Its items are unknown
+        assertArrayEquals(expected.itemCounts, totals.itemCounts)
+        assertEquals(totals.chargedByHour.sum(), totals.chargedCents)
+    }
+
+    private fun awaitBlocks(file: File, count: Int) {
+        val deadline = System.currentTimeMillis() + 10_000
+        while (OrderHistory.blocks(file).size < count) {
+            check(System.currentTimeMillis() < deadline) { "Not written out" }
+            Thread.sleep(5)
+        }
+        assertEquals(count, OrderHistory.blocks(file).size)
+    }
+
+    @Test
+    fun `partial_blocks_are_written_out_after_the_delay`() {
+        val order = OrderState(entree = Catalog.ordinalOf("chili"))
+        val now = System.currentTimeMillis()
+        OrderHistory(folder.newFolder(), flushDelayMillis = 0).use { history ->
+            history.append(order, now, order.totalCents)
+            awaitBlocks(history.fileFor(now), 1)
+        }
+        OrderHistory(folder.newFolder(), flushDelayMillis = 20).use { history ->
+            history.append(order, now, order.totalCents)
+            history.append(order, now, order.totalCents)
+            awaitBlocks(history.fileFor(now), 1)
+        }
+    }
+
+    @Test
+    fun `files_are_only_written_by_the_writer_thread`() {
+        val writer = Executors.newSingleThreadScheduledExecutor()
+        val release = CountDownLatch(1)
+        writer.execute { release.await() }
+        val order = OrderState(entree = Catalog.ordinalOf("chili"))
+        val history = OrderHistory(folder.newFolder(), blockOrders = 2, writer = writer)
+        val now = System.currentTimeMillis()
+        // Full blocks and flushes return while the writer is busy
+        repeat(5) { history.append(order, now, order.totalCents) }
+        val flushed = history.flushAsync()
+        assertFalse(history.fileFor(now).exists())
+
+        release.countDown()
+        flushed.get()
+        awaitBlocks(history.fileFor(now), 3)
+        history.close()
+        writer.shutdown()
+        assertEquals(5L, SalesReport().totals(OrderHistory.blocks(history.fileFor(now))).orders)
+    }
+}
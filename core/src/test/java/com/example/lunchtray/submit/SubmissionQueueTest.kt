@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.submit
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+class SubmissionQueueTest {
+
+    private val order = OrderState(entree = Catalog.ordinalOf("pasta"))
+
+    private fun awaitUploaded(queue: SubmissionQueue, count: Long) {
+        val deadline = System.currentTimeMillis() + 10_000
+        while (queue.uploaded + queue.dropped < count) {
+            check(System.currentTimeMillis() < deadline) { "${queue.uploaded} uploaded" }
+            Thread.sleep(5)
+        }
+    }
+
+    @Test
+    fun `uploads_are_rate_limited`() {
+        SubmissionQueue({ 0 }, ratePerSecond = 100.0, burst = 5).use { queue ->
+            val start = System.nanoTime()
+            repeat(60) { assertTrue(queue.offer(order)) }
+            awaitUploaded(queue, 60)
+            val millis = (System.nanoTime() - start) / 1_000_000
+            // The burst goes at once, the other 55 at 100 per second
+            assertTrue("${millis}ms", millis >= 500)
+            assertTrue(queue.throttledMillis >= 500)
+            assertEquals(0, queue.queueDepth)
+        }
+    }
+
+    @Test
+    fun `in_flight_uploads_are_bounded`() {
+        val running = AtomicInteger()
+        val mostRunning = AtomicInteger()
+        val uploader = OrderUploader {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), ::maxOf)
+            Thread.sleep(10)
+            running.decrementAndGet()
+            0
+        }
+        SubmissionQueue(uploader, ratePerSecond = 1e6, burst = 100, maxInFlight = 3).use { queue ->
+            repeat(40) { queue.offer(order) }
+            awaitUploaded(queue, 40)
+            assertEquals(3, mostRunning.get())
+        }
+    }
+
+    @Test
+    fun `server_backpressure_slows_the_drain`() {
+        val calls = AtomicInteger()
+        val uploader = OrderUploader {
+            when (calls.getAndIncrement()) {
+                0, 1 -> 100L
+                2 -> throw IOException("Unreachable")
+                else -> 0L
+            }
+        }
+        SubmissionQueue(uploader, ratePerSecond = 1e6, burst = 100, maxInFlight = 1).use { queue ->
+            repeat(10) { queue.offer(order) }
+            awaitUploaded(queue, 10)
+            assertEquals(10L, queue.uploaded)
+            assertEquals(3L, queue.retried)
+            assertEquals(0L, queue.dropped)
+            // Two holds asked for by the server and one after the failure
+            assertTrue("${queue.throttledMillis}ms", queue.throttledMillis >= 650)
+        }
+    }
+
+    @Test
+    fun `full_queue_refuses_orders`() {
+        val release = CountDownLatch(1)
+        val uploader = OrderUploader {
+            release.await()
+            0
+        }
+        SubmissionQueue(uploader, maxInFlight = 1, capacity = 2).use { queue ->
+            assertTrue(queue.offer(order))
+            assertTrue(queue.offer(order))
+            assertFalse(queue.hasRoom)
+            assertFalse(queue.offer(order))
+            release.countDown()
+            awaitUploaded(queue, 2)
+            assertTrue(queue.hasRoom)
+        }
+    }
+
+    @Test
+    fun `reserved_slots_are_kept_for_submitted_orders`() {
+        val release = CountDownLatch(1)
+        val uploader = OrderUploader {
+            release.await()
+            0
+        }
+        SubmissionQueue(uploader, maxInFlight = 1, capacity = 2).use { queue ->
+            assertTrue(queue.reserve())
+            assertTrue(queue.offer(order))
+            // The last slot is held
+            assertFalse(queue.hasRoom)
+            assertFalse(queue.offer(order))
+            assertFalse(queue.reserve())
+            queue.accept(order)
+            assertEquals(2, queue.queueDepth)
+
+            // A reservation that isn't used is given back
+            release.countDown()
+            awaitUploaded(queue, 2)
+            assertTrue(queue.reserve())
+            queue.cancelReservation()
+            assertEquals(0, queue.queueDepth)
+            assertTrue(queue.hasRoom)
+        }
+    }
+
+    @Test
+    fun `submitted_orders_are_queued_past_capacity`() {
+        val release = CountDownLatch(1)
+        val uploader = OrderUploader {
+            release.await()
+            0
+        }
+        SubmissionQueue(uploader, ratePerSecond = 1e6, burst = 100, capacity = 2).use { queue ->
+            // Orders whose stock is already taken are not refused when the queue is full
+            repeat(5) { queue.accept(order) }
+            assertFalse(queue.hasRoom)
+            assertEquals(5, queue.queueDepth)
+
+            release.countDown()
+            awaitUploaded(queue, 5)
+            assertEquals(5L, queue.uploaded)
+            assertEquals(0, queue.queueDepth)
+            assertTrue(queue.hasRoom)
+        }
+    }
+
+    @Test
+    fun `rejected_orders_are_dropped`() {
+        val uploader = OrderUploader { throw IllegalArgumentException("Order rejected: 400") }
+        SubmissionQueue(uploader).use { queue ->
+            queue.offer(order)
+            awaitUploaded(queue, 1)
+            assertEquals(1L, queue.dropped)
+            assertEquals(0L, queue.retried)
+            assertEquals(0, queue.queueDepth)
+        }
+    }
+
+    @Test
+    fun `orders_that_cannot_be_sent_free_their_slot`() {
+        // E.g. the cast to HttpURLConnection for a URL that isn't http
+        val uploader = OrderUploader { throw ClassCastException("Not an http URL") }
+        SubmissionQueue(uploader, ratePerSecond = 1e6, burst = 100, capacity = 2).use { queue ->
+            repeat(10) {
+                assertTrue(queue.offer(order))
+                awaitUploaded(queue, it + 1L)
+            }
+            assertEquals(10L, queue.dropped)
+            assertTrue(queue.hasRoom)
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.loadgen
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import java.util.Random
+
+/**
+ * Generates random order flows that follow the app: an entree, a side and an accompaniment,
+ * sometimes changing their mind on a screen, sometimes cancelling, then submitting.
+ */
+class FlowGenerator(
+    seed: Long,
+    private val changeRate: Double = 0.2,
+    private val cancelRate: Double = 0.1
+) {
+
+    private val random = Random(seed)
+
+    // Item ordinals per screen, in flow order
+    private val screens = listOf(ItemType.ENTREE, ItemType.SIDE_DISH, ItemType.ACCOMPANIMENT)
+        .map { type -> (0 until Catalog.SIZE).filter { Catalog.type(it) == type }.toIntArray() }
+
+    fun next(): OrderFlow {
+        val actions = ArrayList<Action>(8)
+        for (items in screens) {
+            actions.add(Action.Select(items[random.nextInt(items.size)]))
+            while (random.nextDouble() < changeRate) {
+                actions.add(Action.Select(items[random.nextInt(items.size)]))
+            }
+            if (random.nextDouble() < cancelRate / screens.size) {
+                actions.add(Action.Reset)
+                return OrderFlow(actions)
+            }
+        }
+        actions.add(Action.Submit)
+        return OrderFlow(actions)
+    }
+}
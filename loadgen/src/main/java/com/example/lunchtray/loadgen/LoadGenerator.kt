@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.loadgen
+
+import com.example.lunchtray.metrics.LatencyHistogram
+import com.example.lunchtray.model.OrderState
+import com.example.lunchtray.model.OrderStore
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+/**
+ * Replays order flows against the order and pricing code on [concurrency] threads and measures
+ * how many orders per second it sustains.
+ *
+ * The threads share [stores] order stores, thread i working on store i % [stores], so they
+ * contend on them the way the app's screens and background threads contend on its store. With
+ * as many stores as threads nothing is shared, which measures single-thread throughput N times.
+ */
+class LoadGenerator(private val concurrency: Int, private val stores: Int = 1) {
+
+    init {
+        require(stores in 1..concurrency) { "Between 1 and $concurrency stores: $stores" }
+    }
+
+    /**
+     * Results of a run. Latencies are per flow, in nanoseconds.
+     */
+    class Report(
+        val flows: Long,
+        val orders: Long,
+        val cancels: Long,
+        val elapsedNanos: Long,
+        val latency: LatencyHistogram.Snapshot,
+        val allocatedBytes: Long,
+        val revenueCents: Long
+    ) {
+        val ordersPerSecond: Double
+            get() = orders * 1e9 / elapsedNanos
+
+        fun format(): String = buildString {
+            appendLine("flows:            $flows")
+            appendLine("orders submitted: $orders")
+            appendLine("orders cancelled: $cancels")
+            appendLine("elapsed:          %.3f s".format(elapsedNanos / 1e9))
+            appendLine("throughput:       %.0f orders/s, %.0f flows/s".format(
+                ordersPerSecond, flows * 1e9 / elapsedNanos))
+            appendLine("flow latency:     p50 %.2f us, p90 %.2f us, p99 %.2f us, p99.9 %.2f us"
+                .format(latency.valueAt(50.0) / 1e3, latency.valueAt(90.0) / 1e3,
+                    latency.valueAt(99.0) / 1e3, latency.valueAt(99.9) / 1e3))
+            appendLine("                  max %.2f us".format(latency.max / 1e3))
+            if (allocatedBytes >= 0) {
+                appendLine("allocation:       %.1f bytes/order".format(
+                    allocatedBytes.toDouble() / maxOf(orders, 1)))
+            }
+            append("revenue:          $revenueCents cents")
+        }
+    }
+
+    /**
+     * Run [count] flows taken in turn from [flows].
+     */
+    fun run(flows: List<OrderFlow>, count: Int): Report {
+        require(flows.isNotEmpty()) { "No flows to replay" }
+        val next = AtomicInteger()
+        val latency = LatencyHistogram()
+        val start = CountDownLatch(1)
+        val results = arrayOfNulls<LongArray>(concurrency)
+        val shared = List(stores) { OrderStore() }
+
+        val workers = (0 until concurrency).map { worker ->
+            val store = shared[worker % stores]
+            thread(name = "loadgen-$worker") {
+                start.await()
+                val allocatedBefore = allocatedBytes()
+                var orders = 0L
+                var cancels = 0L
+                var revenue = 0L
+                var done = 0L
+                while (true) {
+                    val index = next.getAndIncrement()
+                    if (index >= count) break
+                    val flowStart = System.nanoTime()
+                    for (action in flows[index % flows.size].actions) {
+                        when (action) {
+                            is Action.Select -> store.update { it.withItem(action.ordinal) }
+                            Action.Reset -> {
+                                store.update { it.reset() }
+                                cancels++
+                            }
+                            Action.Submit -> {
+                                // The state that was reset, whatever other threads did before
+                                var submitted = OrderState.EMPTY
+                                store.update { state -> state.reset().also { submitted = state } }
+                                revenue += submitted.totalCents
+                                orders++
+                            }
+                        }
+                    }
+                    latency.record(System.nanoTime() - flowStart)
+                    done++
+                }
+                val allocatedAfter = allocatedBytes()
+                val allocated = if (allocatedBefore < 0) -1 else allocatedAfter - allocatedBefore
+                results[worker] = longArrayOf(done, orders, cancels, revenue, allocated)
+            }
+        }
+
+        val startedAt = System.nanoTime()
+        start.countDown()
+        workers.forEach { it.join() }
+        val elapsed = System.nanoTime() - startedAt
+
+        val totals = LongArray(5)
+        var allocationKnown = true
+        results.forEach { result ->
+            for (i in 0 until 4) totals[i] += result!![i]
+            if (result!![4] < 0) allocationKnown = false else totals[4] += result[4]
+        }
+        return Report(
+            flows = totals[0],
+            orders = totals[1],
+            cancels = totals[2],
+            elapsedNanos = elapsed,
+            latency = latency.snapshot(),
+            allocatedBytes = if (allocationKnown) totals[4] else -1,
+            revenueCents = totals[3]
+        )
+    }
+
+    private fun allocatedBytes(): Long {
+        val bean = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+        if (bean == null || !bean.isThreadAllocatedMemorySupported) return -1
+        return bean.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+}
+
+private const val USAGE = """Usage: loadgen [options]
+  --flows N          number of flows to run (default 1000000)
+  --concurrency N    number of threads (default: available processors)
+  --stores N         order stores shared by the threads (default 1)
+  --warmup N         flows to run before measuring (default 200000)
+  --seed N           seed for random flows (default 42)
+  --cancel-rate R    share of random flows that cancel (default 0.1)
+  --replay FILE      replay recorded flows from FILE instead of random ones
+  --record FILE      write the random flows used to FILE"""
+
+fun main(args: Array<String>) {
+    val options = HashMap<String, String>()
+    var i = 0
+    while (i < args.size) {
+        val name = args[i]
+        if (!name.startsWith("--") || i + 1 >= args.size) {
+            System.err.println(USAGE)
+            return
+        }
+        options[name.removePrefix("--")] = args[i + 1]
+        i += 2
+    }
+
+    val count = options["flows"]?.toInt() ?: 1_000_000
+    val concurrency = options["concurrency"]?.toInt() ?: Runtime.getRuntime().availableProcessors()
+    val warmup = options["warmup"]?.toInt() ?: 200_000
+
+    val flows = options["replay"]?.let { path ->
+        File(path).useLines { OrderFlow.parse(it) }
+    } ?: run {
+        val generator = FlowGenerator(
+            seed = options["seed"]?.toLong() ?: 42L,
+            cancelRate = options["cancel-rate"]?.toDouble() ?: 0.1
+        )
+        List(POOL_SIZE) { generator.next() }
+    }
+    options["record"]?.let { path ->
+        File(path).printWriter().use { out -> flows.forEach { out.println(it.format()) } }
+    }
+
+    val stores = options["stores"]?.toInt() ?: 1
+    val generator = LoadGenerator(concurrency, stores)
+    if (warmup > 0) generator.run(flows, warmup)
+    println("${flows.size} distinct flows, $concurrency threads, $stores stores")
+    println(generator.run(flows, count).format())
+}
+
+// Number of random flows generated up front and replayed in turn
+private const val POOL_SIZE = 10_000
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.loadgen
+
+import com.example.lunchtray.data.Catalog
+
+/**
+ * Something a customer does during an order flow.
+ */
+sealed class Action {
+
+    /**
+     * Choose the item with the given catalog [ordinal].
+     */
+    data class Select(val ordinal: Int) : Action()
+
+    /**
+     * Cancel the order and start over, like resetOrder() does.
+     */
+    object Reset : Action()
+
+    /**
+     * Submit the order.
+     */
+    object Submit : Action()
+}
+
+/**
+ * The actions of one customer, in order.
+ */
+class OrderFlow(val actions: List<Action>) {
+
+    val submits: Int
+        get() = actions.count { it == Action.Submit }
+
+    /**
+     * Format the flow as one line of a recorded flow file.
+     */
+    fun format(): String = actions.joinToString(" ") {
+        when (it) {
+            is Action.Select -> Catalog.key(it.ordinal)
+            Action.Reset -> RESET
+            Action.Submit -> SUBMIT
+        }
+    }
+
+    companion object {
+        private const val RESET = "reset"
+        private const val SUBMIT = "submit"
+
+        /**
+         * Parse recorded flows, one per line: item keys, "reset" and "submit" separated by
+         * whitespace. Blank lines and lines starting with # are ignored.
+         */
+        fun parse(lines: Sequence<String>): List<OrderFlow> = lines
+            .map { it.trim() }
+            .filter { it.isNotEmpty() && !it.startsWith("#") }
+            .map { line ->
+                OrderFlow(line.split(Regex("\\s+")).map { token ->
+                    when (token) {
+                        RESET -> Action.Reset
+                        SUBMIT -> Action.Submit
+                        else -> {
+                            val ordinal = Catalog.ordinalOf(token)
+                            require(ordinal >= 0) { "Unknown menu item: $token" }
+                            Action.Select(ordinal)
+                        }
+                    }
+                })
+            }
+            .toList()
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.loadgen
+
+import com.example.lunchtray.data.Catalog
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LoadGeneratorTest {
+
+    @Test
+    fun `recorded_flows_round_trip`() {
+        val flows = FlowGenerator(seed = 7).let { generator -> List(100) { generator.next() } }
+        val parsed = OrderFlow.parse(flows.asSequence().map { it.format() })
+        assertEquals(flows.map { it.actions }, parsed.map { it.actions })
+    }
+
+    @Test
+    fun `replayed_orders_are_priced_like_the_app`() {
+        val flows = OrderFlow.parse(sequenceOf(
+            "# cauliflower, salad and bread: 10.00 + 0.80 tax",
+            "cauliflower salad bread submit",
+            "chili reset",
+            "pasta skillet soup potatoes berries submit"
+        ))
+        // A store per thread, so flows don't mix
+        val report = LoadGenerator(concurrency = 2, stores = 2).run(flows, count = 300)
+        assertEquals(300L, report.flows)
+        assertEquals(200L, report.orders)
+        assertEquals(100L, report.cancels)
+        val skilletPotatoesBerries = Catalog.priceCents(Catalog.ordinalOf("skillet")) +
+                Catalog.priceCents(Catalog.ordinalOf("potatoes")) +
+                Catalog.priceCents(Catalog.ordinalOf("berries"))
+        val perRound = 1080L + Math.rint(skilletPotatoesBerries * 1.08).toLong()
+        assertEquals(100 * perRound, report.revenueCents)
+    }
+
+    @Test
+    fun `threads_contend_on_a_shared_store`() {
+        val flows = OrderFlow.parse(sequenceOf(
+            "cauliflower salad bread submit",
+            "chili reset"
+        ))
+        val report = LoadGenerator(concurrency = 4, stores = 1).run(flows, count = 10_000)
+        assertEquals(10_000L, report.flows)
+        assertEquals(5_000L, report.orders)
+        assertEquals(5_000L, report.cancels)
+        // Flows mix on the shared store, so the revenue depends on the interleaving
+        assertTrue(report.revenueCents > 0)
+    }
+}
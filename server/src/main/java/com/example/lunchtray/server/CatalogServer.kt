@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.server
+
+import com.example.lunchtray.data.CatalogSnapshot
+import java.io.Closeable
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.net.InetSocketAddress
+import java.nio.ByteBuffer
+import java.nio.channels.ClosedChannelException
+import java.nio.channels.FileChannel
+import java.nio.channels.ServerSocketChannel
+import java.nio.channels.SocketChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption.ATOMIC_MOVE
+import java.nio.file.StandardCopyOption.REPLACE_EXISTING
+import java.nio.file.StandardOpenOption.READ
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Serves catalog snapshots to kiosks at GET /catalog.
+ *
+ * Snapshots are serialized once, when published, into files in [directory], next to a pointer
+ * file naming the one being served so that it's served again after a restart. Versions are
+ * checksums rather than counters, so the pointer is the only record of which is current.
+ * Responses are sent straight from the file to the socket with [FileChannel.transferTo], so on
+ * most platforms the bytes never pass through the JVM heap. Each response carries the snapshot's
+ * ETag, and a request whose If-None-Match matches it gets a bodyless 304.
+ *
+ * This is a minimal HTTP/1.1 server rather than the JDK one, which only exposes response bodies
+ * as streams. Connections are kept alive and each one is served on its own virtual thread when
+ * the JVM supports them.
+ */
+class CatalogServer(port: Int, private val directory: File) : Closeable {
+
+    private class Snapshot(val version: Long, val file: File) {
+        val etag = CatalogSnapshot.etag(version)
+        val size = file.length()
+    }
+
+    private class Request(val method: String, val path: String, val headers: Map<String, String>)
+
+    private val channel = ServerSocketChannel.open().bind(InetSocketAddress(port), BACKLOG)
+    private val executor: ExecutorService = VirtualThreads.newExecutor()
+    private val acceptor = Thread(::acceptLoop, "catalog-accept")
+
+    @Volatile
+    private var current: Snapshot? = null
+
+    private val fullFetches = AtomicLong()
+    private val notModifiedFetches = AtomicLong()
+    private val sentBytes = AtomicLong()
+
+    // Connections being served, closed with the server
+    private val connections: MutableSet<SocketChannel> = ConcurrentHashMap.newKeySet()
+
+    val port: Int
+        get() = (channel.localAddress as InetSocketAddress).port
+
+    /**
+     * Number of snapshots sent in full.
+     */
+    val fetches: Long
+        get() = fullFetches.get()
+
+    /**
+     * Number of requests answered with 304 because the kiosk's snapshot was current.
+     */
+    val notModified: Long
+        get() = notModifiedFetches.get()
+
+    val bytesSent: Long
+        get() = sentBytes.get()
+
+    init {
+        if (!directory.isDirectory && !directory.mkdirs()) {
+            throw IOException("Cannot create $directory")
+        }
+        // Serve the last snapshot published before a restart
+        val pointer = File(directory, CURRENT)
+        current = if (pointer.isFile) {
+            val file = File(directory, pointer.readText().trim())
+            val version = versionOf(file) ?: throw IOException("Corrupt $pointer")
+            if (!file.isFile) throw IOException("$pointer names missing $file")
+            Snapshot(version, file)
+        } else {
+            null
+        }
+    }
+
+    /**
+     * Version of the snapshot being served, or null before the first one is published.
+     */
+    val version: Long?
+        get() = current?.version
+
+    /**
+     * Serialize a snapshot of catalog [version] with [write] and serve it from now on, also
+     * after a restart once this returns. Requests already being answered finish with the
+     * previous one.
+     */
+    @Synchronized
+    fun publish(version: Long, write: (OutputStream) -> Unit) {
+        val file = File(directory, "$FILE_PREFIX$version$FILE_SUFFIX")
+        replace(file, write)
+        replace(File(directory, CURRENT)) { it.write(file.name.toByteArray(Charsets.UTF_8)) }
+        current = Snapshot(version, file)
+    }
+
+    // Write a file in full, then rename it over [file] and make the rename durable
+    private fun replace(file: File, write: (OutputStream) -> Unit) {
+        val part = File(directory, file.name + PART_SUFFIX)
+        FileOutputStream(part).use { out ->
+            write(out)
+            out.flush()
+            out.fd.sync()
+        }
+        Files.move(part.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING)
+        syncDirectory()
+    }
+
+    // Make renames in the directory durable, where the platform allows it
+    private fun syncDirectory() {
+        try {
+            FileChannel.open(directory.toPath(), READ).use { it.force(true) }
+        } catch (e: IOException) {
+            // Not supported on this platform
+        }
+    }
+
+    fun start(): CatalogServer {
+        acceptor.start()
+        return this
+    }
+
+    override fun close() {
+        channel.close()
+        acceptor.join()
+        // Kiosks keep their connections open between fetches
+        connections.forEach { it.close() }
+        executor.shutdown()
+    }
+
+    private fun acceptLoop() {
+        while (true) {
+            val socket = try {
+                channel.accept()
+            } catch (e: ClosedChannelException) {
+                return
+            }
+            executor.execute { serve(socket) }
+        }
+    }
+
+    private fun serve(socket: SocketChannel) {
+        connections.add(socket)
+        socket.use {
+            // Headers and body are written separately
+            socket.socket().tcpNoDelay = true
+            val buffer = ByteBuffer.allocate(MAX_REQUEST_BYTES)
+            try {
+                // Accepted just before the server closed
+                if (!channel.isOpen) return
+                while (true) {
+                    val request = readRequest(socket, buffer) ?: return
+                    if (!respond(socket, request)) return
+                }
+            } catch (e: IOException) {
+                // The kiosk went away, or the server is closing
+            } finally {
+                connections.remove(socket)
+            }
+        }
+    }
+
+    /**
+     * Read the next request head from [socket], keeping whatever follows it in [buffer]. Returns
+     * null when the connection is closed or the head doesn't fit.
+     */
+    private fun readRequest(socket: SocketChannel, buffer: ByteBuffer): Request? {
+        var end = headEnd(buffer)
+        while (end < 0) {
+            if (!buffer.hasRemaining() || socket.read(buffer) < 0) return null
+            end = headEnd(buffer)
+        }
+        val head = String(buffer.array(), 0, end, Charsets.ISO_8859_1)
+        buffer.flip()
+        buffer.position(end + 4)
+        buffer.compact()
+
+        val lines = head.split("\r\n")
+        val requestLine = lines[0].split(' ')
+        if (requestLine.size != 3) return null
+        val headers = HashMap<String, String>()
+        for (line in lines.drop(1)) {
+            val colon = line.indexOf(':')
+            if (colon > 0) {
+                headers[line.substring(0, colon).trim().lowercase()] =
+                    line.substring(colon + 1).trim()
+            }
+        }
+        // HTTP/1.0 connections are closed after the response
+        if (requestLine[2] != "HTTP/1.1") headers["connection"] = "close"
+        return Request(requestLine[0], requestLine[1].substringBefore('?'), headers)
+    }
+
+    private fun headEnd(buffer: ByteBuffer): Int {
+        val bytes = buffer.array()
+        for (i in 0..buffer.position() - 4) {
+            if (bytes[i] == CR && bytes[i + 1] == LF && bytes[i + 2] == CR && bytes[i + 3] == LF) {
+                return i
+            }
+        }
+        return -1
+    }
+
+    /**
+     * Answer [request]. Returns whether the connection stays open.
+     */
+    private fun respond(socket: SocketChannel, request: Request): Boolean {
+        val keepAlive = !request.headers["connection"].equals("close", ignoreCase = true)
+        val snapshot = current
+        when {
+            request.path != PATH -> writeHead(socket, "404 Not Found", keepAlive)
+            request.method != "GET" && request.method != "HEAD" ->
+                writeHead(socket, "405 Method Not Allowed", keepAlive, "Allow: GET, HEAD")
+            snapshot == null ->
+                writeHead(socket, "503 Service Unavailable", keepAlive, "Retry-After: 60")
+            etagMatches(request.headers["if-none-match"], snapshot.etag) -> {
+                notModifiedFetches.incrementAndGet()
+                writeHead(socket, "304 Not Modified", keepAlive, "ETag: ${snapshot.etag}",
+                    contentLength = null)
+            }
+            else -> {
+                FileChannel.open(snapshot.file.toPath(), READ).use { file ->
+                    writeHead(socket, "200 OK", keepAlive, "ETag: ${snapshot.etag}",
+                        "Content-Type: ${CatalogSnapshot.CONTENT_TYPE}",
+                        contentLength = snapshot.size)
+                    if (request.method == "GET") transfer(file, snapshot.size, socket)
+                }
+                fullFetches.incrementAndGet()
+            }
+        }
+        return keepAlive
+    }
+
+    private fun transfer(file: FileChannel, size: Long, socket: SocketChannel) {
+        var position = 0L
+        while (position < size) {
+            position += file.transferTo(position, size - position, socket)
+        }
+        sentBytes.addAndGet(size)
+    }
+
+    private fun etagMatches(ifNoneMatch: String?, etag: String): Boolean =
+        ifNoneMatch != null &&
+                ifNoneMatch.split(',').any { it.trim().removePrefix("W/") in setOf(etag, "*") }
+
+    private fun writeHead(
+        socket: SocketChannel,
+        status: String,
+        keepAlive: Boolean,
+        vararg headers: String,
+        contentLength: Long? = 0
+    ) {
+        val head = StringBuilder("HTTP/1.1 ").append(status).append("\r\n")
+        for (header in headers) head.append(header).append("\r\n")
+        if (contentLength != null) head.append("Content-Length: ").append(contentLength)
+            .append("\r\n")
+        if (!keepAlive) head.append("Connection: close\r\n")
+        val bytes = ByteBuffer.wrap(head.append("\r\n").toString().toByteArray(Charsets.ISO_8859_1))
+        while (bytes.hasRemaining()) socket.write(bytes)
+    }
+
+    companion object {
+        const val PATH = "/catalog"
+
+        private const val BACKLOG = 1024
+        private const val MAX_REQUEST_BYTES = 8 * 1024
+        private const val FILE_PREFIX = "catalog-"
+        private const val FILE_SUFFIX = ".tsv"
+        private const val PART_SUFFIX = ".part"
+        private const val CURRENT = "current"
+        private const val CR = '\r'.code.toByte()
+        private const val LF = '\n'.code.toByte()
+
+        private fun versionOf(file: File): Long? =
+            if (file.name.startsWith(FILE_PREFIX) && file.name.endsWith(FILE_SUFFIX)) {
+                file.name.removePrefix(FILE_PREFIX).removeSuffix(FILE_SUFFIX).toLongOrNull()
+            } else {
+                null
+            }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.server
+
+import com.example.lunchtray.data.CatalogSnapshot
+import com.example.lunchtray.metrics.LatencyHistogram
+import com.example.lunchtray.model.OrderSink
+import java.io.File
+import java.net.URI
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.file.Files
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+private const val USAGE = """Usage: loadTest [options]
+  --requests N   number of orders to send (default 200000)
+  --clients N    number of concurrent clients (default 64)
+  --warmup N     orders to send before measuring (default 20000)
+  --url URL      order endpoint of a running server (default: start one in this JVM)
+  --log DIR      write orders to a log in DIR before acknowledging them (in-JVM server only)
+  --catalog MODE fetch a 1 MB catalog from a catalog server in this JVM instead of sending
+                 orders, in full or conditional fetches that are answered 304 (default
+                 requests 2000, warmup 200)"""
+
+private val BODIES = listOf(
+    "entree=cauliflower&side=salad&accompaniment=bread",
+    "entree=chili&side=soup&accompaniment=berries",
+    "entree=pasta&side=potatoes&accompaniment=pickles",
+    "entree=skillet&side=rice",
+    "entree=pasta"
+)
+
+/**
+ * Sends [requests] requests from [clients] concurrent clients, each waiting for its answer before
+ * sending the next one, and records the latency of every request. [send] sends the request of an
+ * index and returns whether it succeeded.
+ */
+private fun run(requests: Int, clients: Int, send: (Int) -> Boolean): LatencyHistogram {
+    val latency = LatencyHistogram()
+    val next = AtomicInteger()
+    val failures = AtomicLong()
+    val done = CountDownLatch(clients)
+    val executor = VirtualThreads.newExecutor()
+    repeat(clients) {
+        executor.execute {
+            try {
+                while (true) {
+                    val index = next.getAndIncrement()
+                    if (index >= requests) break
+                    val start = System.nanoTime()
+                    val succeeded = send(index)
+                    latency.record(System.nanoTime() - start)
+                    if (!succeeded) failures.incrementAndGet()
+                }
+            } finally {
+                done.countDown()
+            }
+        }
+    }
+    done.await()
+    executor.shutdown()
+    check(failures.get() == 0L) { "${failures.get()} requests failed" }
+    return latency
+}
+
+private fun sendOrders(client: HttpClient, uri: URI, requests: Int, clients: Int) =
+    run(requests, clients) { index ->
+        val request = HttpRequest.newBuilder(uri)
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(BODIES[index % BODIES.size]))
+            .build()
+        client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200
+    }
+
+private fun printLatency(latency: LatencyHistogram.Snapshot) {
+    println("latency:    p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms".format(
+        latency.valueAt(50.0) / 1e6, latency.valueAt(99.0) / 1e6,
+        latency.valueAt(99.9) / 1e6, latency.max / 1e6))
+}
+
+/**
+ * Fetches a catalog of a megabyte of item descriptions from a [CatalogServer] in this JVM, the
+ * whole snapshot or, when [conditional], with the ETag of the current one.
+ */
+private fun fetchCatalog(conditional: Boolean, requests: Int, clients: Int, warmup: Int) {
+    val directory = Files.createTempDirectory("catalog").toFile()
+    val server = CatalogServer(0, directory).start()
+    val client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .executor(VirtualThreads.newExecutor())
+        .build()
+    try {
+        // 1 KB per line
+        val line = "item\t" + "x".repeat(1007) + "\t100\tENTREE\n"
+        server.publish(1) { out -> repeat(1024) { out.write(line.toByteArray()) } }
+        val request = HttpRequest.newBuilder(
+            URI.create("http://localhost:${server.port}${CatalogServer.PATH}")
+        )
+        if (conditional) request.header("If-None-Match", CatalogSnapshot.etag(1))
+        val fetch = request.build()
+        val send = { _: Int ->
+            val status = client.send(fetch, HttpResponse.BodyHandlers.discarding()).statusCode()
+            status == if (conditional) 304 else 200
+        }
+
+        if (warmup > 0) run(warmup, clients, send)
+        val bytesBefore = server.bytesSent
+        val start = System.nanoTime()
+        val latency = run(requests, clients, send).snapshot()
+        val elapsed = System.nanoTime() - start
+        val bytes = server.bytesSent - bytesBefore
+
+        val mode = if (conditional) "conditional" else "full"
+        println("$requests $mode catalog fetches, $clients clients, " +
+                "virtual threads: ${VirtualThreads.available}")
+        println("throughput: %.0f fetches/s, %.0f MB/s".format(
+            requests * 1e9 / elapsed, bytes * 1e9 / elapsed / (1024 * 1024)))
+        printLatency(latency)
+    } finally {
+        server.close()
+        directory.deleteRecursively()
+    }
+}
+
+fun main(args: Array<String>) {
+    val options = args.toList().chunked(2).associate { it[0].removePrefix("--") to it.getOrNull(1) }
+    if (options.values.any { it == null }) {
+        System.err.println(USAGE)
+        return
+    }
+    val catalog = options["catalog"]
+    if (catalog != null && catalog != "full" && catalog != "conditional") {
+        System.err.println(USAGE)
+        return
+    }
+    val requests = options["requests"]?.toInt() ?: if (catalog != null) 2_000 else 200_000
+    val clients = options["clients"]?.toInt() ?: 64
+    val warmup = options["warmup"]?.toInt() ?: if (catalog != null) 200 else 20_000
+
+    OrderIntakeServer.enableNoDelay()
+    if (catalog != null) {
+        fetchCatalog(catalog == "conditional", requests, clients, warmup)
+        return
+    }
+    val accepted = AtomicLong()
+    val counter = OrderSink { accepted.incrementAndGet() }
+    val log = options["log"]?.let { OrderLog(File(it), counter) }
+    val server = if (options["url"] == null) {
+        OrderIntakeServer(0, log ?: counter).start()
+    } else {
+        null
+    }
+    val uri = URI.create(options["url"] ?: "http://localhost:${server!!.port}/orders")
+    val client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .executor(VirtualThreads.newExecutor())
+        .build()
+
+    try {
+        if (warmup > 0) sendOrders(client, uri, warmup, clients)
+        val start = System.nanoTime()
+        val latency = sendOrders(client, uri, requests, clients).snapshot()
+        val elapsed = System.nanoTime() - start
+
+        println("$requests orders, $clients clients, virtual threads: ${VirtualThreads.available}")
+        println("throughput: %.0f requests/s".format(requests * 1e9 / elapsed))
+        if (log != null) {
+            val logged = accepted.get() - log.recovered
+            println("log:        %.1f orders per fsync".format(logged.toDouble() / log.commits))
+        }
+        printLatency(latency)
+    } finally {
+        server?.close()
+        log?.close()
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.server
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.data.CatalogSnapshot
+import com.example.lunchtray.kitchen.KitchenAggregator
+import com.example.lunchtray.model.OrderSink
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.net.InetSocketAddress
+import java.net.URLDecoder
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Small HTTP server accepting orders from kiosks. Orders are re-priced with the same catalog and
+ * tax rules as the app, handed to [sink] and acknowledged with their id and amounts.
+ *
+ * - POST /orders with a form encoded [OrderRequest] body
+ * - GET /kitchen for the pending item counts, when a [KitchenAggregator] is given
+ * - POST /kitchen/served with a form encoded body such as item=pasta&count=2, when the kitchen
+ *   bumps items it served off its display. Answered with 409 if fewer are pending
+ *
+ * An order is acknowledged once [sink] returns, so a sink such as [OrderLog] that waits for the
+ * order to be durable delays the acknowledgement until then. An order the sink fails to take is
+ * answered with 503 and a Retry-After header, and any other failure with 500. Each request runs
+ * on its own virtual thread when the JVM supports them.
+ *
+ * Responses are slow without TCP_NODELAY, which the JDK server only turns on through a JVM-wide
+ * property: call [enableNoDelay] before creating the first server.
+ */
+class OrderIntakeServer(
+    port: Int,
+    private val sink: OrderSink,
+    private val kitchen: KitchenAggregator? = null
+) : Closeable {
+
+    private val executor: ExecutorService = VirtualThreads.newExecutor()
+    private val server = HttpServer.create(InetSocketAddress(port), BACKLOG)
+    private val nextOrderId = AtomicLong(1)
+
+    val port: Int
+        get() = server.address.port
+
+    init {
+        server.executor = executor
+        server.createContext("/orders") { exchange -> handle(exchange, ::handleOrder) }
+        server.createContext("/kitchen") { exchange -> handle(exchange, ::handleKitchen) }
+        server.createContext("/kitchen/served") { exchange -> handle(exchange, ::handleServed) }
+    }
+
+    fun start(): OrderIntakeServer {
+        server.start()
+        return this
+    }
+
+    override fun close() {
+        server.stop(0)
+        executor.shutdown()
+    }
+
+    private inline fun handle(exchange: HttpExchange, handler: (HttpExchange) -> Unit) {
+        try {
+            handler(exchange)
+        } catch (e: RuntimeException) {
+            try {
+                respond(exchange, 500, "{\"error\":\"Internal error\"}")
+            } catch (sent: IOException) {
+                // The response had already started
+            }
+        } finally {
+            exchange.close()
+        }
+    }
+
+    private fun handleOrder(exchange: HttpExchange) {
+        if (exchange.requestMethod != "POST") {
+            respond(exchange, 405, "{\"error\":\"POST only\"}")
+            return
+        }
+        val order = try {
+            OrderRequest.parse(exchange.requestBody.readBytes().toString(Charsets.UTF_8))
+        } catch (e: IllegalArgumentException) {
+            respond(exchange, 400, "{\"error\":\"${e.message?.replace("\"", "'")}\"}")
+            return
+        }
+        try {
+            sink.accept(order)
+        } catch (e: UncheckedIOException) {
+            // Kiosks hold their queued orders back for this many seconds before trying again
+            exchange.responseHeaders.set("Retry-After", RETRY_AFTER_SECONDS.toString())
+            respond(exchange, 503, "{\"error\":\"Order not saved\"}")
+            return
+        }
+        respond(exchange, 200, "{\"orderId\":${nextOrderId.getAndIncrement()}" +
+                ",\"subtotalCents\":${order.subtotalCents}" +
+                ",\"taxCents\":${order.taxCents}" +
+                ",\"totalCents\":${order.totalCents}}")
+    }
+
+    private fun handleKitchen(exchange: HttpExchange) {
+        val snapshot = kitchen?.snapshot
+        if (snapshot == null) {
+            respond(exchange, 404, "{\"error\":\"No kitchen display\"}")
+            return
+        }
+        val pending = snapshot.busiest().joinToString(",") { ordinal ->
+            "\"${Catalog.key(ordinal)}\":${snapshot.pending(ordinal)}"
+        }
+        respond(exchange, 200, "{\"sequence\":${snapshot.sequence},\"orders\":${snapshot.orders}" +
+                ",\"pending\":{$pending}}")
+    }
+
+    private fun handleServed(exchange: HttpExchange) {
+        if (kitchen == null) {
+            respond(exchange, 404, "{\"error\":\"No kitchen display\"}")
+            return
+        }
+        if (exchange.requestMethod != "POST") {
+            respond(exchange, 405, "{\"error\":\"POST only\"}")
+            return
+        }
+        val fields = exchange.requestBody.readBytes().toString(Charsets.UTF_8).trim().split('&')
+            .associate { pair ->
+                URLDecoder.decode(pair.substringBefore('='), "UTF-8") to
+                        URLDecoder.decode(pair.substringAfter('=', ""), "UTF-8")
+            }
+        val ordinal = Catalog.ordinalOf(fields["item"].orEmpty())
+        val count = fields["count"]?.let { it.toLongOrNull() ?: 0L } ?: 1L
+        if (ordinal < 0 || count <= 0) {
+            respond(exchange, 400, "{\"error\":\"Expected item=<key>[&count=<units>]\"}")
+            return
+        }
+        if (!kitchen.complete(ordinal, count)) {
+            respond(exchange, 409, "{\"error\":\"Fewer than $count pending\"}")
+            return
+        }
+        respond(exchange, 200, "{\"item\":\"${Catalog.key(ordinal)}\",\"served\":$count}")
+    }
+
+    private fun respond(exchange: HttpExchange, status: Int, json: String) {
+        val bytes = json.toByteArray(Charsets.UTF_8)
+        exchange.responseHeaders.set("Content-Type", "application/json")
+        exchange.sendResponseHeaders(status, bytes.size.toLong())
+        exchange.responseBody.write(bytes)
+    }
+
+    companion object {
+        private const val BACKLOG = 1024
+        private const val RETRY_AFTER_SECONDS = 1
+
+        /**
+         * Turn on TCP_NODELAY for every JDK HTTP server in this JVM. Headers and body are written
+         * separately, so without it every response waits for the client's delayed ACK. The
+         * property is read once, when the JDK server is first used.
+         */
+        fun enableNoDelay() {
+            System.setProperty("sun.net.httpserver.nodelay", "true")
+        }
+    }
+}
+
+fun main(args: Array<String>) {
+    OrderIntakeServer.enableNoDelay()
+    val port = args.getOrNull(0)?.toInt() ?: 8080
+    val logDirectory = File(args.getOrNull(1) ?: "order-log")
+    val kitchen = KitchenAggregator()
+    // Items served before a restart aren't logged, so the kitchen display starts empty
+    val log = OrderLog(logDirectory, kitchen, replay = false)
+    log.archived?.let { println("Orders logged for another catalog moved to $it") }
+    kitchen.refresh()
+    kitchen.start(periodMillis = 1_000)
+    val server = OrderIntakeServer(port, log, kitchen).start()
+    println("Order intake listening on port ${server.port}, ${log.recovered} orders recovered" +
+            if (VirtualThreads.available) " (virtual threads)" else "")
+    // Kiosks fetch the catalog next door
+    val catalogPort = args.getOrNull(2)?.toInt() ?: (port + 1)
+    val catalog = CatalogServer(catalogPort, File(args.getOrNull(3) ?: "catalog")).start()
+    if (catalog.version != Catalog.VERSION) {
+        catalog.publish(Catalog.VERSION) { out -> CatalogSnapshot.write(out.writer()) }
+    }
+    println("Catalog ${Catalog.VERSION} served on port ${catalog.port}")
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.server
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderSink
+import com.example.lunchtray.model.OrderState
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.io.UncheckedIOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption.ATOMIC_MOVE
+import java.nio.file.StandardOpenOption.CREATE_NEW
+import java.nio.file.StandardOpenOption.READ
+import java.nio.file.StandardOpenOption.WRITE
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.zip.CRC32
+
+/**
+ * Write-ahead log of accepted orders. [accept] returns once the order is on disk, then hands it
+ * to [downstream], so an order is never acknowledged before it's durable.
+ *
+ * Concurrent orders are committed in groups: a single writer thread appends everything queued
+ * since the previous fsync and syncs once for the whole batch.
+ *
+ * The log is a sequence of segment files named after the sequence number of their first record.
+ * Records have a fixed size and carry a CRC32 of their content. When the log is opened, every
+ * record is replayed to [downstream], unless [replay] is false; a torn or corrupt tail left by a
+ * crash is cut off either way. Records hold catalog ordinals, so a log written for another
+ * version of the catalog isn't replayed: its segments are moved to [archived] and a new log is
+ * started.
+ */
+class OrderLog(
+    private val directory: File,
+    private val downstream: OrderSink,
+    private val segmentBytes: Long = DEFAULT_SEGMENT_BYTES,
+    private val replay: Boolean = true
+) : OrderSink, Closeable {
+
+    private class Pending(val order: OrderState) {
+        val done = CompletableFuture<Long>()
+    }
+
+    private val queue = LinkedBlockingQueue<Pending>()
+    private val buffer = ByteBuffer.allocateDirect(MAX_BATCH * RECORD_BYTES)
+    private val crc = CRC32()
+
+    private lateinit var segment: FileChannel
+    private var nextSequence = 1L
+
+    // Taken to queue an order and to stop accepting them, so no order is queued once the writer
+    // may have drained the queue for the last time
+    private val lock = Any()
+
+    @Volatile
+    private var running = true
+
+    @Volatile
+    private var failure: IOException? = null
+
+    /**
+     * Number of orders recovered when the log was opened.
+     */
+    val recovered: Long
+
+    /**
+     * Directory the segments of a log written for another catalog version were moved to when the
+     * log was opened, if any.
+     */
+    val archived: File?
+
+    /**
+     * Number of fsyncs, each covering one batch of orders.
+     */
+    @Volatile
+    var commits = 0L
+        private set
+
+    private val writer = Thread(::writeLoop, "order-log").apply { isDaemon = true }
+
+    init {
+        if (!directory.isDirectory && !directory.mkdirs()) {
+            throw IOException("Cannot create $directory")
+        }
+        archived = archiveForeignLog()
+        recovered = recover()
+        val last = segmentFiles().lastOrNull()
+        segment = if (last != null && last.length() < segmentBytes) {
+            FileChannel.open(last.toPath(), WRITE).apply { position(size()) }
+        } else {
+            newSegment()
+        }
+        writer.start()
+    }
+
+    /**
+     * Append [order] and wait until it's durable. Returns its sequence number in the log.
+     */
+    fun append(order: OrderState): Long {
+        val pending = Pending(order)
+        synchronized(lock) {
+            failure?.let { throw UncheckedIOException("Order log failed", it) }
+            check(running) { "Order log is closed" }
+            queue.put(pending)
+        }
+        return try {
+            pending.done.get()
+        } catch (e: ExecutionException) {
+            throw UncheckedIOException("Order not logged", e.cause as IOException)
+        }
+    }
+
+    override fun accept(order: OrderState) {
+        append(order)
+        downstream.accept(order)
+    }
+
+    /**
+     * Stop accepting orders, commit the ones already queued and close the current segment.
+     */
+    override fun close() {
+        synchronized(lock) { running = false }
+        writer.join()
+        segment.close()
+        // Orders queued after the writer's last look at the queue
+        val closed = IOException("Order log is closed")
+        generateSequence { queue.poll() }.forEach { it.done.completeExceptionally(closed) }
+    }
+
+    private fun writeLoop() {
+        val batch = ArrayList<Pending>(MAX_BATCH)
+        while (running || queue.isNotEmpty()) {
+            val first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS) ?: continue
+            batch.add(first)
+            queue.drainTo(batch, MAX_BATCH - 1)
+            val firstSequence = nextSequence
+            try {
+                commit(batch)
+                batch.forEachIndexed { i, pending -> pending.done.complete(firstSequence + i) }
+            } catch (e: IOException) {
+                // Nothing after a failed write can be trusted: fail this batch and every later one
+                synchronized(lock) {
+                    failure = e
+                    running = false
+                }
+                batch.forEach { it.done.completeExceptionally(e) }
+                generateSequence { queue.poll() }.forEach { it.done.completeExceptionally(e) }
+            }
+            batch.clear()
+        }
+    }
+
+    private fun commit(batch: List<Pending>) {
+        val bytes = batch.size.toLong() * RECORD_BYTES
+        if (segment.position() > 0 && segment.position() + bytes > segmentBytes) {
+            segment.force(false)
+            segment.close()
+            segment = newSegment()
+        }
+        buffer.clear()
+        for (pending in batch) {
+            encode(pending.order, nextSequence++)
+        }
+        buffer.flip()
+        while (buffer.hasRemaining()) {
+            segment.write(buffer)
+        }
+        segment.force(false)
+        commits++
+    }
+
+    private fun encode(order: OrderState, sequence: Long) {
+        val start = buffer.position()
+        buffer.position(start + CRC_BYTES)
+        buffer.putLong(sequence)
+        buffer.putLong(Catalog.VERSION)
+        buffer.putInt(order.entree)
+        buffer.putInt(order.side)
+        buffer.putInt(order.accompaniment)
+        buffer.putInt(start, checksum(buffer, start + CRC_BYTES))
+    }
+
+    private fun checksum(records: ByteBuffer, offset: Int): Int {
+        val content = records.duplicate()
+        content.limit(offset + RECORD_BYTES - CRC_BYTES).position(offset)
+        crc.reset()
+        crc.update(content)
+        return crc.value.toInt()
+    }
+
+    /**
+     * Replay every segment, truncate the torn tail of the last one and return the number of
+     * orders replayed.
+     */
+    private fun recover(): Long {
+        val segments = segmentFiles()
+        var replayed = 0L
+        for ((index, file) in segments.withIndex()) {
+            FileChannel.open(file.toPath(), READ, WRITE).use { channel ->
+                val records = ByteBuffer.allocate(channel.size().toInt())
+                while (records.hasRemaining() && channel.read(records) >= 0) Unit
+                records.flip()
+                val valid = replay(records)
+                replayed += valid / RECORD_BYTES
+                if (valid < records.limit()) {
+                    // Only the batch being written when the process died may be incomplete
+                    if (index != segments.lastIndex) {
+                        throw IOException("Corrupt record in $file at offset $valid")
+                    }
+                    channel.truncate(valid.toLong())
+                    channel.force(true)
+                }
+            }
+        }
+        return replayed
+    }
+
+    /**
+     * Replay the valid records at the start of [records] and return the number of bytes they
+     * take.
+     */
+    private fun replay(records: ByteBuffer): Int {
+        var offset = 0
+        while (offset + RECORD_BYTES <= records.limit()) {
+            if (records.getInt(offset) != checksum(records, offset + CRC_BYTES)) break
+            val sequence = records.getLong(offset + CRC_BYTES)
+            if (sequence != nextSequence) break
+            // A log started for another catalog was archived on opening, so a change of
+            // version further on means it's corrupt
+            val version = records.getLong(offset + CRC_BYTES + 8)
+            if (version != Catalog.VERSION) {
+                throw IOException("Order $sequence was logged with catalog version $version")
+            }
+            if (replay) {
+                downstream.accept(
+                    OrderState(
+                        entree = records.getInt(offset + CRC_BYTES + 16),
+                        side = records.getInt(offset + CRC_BYTES + 20),
+                        accompaniment = records.getInt(offset + CRC_BYTES + 24)
+                    )
+                )
+            }
+            nextSequence++
+            offset += RECORD_BYTES
+        }
+        return offset
+    }
+
+    /**
+     * Move the segments away if the log was written for another catalog version, and return
+     * where they went.
+     */
+    private fun archiveForeignLog(): File? {
+        val first = segmentFiles().firstOrNull() ?: return null
+        val version = RandomAccessFile(first, "r").use { file ->
+            if (file.length() < RECORD_BYTES) return null
+            file.seek(CRC_BYTES + 8L)
+            file.readLong()
+        }
+        if (version == Catalog.VERSION) return null
+        val archive = File(directory, "$ARCHIVE_PREFIX$version-${System.currentTimeMillis()}")
+        if (!archive.mkdirs()) throw IOException("Cannot create $archive")
+        for (file in segmentFiles()) {
+            Files.move(file.toPath(), File(archive, file.name).toPath(), ATOMIC_MOVE)
+        }
+        syncDirectory()
+        return archive
+    }
+
+    private fun newSegment(): FileChannel {
+        val file = File(directory, "%020d%s".format(nextSequence, SEGMENT_SUFFIX))
+        return FileChannel.open(file.toPath(), WRITE, CREATE_NEW).also { syncDirectory() }
+    }
+
+    // Make a new segment's directory entry durable, where the platform allows it
+    private fun syncDirectory() {
+        try {
+            FileChannel.open(directory.toPath(), READ).use { it.force(true) }
+        } catch (e: IOException) {
+            // Not supported on this platform
+        }
+    }
+
+    private fun segmentFiles(): List<File> =
+        directory.listFiles { file -> file.name.endsWith(SEGMENT_SUFFIX) }
+            ?.sortedBy { it.name }
+            .orEmpty()
+
+    companion object {
+        const val DEFAULT_SEGMENT_BYTES = 16L * 1024 * 1024
+        const val SEGMENT_SUFFIX = ".log"
+        const val ARCHIVE_PREFIX = "catalog-"
+
+        // CRC32, sequence, catalog version, entree, side, accompaniment
+        internal const val CRC_BYTES = 4
+        internal const val RECORD_BYTES = CRC_BYTES + 8 + 8 + 4 + 4 + 4
+
+        // Orders committed by one fsync at most
+        private const val MAX_BATCH = 1024
+        private const val POLL_MILLIS = 50L
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.server
+
+import com.example.lunchtray.constants.ItemType
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import java.net.URLDecoder
+
+/**
+ * An order as sent by a kiosk: the keys of the chosen items, as in DataSource.menuItems, form
+ * encoded, e.g. entree=pasta&side=soup&accompaniment=bread. Every field is optional, but an
+ * order has at least one and each at most once.
+ */
+object OrderRequest {
+
+    private val slots = mapOf(
+        "entree" to ItemType.ENTREE,
+        "side" to ItemType.SIDE_DISH,
+        "accompaniment" to ItemType.ACCOMPANIMENT
+    )
+
+    /**
+     * Parse [body] into an order, or throw [IllegalArgumentException] explaining what's wrong.
+     */
+    fun parse(body: String): OrderState {
+        require(body.isNotBlank()) { "Empty order" }
+        var order = OrderState.EMPTY
+        val seen = HashSet<String>()
+        for (pair in body.trim().split('&')) {
+            val separator = pair.indexOf('=')
+            require(separator > 0) { "Malformed field: $pair" }
+            val field = decode(pair.substring(0, separator))
+            val key = decode(pair.substring(separator + 1))
+            val type = slots[field] ?: throw IllegalArgumentException("Unknown field: $field")
+            require(seen.add(field)) { "Duplicate field: $field" }
+            val ordinal = Catalog.ordinalOf(key)
+            require(ordinal >= 0) { "Unknown menu item: $key" }
+            require(Catalog.type(ordinal) == type) { "$key is not a valid $field" }
+            order = order.withItem(ordinal)
+        }
+        return order
+    }
+
+    private fun decode(value: String) = URLDecoder.decode(value, "UTF-8")
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.server
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Access to virtual threads without requiring Java 21 at compile time.
+ */
+object VirtualThreads {
+
+    /**
+     * True when this JVM supports virtual threads.
+     */
+    val available: Boolean by lazy { factoryMethod() != null }
+
+    /**
+     * Return an executor starting a new virtual thread per task, or a cached thread pool on JVMs
+     * without virtual threads.
+     */
+    fun newExecutor(): ExecutorService =
+        factoryMethod()?.invoke(null) as ExecutorService? ?: Executors.newCachedThreadPool()
+
+    private fun factoryMethod() = try {
+        Executors::class.java.getMethod("newVirtualThreadPerTaskExecutor")
+    } catch (e: NoSuchMethodException) {
+        null
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.server
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.data.CatalogFetcher
+import com.example.lunchtray.data.CatalogSnapshot
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.StringWriter
+import java.net.URI
+import java.net.URL
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class CatalogServerTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val servers = ArrayList<CatalogServer>()
+
+    @After
+    fun tearDown() {
+        servers.forEach { it.close() }
+    }
+
+    private fun startServer(directory: java.io.File) =
+        CatalogServer(0, directory).start().also { servers.add(it) }
+
+    private fun snapshotText(): String =
+        StringWriter().also { CatalogSnapshot.write(it) }.toString()
+
+    private fun CatalogServer.url() = "http://localhost:$port${CatalogServer.PATH}"
+
+    // The last bytes can reach the kiosk before the server counts them
+    private fun CatalogServer.awaitBytesSent(expected: Long) {
+        val deadline = System.currentTimeMillis() + 5_000
+        while (bytesSent < expected && System.currentTimeMillis() < deadline) Thread.sleep(5)
+        assertEquals(expected, bytesSent)
+    }
+
+    @Test
+    fun `kiosks_only_download_a_changed_catalog`() {
+        val server = startServer(folder.newFolder())
+        server.publish(Catalog.VERSION) { CatalogSnapshot.write(it.writer()) }
+        val fetcher = CatalogFetcher(URL(server.url()), folder.root.resolve("catalog.tsv"))
+
+        assertTrue(fetcher.fetch())
+        assertEquals(snapshotText(), fetcher.file.readText())
+        assertEquals(Catalog.VERSION, CatalogSnapshot.versionOf(fetcher.file.readLines()[0]))
+        assertEquals(CatalogSnapshot.etag(Catalog.VERSION), fetcher.etag)
+
+        assertFalse(fetcher.fetch())
+        assertEquals(1L, server.fetches)
+        assertEquals(1L, server.notModified)
+
+        server.publish(Catalog.VERSION + 1) { it.write("# catalog version 0\n".toByteArray()) }
+        assertTrue(fetcher.fetch())
+        assertEquals("# catalog version 0\n", fetcher.file.readText())
+        assertEquals(CatalogSnapshot.etag(Catalog.VERSION + 1), fetcher.etag)
+    }
+
+    @Test
+    fun `last_published_snapshot_is_served_after_a_restart`() {
+        val directory = folder.newFolder()
+        assertEquals(null, startServer(directory).version)
+        val first = startServer(directory)
+        // Versions are checksums: the last one published needn't be the largest
+        first.publish(4) { it.write("four".toByteArray()) }
+        first.publish(3) { it.write("three".toByteArray()) }
+        first.close()
+
+        val restarted = startServer(directory)
+        assertEquals(3L, restarted.version)
+        val response = HttpClient.newHttpClient().send(
+            HttpRequest.newBuilder(URI.create(restarted.url())).build(),
+            HttpResponse.BodyHandlers.ofString()
+        )
+        assertEquals("three", response.body())
+        assertEquals("\"3\"", response.headers().firstValue("ETag").get())
+        assertFalse(directory.listFiles()!!.any { it.name.endsWith(".part") })
+    }
+
+    @Test
+    fun `other_requests_are_answered_on_the_same_connection`() {
+        val server = startServer(folder.newFolder())
+        val client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()
+        fun send(path: String, method: String = "GET") = client.send(
+            HttpRequest.newBuilder(URI.create("http://localhost:${server.port}$path"))
+                .method(method, HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.ofString()
+        ).statusCode()
+
+        assertEquals(503, send(CatalogServer.PATH))
+        server.publish(1) { it.write("one".toByteArray()) }
+        assertEquals(404, send("/menu"))
+        assertEquals(405, send(CatalogServer.PATH, "DELETE"))
+        assertEquals(200, send(CatalogServer.PATH, "HEAD"))
+        assertEquals(200, send(CatalogServer.PATH + "?kiosk=7"))
+        assertEquals(0L, server.notModified)
+        server.awaitBytesSent(3L)
+    }
+
+    @Test
+    fun `concurrent_fetchers_get_the_whole_snapshot`() {
+        val server = startServer(folder.newFolder())
+        // A catalog with 256 KB of item descriptions, 1 KB per line
+        val line = "item\t" + "x".repeat(1007) + "\t100\tENTREE\n"
+        server.publish(1) { out -> repeat(256) { out.write(line.toByteArray()) } }
+        val etag = CatalogSnapshot.etag(1)
+        val fetchers = 16
+        val perFetcher = 8
+        val client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newFixedThreadPool(fetchers))
+            .build()
+
+        val pool = Executors.newFixedThreadPool(fetchers)
+        val results = (0 until fetchers).map {
+            pool.submit<Long> {
+                var bytes = 0L
+                repeat(perFetcher) { fetch ->
+                    // Every other fetch already has the snapshot
+                    val conditional = fetch % 2 == 1
+                    val request = HttpRequest.newBuilder(URI.create(server.url()))
+                    if (conditional) request.header("If-None-Match", etag)
+                    val response = client.send(
+                        request.build(),
+                        HttpResponse.BodyHandlers.ofByteArray()
+                    )
+                    assertEquals(if (conditional) 304 else 200, response.statusCode())
+                    bytes += response.body().size
+                }
+                bytes
+            }
+        }
+        val bytes = results.sumOf { it.get() }
+        pool.shutdown()
+        pool.awaitTermination(10, TimeUnit.SECONDS)
+
+        val fullFetches = fetchers * perFetcher / 2
+        assertEquals(fullFetches * 256L * 1024, bytes)
+        server.awaitBytesSent(bytes)
+        assertEquals(fullFetches.toLong(), server.notModified)
+    }
+}
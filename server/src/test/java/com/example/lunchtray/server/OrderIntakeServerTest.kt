@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.server
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.kitchen.KitchenAggregator
+import com.example.lunchtray.model.OrderState
+import com.example.lunchtray.submit.HttpOrderUploader
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.net.URI
+import java.net.URL
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicBoolean
+
+class OrderIntakeServerTest {
+
+    private val accepted = CopyOnWriteArrayList<OrderState>()
+    private val server = OrderIntakeServer(0, { accepted.add(it) }).start()
+    private val client = HttpClient.newHttpClient()
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    @Test
+    fun `orders_are_repriced_and_acknowledged`() {
+        val response = post("entree=cauliflower&side=salad&accompaniment=bread")
+        assertEquals(200, response.statusCode())
+        // Same amounts as the app's checkout screen: $10.00 + $0.80 tax
+        assertTrue(response.body().contains("\"subtotalCents\":1000"))
+        assertTrue(response.body().contains("\"taxCents\":80"))
+        assertTrue(response.body().contains("\"totalCents\":1080"))
+        assertEquals(1, accepted.size)
+        assertEquals(Catalog.ordinalOf("salad"), accepted[0].side)
+    }
+
+    @Test
+    fun `invalid_orders_are_rejected`() {
+        assertEquals(400, post("entree=steak").statusCode())
+        assertEquals(400, post("entree=soup").statusCode())
+        assertEquals(400, post("dessert=berries").statusCode())
+        assertEquals(400, post("").statusCode())
+        assertEquals(400, post("entree=pasta&entree=chili").statusCode())
+        assertEquals(0, accepted.size)
+    }
+
+    @Test
+    fun `unexpected_failures_are_answered_with_500`() {
+        val failing = OrderIntakeServer(0, { throw IllegalStateException("Sink closed") }).start()
+        try {
+            val response = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:${failing.port}/orders"))
+                    .POST(HttpRequest.BodyPublishers.ofString("entree=pasta"))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString()
+            )
+            assertEquals(500, response.statusCode())
+        } finally {
+            failing.close()
+        }
+    }
+
+    @Test
+    fun `uploader_is_asked_to_hold_off_when_an_order_is_not_saved`() {
+        val failNext = AtomicBoolean(true)
+        val failing = OrderIntakeServer(0, { order ->
+            if (failNext.getAndSet(false)) throw UncheckedIOException(IOException("Disk full"))
+            accepted.add(order)
+        }).start()
+        try {
+            val uploader = HttpOrderUploader(URL("http://localhost:${failing.port}/orders"))
+            val order = OrderState(
+                entree = Catalog.ordinalOf("pasta"),
+                accompaniment = Catalog.ordinalOf("berries")
+            )
+            assertEquals(1_000L, uploader.upload(order))
+            assertEquals(0L, uploader.upload(order))
+            assertEquals(1, accepted.size)
+            assertEquals(order.entree, accepted[0].entree)
+            assertEquals(order.accompaniment, accepted[0].accompaniment)
+        } finally {
+            failing.close()
+        }
+    }
+
+    @Test
+    fun `kitchen_bumps_served_items_off_its_display`() {
+        val kitchen = KitchenAggregator(stripes = 2)
+        val display = OrderIntakeServer(0, kitchen, kitchen).start()
+        try {
+            fun send(path: String, body: String) = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:${display.port}$path"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString()
+            ).statusCode()
+            repeat(3) { assertEquals(200, send("/orders", "entree=pasta&side=salad")) }
+
+            assertEquals(200, send("/kitchen/served", "item=pasta&count=2"))
+            assertEquals(200, send("/kitchen/served", "item=salad"))
+            assertEquals(409, send("/kitchen/served", "item=pasta&count=2"))
+            assertEquals(400, send("/kitchen/served", "item=steak"))
+            assertEquals(400, send("/kitchen/served", "item=pasta&count=none"))
+            val snapshot = kitchen.refresh()
+            assertEquals(1L, snapshot.pending(Catalog.ordinalOf("pasta")))
+            assertEquals(2L, snapshot.pending(Catalog.ordinalOf("salad")))
+        } finally {
+            display.close()
+        }
+    }
+
+    private fun post(body: String): HttpResponse<String> = client.send(
+        HttpRequest.newBuilder(URI.create("http://localhost:${server.port}/orders"))
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build(),
+        HttpResponse.BodyHandlers.ofString()
+    )
+}
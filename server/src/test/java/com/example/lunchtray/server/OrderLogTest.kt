@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.lunchtray.server
+
+import com.example.lunchtray.data.Catalog
+import com.example.lunchtray.model.OrderState
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.zip.CRC32
+import kotlin.concurrent.thread
+
+class OrderLogTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val directory: File by lazy { folder.newFolder("orders") }
+
+    private fun order(i: Int) = OrderState(
+        entree = Catalog.ordinalOf(listOf("cauliflower", "chili", "pasta", "skillet")[i % 4]),
+        side = if (i % 3 == 0) OrderState.NONE else Catalog.ordinalOf("salad"),
+        accompaniment = Catalog.ordinalOf("bread")
+    )
+
+    private fun reopen(): List<OrderState> {
+        val replayed = CopyOnWriteArrayList<OrderState>()
+        OrderLog(directory, { replayed.add(it) }).close()
+        return replayed
+    }
+
+    private fun lastSegment() = directory.listFiles()!!.maxByOrNull { it.name }!!
+
+    @Test
+    fun `acknowledged_orders_are_replayed_after_restart`() {
+        OrderLog(directory, { }).use { log ->
+            repeat(100) { assertEquals(it + 1L, log.append(order(it))) }
+        }
+        assertEquals(List(100) { order(it) }, reopen())
+    }
+
+    @Test
+    fun `orders_roll_over_to_new_segments`() {
+        val segmentBytes = 10L * OrderLog.RECORD_BYTES
+        OrderLog(directory, { }, segmentBytes).use { log ->
+            repeat(95) { log.append(order(it)) }
+        }
+        assertEquals(10, directory.listFiles()!!.size)
+        val replayed = CopyOnWriteArrayList<OrderState>()
+        OrderLog(directory, { replayed.add(it) }, segmentBytes).use { log ->
+            assertEquals(96L, log.append(order(95)))
+        }
+        assertEquals(95, replayed.size)
+        assertEquals(List(96) { order(it) }, reopen())
+    }
+
+    @Test
+    fun `torn_batch_is_cut_off_and_logging_resumes`() {
+        OrderLog(directory, { }).use { log ->
+            repeat(10) { log.append(order(it)) }
+        }
+        // The process died while writing the next batch: one full record and half of another
+        RandomAccessFile(lastSegment(), "rw").use { file ->
+            val record = ByteArray(OrderLog.RECORD_BYTES)
+            file.seek(file.length() - record.size)
+            file.readFully(record)
+            file.write(record)
+            file.write(record, 0, record.size / 2)
+        }
+
+        val replayed = CopyOnWriteArrayList<OrderState>()
+        OrderLog(directory, { replayed.add(it) }).use { log ->
+            assertEquals(10L, log.recovered)
+            assertEquals(11L, log.append(order(10)))
+        }
+        assertEquals(List(10) { order(it) }, replayed)
+        assertEquals(11L * OrderLog.RECORD_BYTES, lastSegment().length())
+        assertEquals(List(11) { order(it) }, reopen())
+    }
+
+    @Test
+    fun `corrupt_record_in_last_segment_ends_the_log`() {
+        OrderLog(directory, { }).use { log ->
+            repeat(10) { log.append(order(it)) }
+        }
+        RandomAccessFile(lastSegment(), "rw").use { file ->
+            val offset = 7L * OrderLog.RECORD_BYTES + OrderLog.CRC_BYTES + 16
+            file.seek(offset)
+            val entree = file.readInt()
+            file.seek(offset)
+            file.writeInt(entree xor 1)
+        }
+        assertEquals(List(7) { order(it) }, reopen())
+    }
+
+    @Test(expected = IOException::class)
+    fun `corrupt_record_in_earlier_segment_is_an_error`() {
+        val segmentBytes = 10L * OrderLog.RECORD_BYTES
+        OrderLog(directory, { }, segmentBytes).use { log ->
+            repeat(25) { log.append(order(it)) }
+        }
+        RandomAccessFile(directory.listFiles()!!.minByOrNull { it.name }!!, "rw").use { file ->
+            file.seek(3L * OrderLog.RECORD_BYTES)
+            file.writeInt(0)
+        }
+        OrderLog(directory, { }, segmentBytes).close()
+    }
+
+    @Test
+    fun `log_of_another_catalog_is_archived`() {
+        OrderLog(directory, { }).use { log ->
+            repeat(10) { log.append(order(it)) }
+        }
+        // The same records, logged before the menu was edited
+        val segment = lastSegment()
+        val records = ByteBuffer.wrap(segment.readBytes())
+        val crc = CRC32()
+        for (offset in 0 until records.limit() step OrderLog.RECORD_BYTES) {
+            records.putLong(offset + OrderLog.CRC_BYTES + 8, Catalog.VERSION + 1)
+            crc.reset()
+            crc.update(records.array(), offset + OrderLog.CRC_BYTES,
+                OrderLog.RECORD_BYTES - OrderLog.CRC_BYTES)
+            records.putInt(offset, crc.value.toInt())
+        }
+        segment.writeBytes(records.array())
+
+        val replayed = CopyOnWriteArrayList<OrderState>()
+        OrderLog(directory, { replayed.add(it) }).use { log ->
+            assertEquals(0L, log.recovered)
+            assertEquals(1L, log.append(order(0)))
+            val archived = log.archived!!
+            assertTrue(archived.name.startsWith(OrderLog.ARCHIVE_PREFIX))
+            assertArrayEquals(records.array(), File(archived, segment.name).readBytes())
+        }
+        assertTrue(replayed.isEmpty())
+    }
+
+    @Test
+    fun `recovered_orders_can_be_kept_from_downstream`() {
+        OrderLog(directory, { }).use { log -> repeat(5) { log.append(order(it)) } }
+
+        val received = CopyOnWriteArrayList<OrderState>()
+        OrderLog(directory, { received.add(it) }, replay = false).use { log ->
+            assertEquals(5L, log.recovered)
+            log.accept(order(5))
+        }
+        assertEquals(listOf(order(5)), received)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun `orders_are_refused_once_closed`() {
+        val log = OrderLog(directory, { })
+        log.close()
+        log.append(order(0))
+    }
+
+    @Test
+    fun `concurrent_orders_share_fsyncs`() {
+        val threads = 32
+        val ordersPerThread = 200
+        val start = CountDownLatch(1)
+        val sequences = CopyOnWriteArrayList<Long>()
+        val accepted = CopyOnWriteArrayList<OrderState>()
+        val log = OrderLog(directory, { accepted.add(it) })
+        val submitters = List(threads) { t ->
+            thread {
+                start.await()
+                repeat(ordersPerThread) { sequences.add(log.append(order(t))) }
+            }
+        }
+        start.countDown()
+        submitters.forEach { it.join() }
+        log.close()
+
+        val total = threads * ordersPerThread
+        assertEquals((1L..total).toList(), sequences.sorted())
+        assertTrue(log.commits < total)
+        assertEquals(total, reopen().size)
+    }
+}